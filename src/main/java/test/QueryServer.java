@@ -0,0 +1,432 @@
+package test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import test.domain.INPUT_PROBLEM;
+import test.domain.TownGraph;
+
+import test.logic.EdgeFileLoader;
+import test.logic.GraphFile;
+import test.logic.GraphSnapshot;
+import test.logic.InputParser;
+import test.logic.VertexMapper;
+
+import test.logic.algorithms.AlgorithmExecutor;
+import test.logic.algorithms.AlgorithmExecutorFactory;
+import test.logic.algorithms.AnswerConsumer;
+import test.logic.algorithms.P4FindShortestDistanceAlgorithm;
+import test.logic.algorithms.ParsedQuery;
+import test.logic.algorithms.QueryPlanner;
+import test.logic.algorithms.ReorderBuffer;
+
+/**
+ * <p>Long running server which loads the graph once and answers the queries of many concurrent clients over TCP, so
+ * the graph parsing, the derived indexes and the JIT compiled code are reused by all the queries.
+ *
+ * <p>The graph is mapped from the binary {@link GraphFile} given as the first argument, loaded from the text file of
+ * edges given as the first argument, see {@link EdgeFileLoader}, or read in the same format as the first line of
+ * {@link TestExecutor} input from the standard input:
+ *
+ * <pre>
+ *     echo "AB5 BC4 CD8 DC8 DE6 AD5 CE2 EB3 AE7" | mvn exec:java -Dexec.mainClass="test.QueryServer" -Dalgofun.server.port=7070
+ * </pre>
+ *
+ * <p>A client sends one query per line in the {@link TestExecutor} format, e.g. "P4 A C", and gets one line per query
+ * in the same order: "OUTPUT #N: ANSWER", where N - number of the query within the connection starting from 1. A
+ * query which can't be answered gets "ERROR: MESSAGE" instead of the answer.
+ *
+ * <p>A single selector thread accepts the connections, reads the queries and writes the answers without blocking, the
+ * queries are executed in a pool of {@code -Dalgofun.threads} worker threads, all the processors by default. The
+ * queries of one connection may be executed concurrently, their answers pass through a {@link ReorderBuffer} of the
+ * connection. The server listens on the loopback interface only.
+ *
+ * <p>A connection stops being read while it has {@value #MAX_OUTSTANDING_ANSWERS} queries whose answers are not written
+ * yet, so a client which doesn't read the answers can't fill the memory of the server. A connection with a query line
+ * longer than {@value #MAX_LINE_LENGTH} bytes is closed.
+ *
+ * <p>With {@code -Dalgofun.snapshot.dir=DIR} the indexes of the graph are restored from DIR on start and saved there
+ * when the server is stopped, see {@link GraphSnapshot}.
+ */
+public class QueryServer implements Closeable {
+
+    /**
+     * System property with the port the server listens on.
+     */
+    public static final String PORT_PROPERTY = "algofun.server.port";
+
+    public static final int DEFAULT_PORT = 7070;
+
+    private static final String ANSWER_TEMPLATE = "OUTPUT #%s: %s\n";
+
+    private static final String ERROR_TEMPLATE = "ERROR: %s";
+
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    /**
+     * Maximum number of queries of a connection which are read but not answered and written yet.
+     */
+    static final int MAX_OUTSTANDING_ANSWERS = 1024;
+
+    /**
+     * Maximum length of a query line in bytes.
+     */
+    static final int MAX_LINE_LENGTH = 4096;
+
+    private final TownGraph townGraph;
+    private final VertexMapper mapper;
+    private final Map<INPUT_PROBLEM, AlgorithmExecutor> algorithms = Maps.newEnumMap(INPUT_PROBLEM.class);
+
+    private final ExecutorService workers;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+
+    // connections with the answers to write, passed from the workers to the selector thread
+    private final Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean running = true;
+
+    public QueryServer(final TownGraph townGraph, final VertexMapper mapper, final int port, final int threads)
+        throws IOException {
+        Preconditions.checkArgument(threads >= 1, "Number of threads must be positive, was [%s]", threads);
+
+        this.townGraph = Preconditions.checkNotNull(townGraph, "Graph is missing");
+        this.mapper = Preconditions.checkNotNull(mapper, "Mapper is missing");
+
+        final AlgorithmExecutorFactory factory = new AlgorithmExecutorFactory();
+        for (INPUT_PROBLEM inputProblem : INPUT_PROBLEM.values()) {
+            algorithms.put(inputProblem, factory.getAlgorithmExecutor(inputProblem));
+        }
+
+        //J-
+        this.workers = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                .setNameFormat("query-server-%d")
+                .setDaemon(true)
+                .build());
+        //J+
+
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public static void main(final String[] args) throws IOException {
+        final VertexMapper mapper = new VertexMapper();
+        final TownGraph townGraph;
+        if (args.length > 0 && GraphFile.isGraphFile(Paths.get(args[0]))) {
+            townGraph = GraphFile.map(Paths.get(args[0]), mapper);
+        } else {
+            final InputParser.Edges edges = args.length > 0 ? EdgeFileLoader.load(Paths.get(args[0]), mapper)
+                                                            : new InputParser(Channels.newChannel(System.in))
+                                                                .parseEdges(mapper);
+            townGraph = new TownGraph(edges.getFrom(), edges.getTo(), edges.getDistances(),
+                    mapper.numberOfVertexes());
+        }
+
+        final int threads = Integer.getInteger(QueryPlanner.THREADS_PROPERTY,
+                Runtime.getRuntime().availableProcessors());
+
+        final String snapshotDirectory = System.getProperty(GraphSnapshot.DIRECTORY_PROPERTY);
+        if (snapshotDirectory != null) {
+            GraphSnapshot.restore(Paths.get(snapshotDirectory), townGraph, mapper);
+
+            // the server is stopped by a signal, the indexes computed while serving are saved on the way out
+            Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                GraphSnapshot.save(Paths.get(snapshotDirectory), townGraph, mapper);
+                            } catch (IOException e) {
+                                throw new IllegalStateException("Can't save the graph snapshot", e);
+                            }
+                        }
+                    }));
+        }
+
+        new P4FindShortestDistanceAlgorithm(P4FindShortestDistanceAlgorithm.configuredStrategy()).precompute(townGraph);
+
+        try(QueryServer server = new QueryServer(townGraph, mapper, Integer.getInteger(PORT_PROPERTY, DEFAULT_PORT),
+                        threads)) {
+            server.serve();
+        }
+    }
+
+    /**
+     * @return  the port the server listens on
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Serves the clients in the calling thread until the server is closed.
+     */
+    public void serve() throws IOException {
+        while (running) {
+            selector.select();
+
+            Connection connection;
+            while ((connection = pendingWrites.poll()) != null) {
+                if (connection.key.isValid()) {
+                    connection.key.interestOps(connection.key.interestOps() | SelectionKey.OP_WRITE);
+                }
+            }
+
+            final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                final SelectionKey key = keys.next();
+                keys.remove();
+
+                if (!key.isValid()) {
+                    continue;
+                }
+
+                if (key.isAcceptable()) {
+                    accept();
+                    continue;
+                }
+
+                connection = (Connection) key.attachment();
+                try {
+                    if (key.isReadable()) {
+                        connection.read();
+                    }
+
+                    if (key.isValid() && key.isWritable()) {
+                        connection.write();
+                    }
+                } catch (IOException e) {
+                    connection.close();
+                }
+            }
+        }
+
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+
+        selector.close();
+    }
+
+    /**
+     * Stops serving the clients, the connections are closed.
+     */
+    @Override
+    public void close() {
+        running = false;
+        workers.shutdown();
+        selector.wakeup();
+    }
+
+    /**
+     * @return  the answer to the query line, an error message if it can't be answered
+     */
+    String answer(final byte[] query) {
+        try {
+            final InputParser parser = new InputParser(Channels.newChannel(new ByteArrayInputStream(query)),
+                    Math.max(1, query.length));
+            final InputParser.Query inputQuery = new InputParser.Query();
+            Preconditions.checkArgument(parser.parseQuery(inputQuery), "The problem query is missing");
+
+            final ParsedQuery parsedQuery = ParsedQuery.of(inputQuery, mapper);
+
+            return algorithms.get(parsedQuery.getProblem()).validateParametersAndExecute(townGraph,
+                    parsedQuery.getProblem(), parsedQuery.getVertexes(), parsedQuery.getNumber());
+        } catch (IOException | RuntimeException e) {
+            return String.format(ERROR_TEMPLATE, e.getMessage());
+        }
+    }
+
+    private void accept() throws IOException {
+        final SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+
+        channel.configureBlocking(false);
+
+        final SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new Connection(channel, key));
+    }
+
+    /**
+     * @return  true if the line holds nothing but spaces and control characters
+     */
+    private static boolean isBlank(final byte[] line) {
+        for (byte b : line) {
+            if ((b & 0xFF) > ' ') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * State of a client connection. The queries are read and the answers are written by the selector thread only, the
+     * workers pass the answers through the reorder buffer into the output queue.
+     */
+    private class Connection implements AnswerConsumer {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+
+        private final ByteBuffer input = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        private final Queue<ByteBuffer> output = new ConcurrentLinkedQueue<>();
+        private final ReorderBuffer reorderBuffer = new ReorderBuffer(this);
+
+        private int submitted;
+        private int written;
+        private final AtomicInteger answered = new AtomicInteger();
+        private boolean inputClosed;
+
+        // the input is not read while the rest of the input buffer waits for the outstanding answers to be written
+        private boolean paused;
+
+        Connection(final SocketChannel channel, final SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        void read() throws IOException {
+            final int read = channel.read(input);
+            if (read < 0) {
+                inputClosed = true;
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                if (line.size() > 0) {
+                    submit();
+                }
+
+                closeIfDone();
+                return;
+            }
+
+            input.flip();
+            split();
+        }
+
+        void write() throws IOException {
+            ByteBuffer buffer;
+            while ((buffer = output.peek()) != null) {
+                channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    break;
+                }
+
+                output.poll();
+                written++;
+            }
+
+            if (paused && submitted - written < MAX_OUTSTANDING_ANSWERS) {
+                split();
+            }
+
+            if (buffer == null) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                closeIfDone();
+            }
+        }
+
+        @Override
+        public void accept(final int queryIndex, final String answer) {
+            output.add(ByteBuffer.wrap(String.format(ANSWER_TEMPLATE, queryIndex + 1, answer).getBytes(
+                        StandardCharsets.UTF_8)));
+            answered.incrementAndGet();
+
+            pendingWrites.add(this);
+            selector.wakeup();
+        }
+
+        void close() {
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // the connection is dropped anyway
+            }
+        }
+
+        /**
+         * Submits the queries of the input buffer until the connection has too many outstanding answers, the reading
+         * is paused then.
+         */
+        private void split() throws IOException {
+            while (input.hasRemaining() && submitted - written < MAX_OUTSTANDING_ANSWERS) {
+                final byte b = input.get();
+                if (b == '\n') {
+                    submit();
+                } else if (b != '\r') {
+                    if (line.size() >= MAX_LINE_LENGTH) {
+                        throw new IOException(String.format("Query line is longer than [%s] bytes", MAX_LINE_LENGTH));
+                    }
+
+                    line.write(b);
+                }
+            }
+
+            paused = input.hasRemaining();
+            if (paused) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            } else {
+                input.clear();
+                key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+            }
+        }
+
+        private void submit() {
+            final byte[] query = line.toByteArray();
+            line.reset();
+
+            if (isBlank(query)) {
+                return;
+            }
+
+            final int queryIndex = submitted++;
+            workers.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        String answer;
+                        try {
+                            answer = answer(query);
+                        } catch (Throwable e) {
+                            // every query gets its answer, otherwise the following answers are held forever
+                            answer = String.format(ERROR_TEMPLATE, e);
+                        }
+
+                        reorderBuffer.accept(queryIndex, answer);
+                    }
+                });
+        }
+
+        private void closeIfDone() {
+            if (inputClosed && answered.get() == submitted && output.isEmpty()) {
+                close();
+            }
+        }
+    }
+}
@@ -2,17 +2,23 @@ package test;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
-import test.domain.INPUT_PROBLEM;
 import test.domain.TownGraph;
-import test.domain.TownGraphEdge;
-import test.domain.TownGraphEdgeBuilder;
+import test.logic.AnswerWriter;
+import test.logic.EdgeFileLoader;
+import test.logic.GraphFile;
+import test.logic.GraphSnapshot;
+import test.logic.InputParser;
 import test.logic.VertexMapper;
-import test.logic.algorithms.AlgorithmExecutor;
 import test.logic.algorithms.AlgorithmExecutorFactory;
+import test.logic.algorithms.P4FindShortestDistanceAlgorithm;
+import test.logic.algorithms.ParsedQuery;
+import test.logic.algorithms.QueryPlanner;
 
-import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.file.Paths;
 import java.util.List;
 
 /**
@@ -28,6 +34,9 @@ import java.util.List;
  *     <li>N - positive integer distance between X and Y.
  * </ul>
  *
+ * <p>Or the vertexes are named by words and every edge is given by three tokens "FROM TO N", e.g.
+ * "Paris Lyon 465 Lyon Nice 470", then the queries take the names instead of X and Y, see {@link InputParser}.
+ *
  * <p>Second line: a number of test queries
  * <p>Every next line can be one of the following
  * <ul>
@@ -64,53 +73,85 @@ import java.util.List;
  * <p>The OUTPUT format: 
  * <p>OUTPUT #X: N
  * <p>where X - number of test case starting from 1, N - a number if answer exists, "NO SUCH ROUTE" otherwise
+ *
+ * <p>The whole block of queries is read before any of them is executed, so the {@link QueryPlanner} can share the work
+ * between the queries with the same parameters. With {@code -Dalgofun.threads=N} the queries are executed in N threads,
+ * the answers are still printed in the order of the queries. As with the queries executed one by one, the answers to
+ * the queries before the first invalid one, malformed or unknown, are printed before the program fails.
+ *
+ * <p>The input is scanned byte by byte with {@link InputParser}: the edges go straight into the primitive arrays the
+ * graph is built from, the queries are decoded without splitting the lines, straight into the vertex ids the
+ * algorithms are executed with, see {@link ParsedQuery}. The vertexes are decoded from UTF-8. The answers are encoded
+ * into a byte buffer by {@link AnswerWriter} and written to the standard output in large chunks.
+ *
+ * <p>With a file as the argument the graph is taken from the file and the input starts with the number of queries. A
+ * binary graph file is memory mapped, see {@link GraphFile}, any other file is a text file of "XYN" or "FROM TO N"
+ * edges separated by spaces or new lines, which is parsed in parallel chunks, see {@link EdgeFileLoader}.
+ *
+ * <p>With {@code -Dalgofun.snapshot.dir=DIR} the indexes precomputed for the graph are saved to DIR after the queries
+ * and restored on the next run over the same graph, see {@link GraphSnapshot}. The index of the selected P4 strategy is
+ * built before the first query, unless it is restored.
  */
 public class TestExecutor {
         
-    private static final String ANSWER_TEMPLATE = "OUTPUT #%s: %s"; 
-    
     public static void main(final String[] args) throws IOException {
-        BufferedReader br = new BufferedReader(new InputStreamReader(System.in));
+        final InputParser parser = new InputParser(Channels.newChannel(System.in));
 
         final VertexMapper mapper = new VertexMapper();
-        final List<TownGraphEdge> edges = parseAndValidateEdges(br.readLine(), mapper);
+        final TownGraph townGraph;
+        if (args.length > 0 && GraphFile.isGraphFile(Paths.get(args[0]))) {
+            townGraph = GraphFile.map(Paths.get(args[0]), mapper);
+        } else if (args.length > 0) {
+            final InputParser.Edges edges = EdgeFileLoader.load(Paths.get(args[0]), mapper);
+            townGraph = new TownGraph(edges.getFrom(), edges.getTo(), edges.getDistances(),
+                    mapper.numberOfVertexes());
+        } else {
+            final InputParser.Edges edges = parser.parseEdges(mapper);
+            townGraph = new TownGraph(edges.getFrom(), edges.getTo(), edges.getDistances(),
+                    mapper.numberOfVertexes());
+        }
 
-        AlgorithmExecutorFactory factory = new AlgorithmExecutorFactory();
-        
-        final TownGraph townGraph = new TownGraph(edges, mapper.numberOfVertexes());
-        
-        int N = Integer.parseInt(br.readLine());
-        int currentQuery = 0;
-        
-        while(currentQuery++ < N){
-            String[] queryRequest = br.readLine().split("\\s+");
-            
-            Preconditions.checkArgument(queryRequest.length >= 1, "The problem query is missing");
+        final String snapshotDirectory = System.getProperty(GraphSnapshot.DIRECTORY_PROPERTY);
+        if (snapshotDirectory != null) {
+            GraphSnapshot.restore(Paths.get(snapshotDirectory), townGraph, mapper);
+        }
 
-            final INPUT_PROBLEM inputProblem = INPUT_PROBLEM.valueOf(queryRequest[0]);
+        new P4FindShortestDistanceAlgorithm(P4FindShortestDistanceAlgorithm.configuredStrategy()).precompute(townGraph);
 
-            final AlgorithmExecutor algorithm = factory.getAlgorithmExecutor(inputProblem);
+        QueryPlanner planner = new QueryPlanner(new AlgorithmExecutorFactory(),
+                Integer.getInteger(QueryPlanner.THREADS_PROPERTY, 1));
+        
+        long N = parser.parseNumberLine();
+        List<ParsedQuery> queries = Lists.newArrayList();
+        
+        final InputParser.Query query = new InputParser.Query();
+        RuntimeException malformedQuery = null;
+        try {
+            while(queries.size() < N){
+                Preconditions.checkArgument(parser.parseQuery(query), "Expected [%s] queries, found [%s]", N,
+                    queries.size());
 
-            final String algorithmResult = algorithm.validateParametersAndExecute(townGraph, mapper, queryRequest);
-            
-            System.out.println(String.format(ANSWER_TEMPLATE, currentQuery, algorithmResult));
+                queries.add(ParsedQuery.of(query, mapper));
+            }
+        } catch (RuntimeException e) {
+            // the queries read so far are still answered
+            malformedQuery = e;
         }
-    }
 
-    private static List<TownGraphEdge> parseAndValidateEdges(String stringToParse, VertexMapper mapper) {
-        
-        String[] graphEdges = stringToParse.split("\\s");
-        Preconditions.checkArgument(graphEdges.length > 0, "Missing graph edges");
+        final AnswerWriter writer = new AnswerWriter(new FileOutputStream(FileDescriptor.out).getChannel());
+        try {
+            planner.execute(townGraph, queries, writer);
+        } finally {
+            writer.flush();
+            planner.shutdown();
+        }
 
-        List<TownGraphEdge> edges = Lists.newArrayList();
-        for(String strGraphEdge : graphEdges){
-            Preconditions.checkArgument(strGraphEdge.length() >= 3, "Expected graph edge in 'XYN' format, where X and Y - a single characters and N - positive integer");
-            Character fromVertex = strGraphEdge.charAt(0);
-            Character toVertex = strGraphEdge.charAt(1);
-            int distance = Integer.parseInt(strGraphEdge.substring(2));
+        if (malformedQuery != null) {
+            throw malformedQuery;
+        }
 
-            edges.add(new TownGraphEdgeBuilder().from(mapper.mapCharacterToId(fromVertex)).to(mapper.mapCharacterToId(toVertex)).distance(distance).build());
+        if (snapshotDirectory != null) {
+            GraphSnapshot.save(Paths.get(snapshotDirectory), townGraph, mapper);
         }
-        return edges;
     }
 }
@@ -0,0 +1,184 @@
+package test.domain;
+
+import java.nio.IntBuffer;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * <p>Compressed sparse row (CSR) index of the town graph edges. The edges adjacent to a vertex V occupy the positions
+ * [begin(V), end(V)) of the primitive {@code targets} and {@code weights} arrays, so iterating over the neighbours of a
+ * vertex neither boxes integers nor touches edge objects:
+ *
+ * <pre>
+ *     for (int i = index.begin(vertex); i < index.end(vertex); i++) {
+ *         int neighbour = index.target(i);
+ *         int distance = index.weight(i);
+ *     }
+ * </pre>
+ *
+ * <p>The same structure is used for both directions of the graph: in the forward index the target is the TO vertex of
+ * an edge, in the reverse index it is the FROM vertex.
+ *
+ * <p>The index is either built from the edges into heap arrays or wraps the {@link IntBuffer} views of a memory mapped
+ * graph file, so a mapped graph is served without copying it into the heap. The buffer backed implementation is loaded
+ * only when a graph file is mapped, until then the accessors are bound to the arrays.
+ *
+ * <p>The space complexity is O(V+E), where V - number of graph vertexes, E - number of graph edges. Every instance of
+ * the class is immutable.
+ */
+public abstract class CompressedEdgeIndex {
+
+    /**
+     * Builds the index with a stable counting sort by the key vertex, so the edges of every vertex keep their input
+     * order.
+     *
+     * @param  numOfVertexes  number of graph vertexes
+     * @param  keys           vertexes the edges are indexed by
+     * @param  targets        vertexes on the other end of the edges
+     * @param  weights        distances of the edges
+     */
+    static CompressedEdgeIndex build(final int numOfVertexes, final int[] keys, final int[] targets,
+            final int[] weights) {
+
+        final int[] offsets = new int[numOfVertexes + 1];
+        for (int key : keys) {
+            offsets[key + 1]++;
+        }
+
+        for (int vertex = 0; vertex < numOfVertexes; vertex++) {
+            offsets[vertex + 1] += offsets[vertex];
+        }
+
+        final int[] position = new int[numOfVertexes];
+        System.arraycopy(offsets, 0, position, 0, numOfVertexes);
+
+        final int[] sortedTargets = new int[keys.length];
+        final int[] sortedWeights = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            final int at = position[keys[i]]++;
+            sortedTargets[at] = targets[i];
+            sortedWeights[at] = weights[i];
+        }
+
+        return new ArrayIndex(offsets, sortedTargets, sortedWeights);
+    }
+
+    /**
+     * Wraps the CSR arrays, e.g. the views of a memory mapped file. Only the sizes and the bounds of the offsets are
+     * checked, the offsets are expected to be non decreasing and the targets to be less than the number of vertexes.
+     *
+     * @param  offsets  positions the edges of every vertex start at, followed by the number of edges
+     * @param  targets  vertexes on the other end of the edges
+     * @param  weights  distances of the edges
+     */
+    public static CompressedEdgeIndex wrap(final IntBuffer offsets, final IntBuffer targets, final IntBuffer weights) {
+        Preconditions.checkArgument(offsets.limit() >= 1, "Offsets are missing");
+        Preconditions.checkArgument(targets.limit() == weights.limit(),
+            "Targets and weights have different lengths: targets [%s], weights [%s]", targets.limit(),
+            weights.limit());
+        Preconditions.checkArgument(offsets.get(0) == 0 && offsets.get(offsets.limit() - 1) == targets.limit(),
+            "Offsets must span [0, %s]", targets.limit());
+
+        return new BufferIndex(offsets, targets, weights);
+    }
+
+    public abstract int numberOfVertexes();
+
+    public abstract int numberOfEdges();
+
+    public abstract int begin(int vertex);
+
+    public abstract int end(int vertex);
+
+    public int degree(final int vertex) {
+        return end(vertex) - begin(vertex);
+    }
+
+    public abstract int target(int position);
+
+    public abstract int weight(int position);
+
+    private static final class ArrayIndex extends CompressedEdgeIndex {
+        private final int[] offsets;
+        private final int[] targets;
+        private final int[] weights;
+
+        ArrayIndex(final int[] offsets, final int[] targets, final int[] weights) {
+            this.offsets = offsets;
+            this.targets = targets;
+            this.weights = weights;
+        }
+
+        @Override
+        public int numberOfVertexes() {
+            return offsets.length - 1;
+        }
+
+        @Override
+        public int numberOfEdges() {
+            return targets.length;
+        }
+
+        @Override
+        public int begin(final int vertex) {
+            return offsets[vertex];
+        }
+
+        @Override
+        public int end(final int vertex) {
+            return offsets[vertex + 1];
+        }
+
+        @Override
+        public int target(final int position) {
+            return targets[position];
+        }
+
+        @Override
+        public int weight(final int position) {
+            return weights[position];
+        }
+    }
+
+    private static final class BufferIndex extends CompressedEdgeIndex {
+        private final IntBuffer offsets;
+        private final IntBuffer targets;
+        private final IntBuffer weights;
+
+        BufferIndex(final IntBuffer offsets, final IntBuffer targets, final IntBuffer weights) {
+            this.offsets = offsets;
+            this.targets = targets;
+            this.weights = weights;
+        }
+
+        @Override
+        public int numberOfVertexes() {
+            return offsets.limit() - 1;
+        }
+
+        @Override
+        public int numberOfEdges() {
+            return targets.limit();
+        }
+
+        @Override
+        public int begin(final int vertex) {
+            return offsets.get(vertex);
+        }
+
+        @Override
+        public int end(final int vertex) {
+            return offsets.get(vertex + 1);
+        }
+
+        @Override
+        public int target(final int position) {
+            return targets.get(position);
+        }
+
+        @Override
+        public int weight(final int position) {
+            return weights.get(position);
+        }
+    }
+}
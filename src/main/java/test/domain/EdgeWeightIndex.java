@@ -0,0 +1,83 @@
+package test.domain;
+
+import java.util.Arrays;
+
+/**
+ * <p>Hash index of the edge distances keyed by the pair of vertexes, a replacement of the adjacency matrix for the
+ * graphs where V^2 cells do not fit into memory. The key is {@code (long) from << 32 | to}, the keys and the distances
+ * are kept in two primitive arrays with open addressing and linear probing, so a lookup neither boxes nor allocates.
+ *
+ * <p>As in the adjacency matrix, the last of parallel edges wins and a missing edge has {@link #NO_EDGE} distance.
+ *
+ * <p>The space complexity is O(E), where E - number of graph edges. Every instance of the class is immutable.
+ */
+public class EdgeWeightIndex {
+
+    /**
+     * Distance of a missing edge, the distances of the graph edges are positive.
+     */
+    public static final int NO_EDGE = 0;
+
+    private static final long EMPTY = -1L;
+
+    private final long[] keys;
+    private final int[] weights;
+    private final int mask;
+
+    EdgeWeightIndex(final long[] keys, final int[] weights) {
+        this.keys = keys;
+        this.weights = weights;
+        this.mask = keys.length - 1;
+    }
+
+    /**
+     * Builds the index from the forward edges index with the load factor of at most 1/2.
+     */
+    static EdgeWeightIndex build(final CompressedEdgeIndex toEdges) {
+        final int capacity = Integer.highestOneBit(Math.max(2, toEdges.numberOfEdges()) * 2 - 1) << 1;
+
+        final long[] keys = new long[capacity];
+        final int[] weights = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+
+        final EdgeWeightIndex index = new EdgeWeightIndex(keys, weights);
+        for (int from = 0; from < toEdges.numberOfVertexes(); from++) {
+            for (int i = toEdges.begin(from); i < toEdges.end(from); i++) {
+                final long key = key(from, toEdges.target(i));
+                final int slot = index.slot(key);
+                keys[slot] = key;
+                weights[slot] = toEdges.weight(i);
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * @return  distance of the edge from {@code from} to {@code to}, {@link #NO_EDGE} if there is no such edge
+     */
+    public int weight(final int from, final int to) {
+        final long key = key(from, to);
+        final int slot = slot(key);
+
+        return keys[slot] == key ? weights[slot] : NO_EDGE;
+    }
+
+    private int slot(final long key) {
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    private static long key(final int from, final int to) {
+        return (long) from << 32 | (to & 0xFFFFFFFFL);
+    }
+
+    private static int hash(final long key) {
+        final long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32));
+    }
+}
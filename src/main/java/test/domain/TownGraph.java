@@ -1,123 +1,283 @@
 package test.domain;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
-import com.google.common.base.Objects;
+import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 
 /**
  * Represents a connected graph of towns with a positive distance between them. Every instance of the class is immutable
+ *
+ * <p>The edges are stored in two compressed sparse row indexes: the forward one keyed by FROM vertex and the reverse
+ * one keyed by TO vertex. The list based accessors materialize edge objects on every call and are kept for convenience,
+ * the algorithms iterate over {@link #getToEdgesIndex()} and {@link #getFromEdgesIndex()} instead.
+ *
+ * <p>The derived views (vertex set, connectivity and adjacency matrices, edge distance index) are computed lazily on
+ * the first request and shared by all the subsequent callers. The vertex set is unmodifiable, the matrices are shared
+ * arrays and must be treated as read-only by the callers.
+ *
+ * <p>The algorithms may attach their own indexes derived from the graph (e.g. cached matrix powers) with
+ * {@link #getDerivedIndex(Class, Supplier)}, such indexes live as long as the graph does.
  */
 public class TownGraph {
 
-    private final Map<Integer, List<TownGraphEdge>> edgesIndex = new HashMap<>();
-    private final Map<Integer, List<TownGraphEdge>> revertedEdgesIndex = new HashMap<>();
+    private final CompressedEdgeIndex edgesIndex;
+    private final CompressedEdgeIndex revertedEdgesIndex;
+
+    //J-
+    private final Supplier<Set<Integer>> vertexes = Suppliers.memoize(new Supplier<Set<Integer>>() {
+            @Override
+            public Set<Integer> get() {
+                return computeVertexes();
+            }
+        });
+
+    private final Supplier<long[][]> connectivityMatrix = Suppliers.memoize(new Supplier<long[][]>() {
+            @Override
+            public long[][] get() {
+                return computeConnectivityMatrix();
+            }
+        });
+
+    private final Supplier<int[][]> adjacencyMatrix = Suppliers.memoize(new Supplier<int[][]>() {
+            @Override
+            public int[][] get() {
+                return computeAdjacencyMatrix();
+            }
+        });
+
+    private final Supplier<EdgeWeightIndex> edgeWeightIndex = Suppliers.memoize(new Supplier<EdgeWeightIndex>() {
+            @Override
+            public EdgeWeightIndex get() {
+                return EdgeWeightIndex.build(edgesIndex);
+            }
+        });
+    //J+
+
+    private final ConcurrentMap<Class<?>, Object> derivedIndexes = new ConcurrentHashMap<>();
 
     public TownGraph(final List<TownGraphEdge> graphEdges, final int numOfVertexes) {
+        this(fromVertexes(graphEdges), toVertexes(graphEdges), distances(graphEdges), numOfVertexes);
+    }
 
-        if (graphEdges == null || graphEdges.isEmpty()) {
+    /**
+     * Creates the graph from the primitive edge arrays, where i-th edge goes from {@code from[i]} to {@code to[i]} and
+     * has {@code distances[i]} length.
+     */
+    public TownGraph(final int[] from, final int[] to, final int[] distances, final int numOfVertexes) {
+
+        if (from == null || from.length == 0) {
             throw new IllegalArgumentException("edges are missing");
         }
 
-        for (TownGraphEdge edge : graphEdges) {
-            Preconditions.checkArgument(edge.getFrom() >= 0 && edge.getFrom() < numOfVertexes,
-                "Wrong from vertex [%s], expected to be less than [%s]", edge.getFrom(), numOfVertexes);
-            Preconditions.checkArgument(edge.getTo() >= 0 && edge.getTo() < numOfVertexes,
-                "Wrong from vertex [%s], expected to be less than [%s]", edge.getTo(), numOfVertexes);
-            indexGraphEdge(edgesIndex, edge);
-            reverseIndexGraphEdge(revertedEdgesIndex, edge);
+        Preconditions.checkArgument(from.length == to.length && from.length == distances.length,
+            "Edge arrays have different lengths: from [%s], to [%s], distances [%s]", from.length, to.length,
+            distances.length);
+
+        for (int i = 0; i < from.length; i++) {
+            Preconditions.checkArgument(from[i] >= 0 && from[i] < numOfVertexes,
+                "Wrong from vertex [%s], expected to be less than [%s]", from[i], numOfVertexes);
+            Preconditions.checkArgument(to[i] >= 0 && to[i] < numOfVertexes,
+                "Wrong from vertex [%s], expected to be less than [%s]", to[i], numOfVertexes);
+            Preconditions.checkArgument(distances[i] > 0, "Distance must be positive, was [%s]", distances[i]);
         }
+
+        this.edgesIndex = CompressedEdgeIndex.build(numOfVertexes, from, to, distances);
+        this.revertedEdgesIndex = CompressedEdgeIndex.build(numOfVertexes, to, from, distances);
     }
 
-    private static void indexGraphEdge(final Map<Integer, List<TownGraphEdge>> index, final TownGraphEdge edge) {
+    /**
+     * Creates the graph over prepared edge indexes, e.g. the ones of a memory mapped graph file. The reverse index is
+     * expected to hold the same edges as the forward one.
+     */
+    public TownGraph(final CompressedEdgeIndex toEdgesIndex, final CompressedEdgeIndex fromEdgesIndex) {
+        Preconditions.checkArgument(toEdgesIndex.numberOfEdges() > 0, "edges are missing");
+        Preconditions.checkArgument(toEdgesIndex.numberOfVertexes() == fromEdgesIndex.numberOfVertexes()
+                && toEdgesIndex.numberOfEdges() == fromEdgesIndex.numberOfEdges(),
+            "Forward and reverse indexes differ: vertexes [%s] and [%s], edges [%s] and [%s]",
+            toEdgesIndex.numberOfVertexes(), fromEdgesIndex.numberOfVertexes(), toEdgesIndex.numberOfEdges(),
+            fromEdgesIndex.numberOfEdges());
+
+        this.edgesIndex = toEdgesIndex;
+        this.revertedEdgesIndex = fromEdgesIndex;
+    }
 
-        final List<TownGraphEdge> toNeighbours = Objects.firstNonNull(index.get(edge.getFrom()),
-                new ArrayList<TownGraphEdge>());
-        toNeighbours.add(edge);
-        index.put(edge.getFrom(), toNeighbours);
+    private static int[] fromVertexes(final List<TownGraphEdge> graphEdges) {
+        checkEdgesPresent(graphEdges);
 
-        if (index.get(edge.getTo()) == null) {
-            index.put(edge.getTo(), new ArrayList<TownGraphEdge>());
+        final int[] result = new int[graphEdges.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = graphEdges.get(i).getFrom();
         }
+
+        return result;
     }
 
-    private static void reverseIndexGraphEdge(final Map<Integer, List<TownGraphEdge>> index, final TownGraphEdge edge) {
+    private static int[] toVertexes(final List<TownGraphEdge> graphEdges) {
+        final int[] result = new int[graphEdges.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = graphEdges.get(i).getTo();
+        }
 
-        final List<TownGraphEdge> toNeighbours = Objects.firstNonNull(index.get(edge.getTo()),
-                new ArrayList<TownGraphEdge>());
-        toNeighbours.add(edge);
-        index.put(edge.getTo(), toNeighbours);
+        return result;
+    }
 
-        if (index.get(edge.getFrom()) == null) {
-            index.put(edge.getFrom(), new ArrayList<TownGraphEdge>());
+    private static int[] distances(final List<TownGraphEdge> graphEdges) {
+        final int[] result = new int[graphEdges.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = graphEdges.get(i).getDistance();
         }
+
+        return result;
+    }
+
+    private static void checkEdgesPresent(final List<TownGraphEdge> graphEdges) {
+        if (graphEdges == null || graphEdges.isEmpty()) {
+            throw new IllegalArgumentException("edges are missing");
+        }
+    }
+
+    /**
+     * Forward index: for every vertex holds the edges going out of it, the target of an edge is its TO vertex.
+     */
+    public CompressedEdgeIndex getToEdgesIndex() {
+        return edgesIndex;
+    }
+
+    /**
+     * Reverse index: for every vertex holds the edges coming into it, the target of an edge is its FROM vertex.
+     */
+    public CompressedEdgeIndex getFromEdgesIndex() {
+        return revertedEdgesIndex;
     }
 
     public List<TownGraphEdge> getToEdges(final int from) {
-        final List<TownGraphEdge> list = edgesIndex.get(from);
+        final List<TownGraphEdge> list = new ArrayList<>();
 
-        if (list == null) {
-            return new ArrayList<>();
+        if (from < 0 || from >= edgesIndex.numberOfVertexes()) {
+            return list;
+        }
+
+        for (int i = edgesIndex.begin(from); i < edgesIndex.end(from); i++) {
+            list.add(new TownGraphEdge(from, edgesIndex.target(i), edgesIndex.weight(i)));
         }
 
         return list;
     }
 
     public List<TownGraphEdge> getFromEdges(final int to) {
+        final List<TownGraphEdge> list = new ArrayList<>();
 
-        final List<TownGraphEdge> list = revertedEdgesIndex.get(to);
+        if (to < 0 || to >= revertedEdgesIndex.numberOfVertexes()) {
+            return list;
+        }
 
-        if (list == null) {
-            return new ArrayList<>();
+        for (int i = revertedEdgesIndex.begin(to); i < revertedEdgesIndex.end(to); i++) {
+            list.add(new TownGraphEdge(revertedEdgesIndex.target(i), to, revertedEdgesIndex.weight(i)));
         }
 
         return list;
     }
 
     public Set<Integer> getVertexes() {
+        return vertexes.get();
+    }
+
+    private Set<Integer> computeVertexes() {
         final Set<Integer> result = new HashSet<>();
 
-        for (Map.Entry<Integer, List<TownGraphEdge>> entry : edgesIndex.entrySet()) {
-            result.add(entry.getKey());
-            for (TownGraphEdge townGraphEdge : entry.getValue()) {
-                result.add(townGraphEdge.getFrom());
+        for (int vertex = 0; vertex < edgesIndex.numberOfVertexes(); vertex++) {
+            if (edgesIndex.degree(vertex) > 0 || revertedEdgesIndex.degree(vertex) > 0) {
+                result.add(vertex);
             }
         }
 
-        return result;
+        return Collections.unmodifiableSet(result);
     }
 
+    /**
+     * @return  shared matrix where cell [i][j] is 1 if there is an edge from i to j, 0 otherwise. Must not be modified.
+     */
     public long[][] getConnectivityMatrix() {
+        return connectivityMatrix.get();
+    }
+
+    private long[][] computeConnectivityMatrix() {
         final Set<Integer> vertexes = getVertexes();
         long[][] connectivityMatrix = new long[vertexes.size()][vertexes.size()];
 
         for (int fromVertex : vertexes) {
-            for (TownGraphEdge toTownGraphEdge : getToEdges(fromVertex)) {
-                connectivityMatrix[fromVertex][toTownGraphEdge.getTo()] = 1;
+            for (int i = edgesIndex.begin(fromVertex); i < edgesIndex.end(fromVertex); i++) {
+                connectivityMatrix[fromVertex][edgesIndex.target(i)] = 1;
             }
         }
 
         return connectivityMatrix;
     }
 
+    /**
+     * @return  shared matrix where cell [i][j] is the distance of the edge from i to j, 0 if there is no such edge.
+     *          Must not be modified.
+     */
     public int[][] getAdjacencyMatrix() {
+        return adjacencyMatrix.get();
+    }
+
+    private int[][] computeAdjacencyMatrix() {
         final Set<Integer> vertexes = getVertexes();
         int[][] adjacencyMatrix = new int[vertexes.size()][vertexes.size()];
 
         for (int fromVertex : vertexes) {
-            for (TownGraphEdge toTownGraphEdge : getToEdges(fromVertex)) {
-                adjacencyMatrix[fromVertex][toTownGraphEdge.getTo()] = toTownGraphEdge.getDistance();
+            for (int i = edgesIndex.begin(fromVertex); i < edgesIndex.end(fromVertex); i++) {
+                adjacencyMatrix[fromVertex][edgesIndex.target(i)] = edgesIndex.weight(i);
             }
         }
 
         return adjacencyMatrix;
     }
 
+    /**
+     * @return  shared index of the edge distances by the pair of vertexes, which takes O(E) memory unlike the adjacency
+     *          matrix
+     */
+    public EdgeWeightIndex getEdgeWeightIndex() {
+        return edgeWeightIndex.get();
+    }
+
+    /**
+     * Returns the index of the given type derived from the graph, the index is created with {@code factory} on the
+     * first request and shared by all the subsequent callers.
+     */
+    public <T> T getDerivedIndex(final Class<T> type, final Supplier<? extends T> factory) {
+        Object index = derivedIndexes.get(type);
+        if (index == null) {
+            synchronized (derivedIndexes) {
+                index = derivedIndexes.get(type);
+                if (index == null) {
+                    index = Preconditions.checkNotNull(factory.get(), "Derived index [%s] is null", type);
+                    derivedIndexes.put(type, index);
+                }
+            }
+        }
+
+        return type.cast(index);
+    }
+
+    /**
+     * @return  the index of the given type derived from the graph, absent if it has not been requested yet
+     */
+    public <T> Optional<T> getDerivedIndexIfPresent(final Class<T> type) {
+        return Optional.fromNullable(type.cast(derivedIndexes.get(type)));
+    }
+
     public boolean isInGraph(final int vertex) {
         return vertex >= 0 && vertex < getVertexes().size();
     }
@@ -0,0 +1,142 @@
+package test.logic;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import com.google.common.base.Preconditions;
+
+import test.logic.algorithms.AnswerConsumer;
+
+/**
+ * <p>Writes the answers as "OUTPUT #N: ANSWER" lines, where N - number of the query starting from 1, encoding them
+ * straight into a reused byte buffer which goes to the channel in large chunks. The output is byte identical to
+ * printing the lines with {@code System.out.println}: the ASCII answers are copied char by char, any other answer is
+ * encoded with the default charset, the lines end with the platform line separator.
+ *
+ * <p>The writer is not thread safe, the answers are expected from a single thread at a time, e.g. through a
+ * {@code ReorderBuffer}. The buffered answers reach the channel on {@link #flush()}.
+ */
+public class AnswerWriter implements AnswerConsumer, Flushable {
+
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    private static final byte[] PREFIX = ascii("OUTPUT #");
+
+    private static final byte[] SEPARATOR = ascii(": ");
+
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(Charset.defaultCharset());
+
+    // the longest line head: prefix, the digits of the largest query number and the separator
+    private static final int MAX_HEAD_LENGTH = PREFIX.length + 10 + SEPARATOR.length;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final byte[] bytes;
+    private int position;
+
+    public AnswerWriter(final WritableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    public AnswerWriter(final WritableByteChannel channel, final int bufferSize) {
+        Preconditions.checkArgument(bufferSize >= MAX_HEAD_LENGTH + LINE_SEPARATOR.length,
+            "Buffer size is too small [%s]", bufferSize);
+
+        this.channel = Preconditions.checkNotNull(channel, "Channel is missing");
+        this.bytes = new byte[bufferSize];
+        this.buffer = ByteBuffer.wrap(bytes);
+    }
+
+    @Override
+    public void accept(final int queryIndex, final String answer) {
+        try {
+            if (bytes.length - position < MAX_HEAD_LENGTH) {
+                flush();
+            }
+
+            put(PREFIX);
+            putNumber(queryIndex + 1);
+            put(SEPARATOR);
+            putAnswer(answer);
+            put(LINE_SEPARATOR);
+        } catch (IOException e) {
+            throw new IllegalStateException("Can't write the answer", e);
+        }
+    }
+
+    /**
+     * Writes the buffered answers to the channel.
+     */
+    @Override
+    public void flush() throws IOException {
+        buffer.limit(position).position(0);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+
+        buffer.clear();
+        position = 0;
+    }
+
+    private void putAnswer(final String answer) throws IOException {
+        final int length = answer.length();
+        for (int i = 0; i < length; i++) {
+            if (answer.charAt(i) >= 0x80) {
+                put(answer.getBytes(Charset.defaultCharset()));
+                return;
+            }
+        }
+
+        int i = 0;
+        while (i < length) {
+            if (position == bytes.length) {
+                flush();
+            }
+
+            final int end = Math.min(length, i + bytes.length - position);
+            for (; i < end; i++) {
+                bytes[position++] = (byte) answer.charAt(i);
+            }
+        }
+    }
+
+    /**
+     * Puts the decimal digits of a positive number, the space for them is ensured by the caller.
+     */
+    private void putNumber(final int number) {
+        int digits = 1;
+        for (int n = number; n >= 10; n /= 10) {
+            digits++;
+        }
+
+        int n = number;
+        for (int i = position + digits - 1; i >= position; i--) {
+            bytes[i] = (byte) ('0' + n % 10);
+            n /= 10;
+        }
+
+        position += digits;
+    }
+
+    private void put(final byte[] source) throws IOException {
+        int i = 0;
+        while (i < source.length) {
+            if (position == bytes.length) {
+                flush();
+            }
+
+            final int count = Math.min(source.length - i, bytes.length - position);
+            System.arraycopy(source, i, bytes, position, count);
+            position += count;
+            i += count;
+        }
+    }
+
+    private static byte[] ascii(final String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
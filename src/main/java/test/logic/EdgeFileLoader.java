@@ -0,0 +1,429 @@
+package test.logic;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+
+import test.logic.utils.ParallelUtils;
+
+/**
+ * <p>Loads a large file of graph edges separated by any white space, new lines included, into primitive edge arrays in
+ * parallel. The edges are either compact "XYN" or named "FROM TO N", the format is decided by the first token as in
+ * {@link InputParser#parseEdges(VertexMapper)}. The file is split into chunks of a fixed size, every chunk is memory
+ * mapped and parsed by a fork/join task into its own arrays of the chunk local vertex ids and distances. A compact edge
+ * belongs to the chunk it starts in. The vertexes are decoded by the same rules as in {@link InputParser}, see
+ * {@link VertexCharacterDecoder}, so both accept the same graphs.
+ *
+ * <p>A named edge takes three tokens, so a chunk can't tell which of its tokens starts an edge on its own: the tokens
+ * starting in every chunk are counted in parallel first, and the counts of the previous chunks tell how many leading
+ * tokens of a chunk finish the edge started before it. Then a named edge belongs to the chunk its FROM vertex starts
+ * in, as a compact one.
+ *
+ * <p>The vertex ids are assigned in the order of the first occurrence of the vertexes in the file, the same way as the
+ * sequential {@link InputParser} does: every chunk names its vertexes in its own {@link VertexMapper} in the order of
+ * their first occurrence in the chunk, and the names are mapped with the resulting mapper in the order of the chunks,
+ * which takes one step per distinct vertex of a chunk. Then the chunks translate their local ids into the resulting
+ * ones and copy the edges into the resulting arrays in parallel, so the graph is built from them with a single
+ * counting sort, see {@code TownGraph(int[], int[], int[], int)}.
+ *
+ * <p>The time complexity is O(N/P + C*U), where N - size of the file, P - number of processors, C - number of chunks,
+ * U - number of distinct vertexes of a chunk. The space complexity is O(E+C*U), where E - number of edges.
+ */
+public class EdgeFileLoader {
+
+    /**
+     * Size of the chunk of the file parsed by a single task.
+     */
+    static final int DEFAULT_CHUNK_SIZE = 1 << 24;
+
+    // the longest edge: the vertex names, the digits of the distance and the white space between them
+    private static final int MAX_EDGE_LENGTH = 1 << 12;
+
+    private static final int EDGE_TOKENS = 3;
+
+    private static final int FORMAT_BUFFER_SIZE = 1 << 12;
+
+    /**
+     * @return  the edges of the file, the vertexes are mapped to ids with {@code mapper}
+     */
+    public static InputParser.Edges load(final Path path, final VertexMapper mapper) throws IOException {
+        return load(path, mapper, DEFAULT_CHUNK_SIZE);
+    }
+
+    static InputParser.Edges load(final Path path, final VertexMapper mapper, final int chunkSize)
+        throws IOException {
+        Preconditions.checkArgument(chunkSize > 0, "Chunk size must be positive, was [%s]", chunkSize);
+
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            final Chunk[] chunks = new Chunk[(int) Math.max(1, (size + chunkSize - 1) / chunkSize)];
+            for (int c = 0; c < chunks.length; c++) {
+                chunks[c] = new Chunk(channel, (long) c * chunkSize, Math.min(size, (long) (c + 1) * chunkSize));
+            }
+
+            if (new InputParser(channel, FORMAT_BUFFER_SIZE).startsWithCompactEdge()) {
+                invoke(new ChunksTask(chunks, 0, chunks.length, Pass.PARSE_COMPACT, null));
+            } else {
+                invoke(new ChunksTask(chunks, 0, chunks.length, Pass.COUNT_TOKENS, null));
+
+                long tokens = 0;
+                for (Chunk chunk : chunks) {
+                    chunk.skippedTokens = (int) ((EDGE_TOKENS - tokens % EDGE_TOKENS) % EDGE_TOKENS);
+                    tokens += chunk.numberOfTokens;
+                }
+
+                invoke(new ChunksTask(chunks, 0, chunks.length, Pass.PARSE_NAMED, null));
+            }
+
+            // chunk local id -> id, in the order of the first occurrence in the file
+            final int[][] ids = new int[chunks.length][];
+            final int[] offsets = new int[chunks.length + 1];
+            for (int c = 0; c < chunks.length; c++) {
+                final VertexMapper vertexes = chunks[c].vertexes;
+                ids[c] = new int[vertexes.numberOfVertexes()];
+                for (int vertex = 0; vertex < ids[c].length; vertex++) {
+                    ids[c][vertex] = mapper.mapNameToId(vertexes.name(vertex));
+                }
+
+                chunks[c].vertexes = null;
+
+                Preconditions.checkArgument((long) offsets[c] + chunks[c].numberOfEdges <= Integer.MAX_VALUE,
+                    "Too many edges in [%s]", path);
+                offsets[c + 1] = offsets[c] + chunks[c].numberOfEdges;
+            }
+
+            Preconditions.checkArgument(offsets[chunks.length] > 0, "Missing graph edges");
+
+            final InputParser.Edges edges = new InputParser.Edges(new int[offsets[chunks.length]],
+                    new int[offsets[chunks.length]], new int[offsets[chunks.length]]);
+            invoke(new ChunksTask(chunks, 0, chunks.length, Pass.MERGE, new Merge(ids, offsets, edges)));
+
+            return edges;
+        }
+    }
+
+    private static void invoke(final ChunksTask task) throws IOException {
+        try {
+            ParallelUtils.pool().invoke(task);
+        } catch (RuntimeException e) {
+            for (Throwable cause : Throwables.getCausalChain(e)) {
+                Throwables.propagateIfInstanceOf(cause, IOException.class);
+            }
+
+            throw e;
+        }
+    }
+
+    /**
+     * Passes over the chunks: the compact edges are parsed in a single pass, the named ones need the tokens counted
+     * first; the last pass merges the parsed chunks into the result.
+     */
+    private enum Pass {
+        PARSE_COMPACT, COUNT_TOKENS, PARSE_NAMED, MERGE
+    }
+
+    /**
+     * Target of the last pass: translation tables of the chunk local ids and the positions of the chunks in the
+     * result.
+     */
+    private static class Merge {
+        private final int[][] ids;
+        private final int[] offsets;
+        private final InputParser.Edges edges;
+
+        Merge(final int[][] ids, final int[] offsets, final InputParser.Edges edges) {
+            this.ids = ids;
+            this.offsets = offsets;
+            this.edges = edges;
+        }
+    }
+
+    /**
+     * Runs a pass over the chunks.
+     */
+    @SuppressWarnings("serial")
+    private static class ChunksTask extends RecursiveAction {
+        private final Chunk[] chunks;
+        private final int fromChunk;
+        private final int toChunk;
+        private final Pass pass;
+        private final Merge merge;
+
+        ChunksTask(final Chunk[] chunks, final int fromChunk, final int toChunk, final Pass pass, final Merge merge) {
+            this.chunks = chunks;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+            this.pass = pass;
+            this.merge = merge;
+        }
+
+        @Override
+        protected void compute() {
+            if (toChunk - fromChunk > 1) {
+                final int middleChunk = (fromChunk + toChunk) >>> 1;
+                invokeAll(new ChunksTask(chunks, fromChunk, middleChunk, pass, merge),
+                    new ChunksTask(chunks, middleChunk, toChunk, pass, merge));
+                return;
+            }
+
+            try {
+                switch (pass) {
+
+                    case PARSE_COMPACT :
+                        chunks[fromChunk].parseCompact();
+                        break;
+
+                    case COUNT_TOKENS :
+                        chunks[fromChunk].countTokens();
+                        break;
+
+                    case PARSE_NAMED :
+                        chunks[fromChunk].parseNamed();
+                        break;
+
+                    default :
+                        chunks[fromChunk].mergeInto(merge, fromChunk);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Can't read the edges", e);
+            }
+        }
+    }
+
+    /**
+     * Edges starting in [begin, end) of the file.
+     */
+    private static class Chunk {
+        private final FileChannel channel;
+        private final long begin;
+        private final long end;
+
+        // vertexes of the chunk, the local ids are in the order of their first occurrence in the chunk
+        private VertexMapper vertexes = new VertexMapper();
+
+        private int[] from = new int[16];
+        private int[] to = new int[16];
+        private int[] distances = new int[16];
+        private int numberOfEdges;
+
+        // tokens starting in the chunk, and the leading ones of them which finish a named edge of the previous chunks
+        private int numberOfTokens;
+        private int skippedTokens;
+
+        // the mapped bytes of the chunk during a pass, the chunk ends at chunkEnd, the edges may run up to the limit
+        private MappedByteBuffer buffer;
+        private long mapBegin;
+        private int position;
+        private int chunkEnd;
+        private int limit;
+        private boolean endOfFile;
+        private final StringBuilder name = new StringBuilder();
+
+        Chunk(final FileChannel channel, final long begin, final long end) {
+            this.channel = channel;
+            this.begin = begin;
+            this.end = end;
+        }
+
+        void parseCompact() throws IOException {
+            map(MAX_EDGE_LENGTH);
+
+            while (true) {
+                skipSpaces();
+                if (position >= chunkEnd || position >= limit) {
+                    break;
+                }
+
+                final long edgeOffset = mapBegin + position;
+
+                final int fromVertex = vertexes.mapCharacterToId(readCharacter(edgeOffset));
+                Preconditions.checkArgument(position < limit && !isSpace(buffer.get(position)),
+                    "Expected graph edge in 'XYN' format at byte [%s]", edgeOffset);
+
+                final int toVertex = vertexes.mapCharacterToId(readCharacter(edgeOffset));
+                addEdge(fromVertex, toVertex, readDistance(edgeOffset));
+            }
+
+            buffer = null;
+        }
+
+        void countTokens() throws IOException {
+            map(0);
+
+            while (true) {
+                skipSpaces();
+                if (position >= chunkEnd) {
+                    break;
+                }
+
+                numberOfTokens++;
+                while (position < chunkEnd && !isSpace(buffer.get(position))) {
+                    position++;
+                }
+            }
+
+            buffer = null;
+        }
+
+        void parseNamed() throws IOException {
+            map(MAX_EDGE_LENGTH);
+
+            for (int i = 0; i < skippedTokens; i++) {
+                skipSpaces();
+                while (position < chunkEnd && !isSpace(buffer.get(position))) {
+                    position++;
+                }
+            }
+
+            while (true) {
+                skipSpaces();
+                if (position >= chunkEnd || position >= limit) {
+                    break;
+                }
+
+                final long edgeOffset = mapBegin + position;
+
+                final int fromVertex = vertexes.mapNameToId(readName(edgeOffset));
+
+                skipSpaces();
+                final int toVertex = vertexes.mapNameToId(readName(edgeOffset));
+
+                skipSpaces();
+                addEdge(fromVertex, toVertex, readDistance(edgeOffset));
+            }
+
+            buffer = null;
+        }
+
+        void mergeInto(final Merge merge, final int chunk) {
+            final int offset = merge.offsets[chunk];
+            final int[] ids = merge.ids[chunk];
+            final int[] mergedFrom = merge.edges.getFrom();
+            final int[] mergedTo = merge.edges.getTo();
+            for (int i = 0; i < numberOfEdges; i++) {
+                mergedFrom[offset + i] = ids[from[i]];
+                mergedTo[offset + i] = ids[to[i]];
+            }
+
+            System.arraycopy(distances, 0, merge.edges.getDistances(), offset, numberOfEdges);
+
+            from = null;
+            to = null;
+            distances = null;
+        }
+
+        private void addEdge(final int fromVertex, final int toVertex, final int distance) {
+            if (numberOfEdges == from.length) {
+                from = Arrays.copyOf(from, numberOfEdges * 2);
+                to = Arrays.copyOf(to, numberOfEdges * 2);
+                distances = Arrays.copyOf(distances, numberOfEdges * 2);
+            }
+
+            from[numberOfEdges] = fromVertex;
+            to[numberOfEdges] = toVertex;
+            distances[numberOfEdges] = distance;
+            numberOfEdges++;
+        }
+
+        /**
+         * Maps the chunk with the given number of bytes after it and skips the tail of the token started in the
+         * previous chunk.
+         */
+        private void map(final int lookahead) throws IOException {
+            // one byte before the chunk tells if the first token starts in the previous chunk
+            mapBegin = Math.max(0, begin - 1);
+
+            final long mapEnd = Math.min(channel.size(), end + lookahead);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, mapBegin, mapEnd - mapBegin);
+            limit = buffer.limit();
+            chunkEnd = (int) (end - mapBegin);
+            endOfFile = mapEnd == channel.size();
+            position = (int) (begin - mapBegin);
+
+            if (position > 0 && !isSpace(buffer.get(position - 1))) {
+                while (position < limit && !isSpace(buffer.get(position))) {
+                    position++;
+                }
+            }
+        }
+
+        private void skipSpaces() {
+            while (position < limit && isSpace(buffer.get(position))) {
+                position++;
+            }
+        }
+
+        /**
+         * @return  the vertex name starting at the position, the builder is reused by the next call
+         */
+        private CharSequence readName(final long edgeOffset) {
+            checkEdgeLength(edgeOffset);
+            Preconditions.checkArgument(position < limit,
+                "Expected graph edge in 'FROM TO N' format at byte [%s]", edgeOffset);
+
+            name.setLength(0);
+            while (position < limit && !isSpace(buffer.get(position))) {
+                name.append(readCharacter(edgeOffset));
+            }
+
+            checkEdgeLength(edgeOffset);
+            return name;
+        }
+
+        /**
+         * @return  the vertex character starting at the position
+         */
+        private char readCharacter(final long edgeOffset) {
+            final int first = buffer.get(position) & 0xFF;
+            final int length = VertexCharacterDecoder.encodedLength(first);
+            Preconditions.checkArgument(position + length <= limit, "Malformed vertex of graph edge at byte [%s]",
+                edgeOffset);
+
+            int character = VertexCharacterDecoder.start(first);
+            for (int i = 1; i < length; i++) {
+                character = VertexCharacterDecoder.append(character, buffer.get(position + i) & 0xFF);
+            }
+
+            position += length;
+            return VertexCharacterDecoder.finish(character, length);
+        }
+
+        /**
+         * @return  the distance ending the edge at the position
+         */
+        private int readDistance(final long edgeOffset) {
+            long distance = 0;
+            int digits = 0;
+            while (position < limit && !isSpace(buffer.get(position))) {
+                final int digit = buffer.get(position) - '0';
+                Preconditions.checkArgument(digit >= 0 && digit <= 9 && distance <= Integer.MAX_VALUE,
+                    "Wrong distance of graph edge at byte [%s]", edgeOffset);
+                distance = distance * 10 + digit;
+                digits++;
+                position++;
+            }
+
+            checkEdgeLength(edgeOffset);
+            Preconditions.checkArgument(digits > 0 && distance <= Integer.MAX_VALUE,
+                "Wrong distance of graph edge at byte [%s]", edgeOffset);
+
+            return (int) distance;
+        }
+
+        private void checkEdgeLength(final long edgeOffset) {
+            Preconditions.checkArgument(position < limit || endOfFile, "Graph edge at byte [%s] is too long",
+                edgeOffset);
+        }
+
+        private static boolean isSpace(final byte b) {
+            return VertexCharacterDecoder.isSpace(b);
+        }
+    }
+}
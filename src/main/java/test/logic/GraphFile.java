@@ -0,0 +1,233 @@
+package test.logic;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import com.google.common.base.Preconditions;
+
+import test.domain.CompressedEdgeIndex;
+import test.domain.TownGraph;
+
+/**
+ * <p>Binary file of a prepared graph, which is memory mapped and served without parsing or copying it into the heap.
+ * All the values are little endian, the file consists of the sections:
+ *
+ * <ul>
+ *     <li>header: magic "NAGF", format version, number of vertexes V, number of edges E, size of the vertex names N -
+ *         five ints
+ *     <li>vertex name offsets: V+1 ints, the name of vertex id i spans the bytes from i-th to (i+1)-th offset
+ *     <li>vertex names: N bytes, the names of all the vertexes encoded in CESU-8 as in {@link VertexMapper}, padded to
+ *         4 bytes
+ *     <li>forward CSR index: V+1 offsets, E targets, E weights - ints, see {@link CompressedEdgeIndex}
+ *     <li>reverse CSR index: the same for the edges keyed by TO vertex
+ * </ul>
+ *
+ * <p>Every CSR array is mapped with {@link FileChannel#map} and viewed as an {@code IntBuffer}, the pages are loaded by
+ * the OS on the first access and shared by the processes mapping the same file. Loading a graph takes O(V+N) time for
+ * the vertex names only, independently of the number of edges: the offsets and the names are read into the mapper in
+ * bulk. An array must not exceed 2GB, i.e. 512M edges.
+ *
+ * <p>The contents of the CSR arrays are trusted, only the header and the sizes are checked: a file is expected to be
+ * written by {@link #write(Path, TownGraph, VertexMapper)}. To convert a graph in the text format:
+ *
+ * <pre>
+ *     echo "AB5 BC4 CD8 DC8 DE6 AD5 CE2 EB3 AE7" | java test.logic.GraphFile graph.bin
+ *     echo "Paris Lyon 465 Lyon Nice 470" | java test.logic.GraphFile graph.bin
+ * </pre>
+ */
+public class GraphFile {
+
+    private static final int MAGIC = 0x4647414E;
+
+    private static final int VERSION = 2;
+
+    private static final int HEADER_SIZE = 20;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    public static void main(final String[] args) throws IOException {
+        Preconditions.checkArgument(args.length == 1, "Expected the path of the graph file");
+
+        final VertexMapper mapper = new VertexMapper();
+        final InputParser.Edges edges = new InputParser(Channels.newChannel(System.in)).parseEdges(mapper);
+
+        write(Paths.get(args[0]),
+            new TownGraph(edges.getFrom(), edges.getTo(), edges.getDistances(), mapper.numberOfVertexes()), mapper);
+    }
+
+    /**
+     * Writes the graph with the names of its vertexes, an existing file is replaced.
+     */
+    public static void write(final Path path, final TownGraph townGraph, final VertexMapper mapper)
+        throws IOException {
+        final CompressedEdgeIndex toEdges = townGraph.getToEdgesIndex();
+        final CompressedEdgeIndex fromEdges = townGraph.getFromEdgesIndex();
+        final int numberOfVertexes = toEdges.numberOfVertexes();
+        Preconditions.checkArgument(mapper.numberOfVertexes() == numberOfVertexes,
+            "Mapper has [%s] vertexes, graph has [%s]", mapper.numberOfVertexes(), numberOfVertexes);
+
+        final int[] nameOffsets = mapper.nameOffsets();
+        final byte[] names = mapper.arena();
+        final int namesSize = nameOffsets[numberOfVertexes];
+
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(numberOfVertexes).putInt(toEdges.numberOfEdges())
+                  .putInt(namesSize);
+
+            for (int vertex = 0; vertex <= numberOfVertexes; vertex++) {
+                ensureRemaining(channel, buffer, 4);
+                buffer.putInt(nameOffsets[vertex]);
+            }
+
+            for (int offset = 0; offset < namesSize;) {
+                ensureRemaining(channel, buffer, 1);
+
+                final int length = Math.min(buffer.remaining(), namesSize - offset);
+                buffer.put(names, offset, length);
+                offset += length;
+            }
+
+            ensureRemaining(channel, buffer, 4);
+            buffer.put(new byte[padding(namesSize)]);
+
+            writeIndex(channel, buffer, toEdges);
+            writeIndex(channel, buffer, fromEdges);
+
+            drain(channel, buffer);
+        }
+    }
+
+    /**
+     * Maps the graph file, the names of the vertexes are registered in the empty {@code mapper} in the order of their
+     * ids.
+     */
+    public static TownGraph map(final Path path, final VertexMapper mapper) throws IOException {
+        Preconditions.checkArgument(mapper.numberOfVertexes() == 0, "Mapper must be empty, has [%s] vertexes",
+            mapper.numberOfVertexes());
+
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final ByteBuffer header = readHeader(channel);
+            Preconditions.checkArgument(header != null && header.getInt(0) == MAGIC, "Not a graph file [%s]", path);
+            Preconditions.checkArgument(header.getInt(4) == VERSION, "Unsupported graph file version [%s]",
+                header.getInt(4));
+
+            final int numberOfVertexes = header.getInt(8);
+            final int numberOfEdges = header.getInt(12);
+            final int namesSize = header.getInt(16);
+            Preconditions.checkArgument(numberOfVertexes > 0 && numberOfEdges > 0 && namesSize >= numberOfVertexes,
+                "Wrong graph size: vertexes [%s], edges [%s], names [%s]", numberOfVertexes, numberOfEdges, namesSize);
+
+            final long nameOffsetsSize = 4L * (numberOfVertexes + 1);
+            final long vertexTableSize = nameOffsetsSize + namesSize + padding(namesSize);
+            final long indexSize = 4L * (numberOfVertexes + 1) + 8L * numberOfEdges;
+            final long expectedSize = HEADER_SIZE + vertexTableSize + 2 * indexSize;
+            Preconditions.checkArgument(channel.size() == expectedSize, "Wrong graph file size [%s], expected [%s]",
+                channel.size(), expectedSize);
+
+            final int[] nameOffsets = new int[numberOfVertexes + 1];
+            mapInts(channel, HEADER_SIZE, nameOffsetsSize).get(nameOffsets);
+
+            final byte[] names = new byte[namesSize];
+            channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + nameOffsetsSize, namesSize).get(names);
+
+            mapper.mapNames(nameOffsets, names);
+
+            final long toEdgesPosition = HEADER_SIZE + vertexTableSize;
+            final CompressedEdgeIndex toEdges = mapIndex(channel, toEdgesPosition, numberOfVertexes, numberOfEdges);
+            final CompressedEdgeIndex fromEdges = mapIndex(channel, toEdgesPosition + indexSize, numberOfVertexes,
+                    numberOfEdges);
+
+            // the mappings stay valid after the channel is closed
+            return new TownGraph(toEdges, fromEdges);
+        }
+    }
+
+    /**
+     * @return  true if the file starts with the header of a graph file
+     */
+    public static boolean isGraphFile(final Path path) throws IOException {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final ByteBuffer header = readHeader(channel);
+            return header != null && header.getInt(0) == MAGIC;
+        }
+    }
+
+    private static ByteBuffer readHeader(final FileChannel channel) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                return null;
+            }
+        }
+
+        return header;
+    }
+
+    private static CompressedEdgeIndex mapIndex(final FileChannel channel, final long position,
+            final int numberOfVertexes, final int numberOfEdges) throws IOException {
+        final long offsetsSize = 4L * (numberOfVertexes + 1);
+        final long edgesSize = 4L * numberOfEdges;
+
+        final IntBuffer offsets = mapInts(channel, position, offsetsSize);
+        final IntBuffer targets = mapInts(channel, position + offsetsSize, edgesSize);
+        final IntBuffer weights = mapInts(channel, position + offsetsSize + edgesSize, edgesSize);
+
+        return CompressedEdgeIndex.wrap(offsets, targets, weights);
+    }
+
+    private static IntBuffer mapInts(final FileChannel channel, final long position, final long size)
+        throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN)
+            .asIntBuffer();
+    }
+
+    private static int padding(final int size) {
+        return (4 - size % 4) % 4;
+    }
+
+    private static void writeIndex(final FileChannel channel, final ByteBuffer buffer,
+            final CompressedEdgeIndex index) throws IOException {
+        for (int vertex = 0; vertex < index.numberOfVertexes(); vertex++) {
+            ensureRemaining(channel, buffer, 4);
+            buffer.putInt(index.begin(vertex));
+        }
+
+        ensureRemaining(channel, buffer, 4);
+        buffer.putInt(index.numberOfEdges());
+
+        for (int i = 0; i < index.numberOfEdges(); i++) {
+            ensureRemaining(channel, buffer, 4);
+            buffer.putInt(index.target(i));
+        }
+
+        for (int i = 0; i < index.numberOfEdges(); i++) {
+            ensureRemaining(channel, buffer, 4);
+            buffer.putInt(index.weight(i));
+        }
+    }
+
+    private static void ensureRemaining(final FileChannel channel, final ByteBuffer buffer, final int bytes)
+        throws IOException {
+        if (buffer.remaining() < bytes) {
+            drain(channel, buffer);
+        }
+    }
+
+    private static void drain(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+
+        buffer.clear();
+    }
+}
@@ -0,0 +1,408 @@
+package test.logic;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumSet;
+import java.util.Set;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Suppliers;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import test.domain.CompressedEdgeIndex;
+import test.domain.TownGraph;
+
+import test.logic.utils.AllPairsShortestDistances;
+import test.logic.utils.ConnectivityMatrixPowers;
+import test.logic.utils.ContractionHierarchy;
+import test.logic.utils.LandmarkDistances;
+import test.logic.utils.SnapshotReader;
+import test.logic.utils.SnapshotWriter;
+
+/**
+ * <p>Snapshot of a graph together with the indexes precomputed for it, which survives the restart of the process: the
+ * all pairs shortest distances, the landmark distances, the contraction hierarchy and the cached powers of the
+ * connectivity matrix. The matrices of the graph itself are filled straight from the edges and are not stored.
+ *
+ * <p>A snapshot is keyed by the 64 bit content hash of the vertex names and the edges, and is stored in a
+ * directory as "HASH.snapshot". On start the snapshot of an unchanged graph is found by the hash and its indexes are
+ * attached to the graph instead of being recomputed, a changed graph has another hash and starts from scratch.
+ *
+ * <p>The file consists of a header (magic "NAGS", format version, content hash), the vertex names, the edges and
+ * the sections of the indexes, each one tagged with its type and length, so a reader skips the sections it does not
+ * know. A snapshot of another format version is ignored. The stored edges are compared with the graph on restore, so
+ * a hash collision can't attach the indexes of another graph.
+ *
+ * <p>The time complexity of the restore is O(V+E+S), where V - number of graph vertexes, E - number of graph edges,
+ * S - size of the stored indexes.
+ */
+public class GraphSnapshot {
+
+    /**
+     * System property with the directory of the snapshots, the snapshots are not used if it is missing.
+     */
+    public static final String DIRECTORY_PROPERTY = "algofun.snapshot.dir";
+
+    private static final int MAGIC = 0x5347414E;
+
+    private static final int VERSION = 3;
+
+    private static final String EXTENSION = ".snapshot";
+
+    /**
+     * @return  content hash of the vertex names and the edges of the graph
+     */
+    public static long contentHash(final TownGraph townGraph, final VertexMapper mapper) {
+        final CompressedEdgeIndex toEdges = townGraph.getToEdgesIndex();
+        final Hasher hasher = Hashing.murmur3_128().newHasher();
+        hasher.putInt(toEdges.numberOfVertexes()).putInt(toEdges.numberOfEdges());
+
+        for (int vertex = 0; vertex < toEdges.numberOfVertexes(); vertex++) {
+            final String name = mapper.name(vertex);
+            hasher.putInt(name.length()).putUnencodedChars(name);
+        }
+
+        for (int vertex = 0; vertex < toEdges.numberOfVertexes(); vertex++) {
+            for (int i = toEdges.begin(vertex); i < toEdges.end(vertex); i++) {
+                hasher.putInt(vertex).putInt(toEdges.target(i)).putInt(toEdges.weight(i));
+            }
+        }
+
+        return hasher.hash().asLong();
+    }
+
+    /**
+     * @return  path of the snapshot of the graph with the given content hash
+     */
+    public static Path path(final Path directory, final long contentHash) {
+        return directory.resolve(String.format("%016x%s", contentHash, EXTENSION));
+    }
+
+    /**
+     * Attaches the indexes stored in the snapshot of the graph, if there is one, to the graph. A damaged snapshot is
+     * ignored from the first damaged section on.
+     *
+     * @return  number of restored indexes
+     */
+    public static int restore(final Path directory, final TownGraph townGraph, final VertexMapper mapper)
+        throws IOException {
+        final long contentHash = contentHash(townGraph, mapper);
+        final Path path = path(directory, contentHash);
+        if (!Files.isRegularFile(path)) {
+            return 0;
+        }
+
+        int restored = 0;
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final SnapshotReader in = new SnapshotReader(channel);
+            if (!readHeader(in, contentHash) || !readGraph(in, townGraph, mapper)) {
+                return 0;
+            }
+
+            final int numberOfSections = in.readInt();
+            for (int s = 0; s < numberOfSections; s++) {
+                final Section section = Section.of(in.readInt());
+                final long length = in.readLong();
+                if (section == null || townGraph.getDerivedIndexIfPresent(section.type).isPresent()) {
+                    in.skip(length);
+                    continue;
+                }
+
+                attach(townGraph, section.type, section.read(in, townGraph));
+                restored++;
+            }
+        } catch (EOFException | IllegalArgumentException e) {
+            // the indexes restored so far are consistent, the rest is recomputed on demand
+        }
+
+        return restored;
+    }
+
+    /**
+     * Writes the snapshot of the graph with all the indexes computed for it so far, unless the snapshot in the
+     * directory already has all of them. The file is replaced atomically.
+     *
+     * @return  true if the snapshot is written
+     */
+    public static boolean save(final Path directory, final TownGraph townGraph, final VertexMapper mapper)
+        throws IOException {
+        final long contentHash = contentHash(townGraph, mapper);
+        final Path path = path(directory, contentHash);
+
+        final Set<Section> sections = EnumSet.noneOf(Section.class);
+        for (Section section : Section.values()) {
+            if (townGraph.getDerivedIndexIfPresent(section.type).isPresent()) {
+                sections.add(section);
+            }
+        }
+
+        if (sections.isEmpty() || storedSections(path, contentHash).containsAll(sections)) {
+            return false;
+        }
+
+        Files.createDirectories(directory);
+
+        final Path temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                final SnapshotWriter out = new SnapshotWriter(channel);
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(contentHash);
+                writeGraph(out, townGraph, mapper);
+
+                out.writeInt(sections.size());
+                for (Section section : sections) {
+                    out.writeInt(section.tag);
+
+                    final long lengthPosition = out.position();
+                    out.writeLong(0);
+                    section.write(townGraph.getDerivedIndexIfPresent(section.type).get(), out);
+                    out.writeLongAt(lengthPosition, out.position() - lengthPosition - 8);
+                }
+
+                out.flush();
+                channel.force(false);
+            }
+
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+
+        return true;
+    }
+
+    private static boolean readHeader(final SnapshotReader in, final long contentHash) throws IOException {
+        return in.readInt() == MAGIC && in.readInt() == VERSION && in.readLong() == contentHash;
+    }
+
+    /**
+     * @return  true if the stored vertexes and edges are the same as the ones of the graph
+     */
+    private static boolean readGraph(final SnapshotReader in, final TownGraph townGraph, final VertexMapper mapper)
+        throws IOException {
+        final CompressedEdgeIndex toEdges = townGraph.getToEdgesIndex();
+
+        final int numberOfVertexes = toEdges.numberOfVertexes();
+        final int[] nameOffsets = in.readInts();
+        final byte[] names = in.readBytes();
+        if (nameOffsets.length != numberOfVertexes + 1 || mapper.numberOfVertexes() != numberOfVertexes) {
+            return false;
+        }
+
+        final int[] mappedNameOffsets = mapper.nameOffsets();
+        for (int vertex = 0; vertex <= numberOfVertexes; vertex++) {
+            if (nameOffsets[vertex] != mappedNameOffsets[vertex]) {
+                return false;
+            }
+        }
+
+        final byte[] mappedNames = mapper.arena();
+        if (names.length != mappedNameOffsets[numberOfVertexes]) {
+            return false;
+        }
+
+        for (int i = 0; i < names.length; i++) {
+            if (names[i] != mappedNames[i]) {
+                return false;
+            }
+        }
+
+        // the edges are compared as they are read, without copying them into the heap
+        if (in.readInt() != numberOfVertexes + 1) {
+            return false;
+        }
+
+        for (int vertex = 0; vertex <= numberOfVertexes; vertex++) {
+            if (in.readInt() != (vertex < numberOfVertexes ? toEdges.begin(vertex) : toEdges.numberOfEdges())) {
+                return false;
+            }
+        }
+
+        if (in.readInt() != toEdges.numberOfEdges()) {
+            return false;
+        }
+
+        for (int i = 0; i < toEdges.numberOfEdges(); i++) {
+            if (in.readInt() != toEdges.target(i)) {
+                return false;
+            }
+        }
+
+        if (in.readInt() != toEdges.numberOfEdges()) {
+            return false;
+        }
+
+        for (int i = 0; i < toEdges.numberOfEdges(); i++) {
+            if (in.readInt() != toEdges.weight(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Writes the vertex names as the offsets and the CESU-8 bytes of {@link VertexMapper}, and streams the forward CSR
+     * index straight from the graph without copying it.
+     */
+    private static void writeGraph(final SnapshotWriter out, final TownGraph townGraph, final VertexMapper mapper)
+        throws IOException {
+        final CompressedEdgeIndex toEdges = townGraph.getToEdgesIndex();
+
+        final int numberOfVertexes = toEdges.numberOfVertexes();
+        Preconditions.checkArgument(mapper.numberOfVertexes() == numberOfVertexes,
+            "Mapper has [%s] vertexes, graph has [%s]", mapper.numberOfVertexes(), numberOfVertexes);
+
+        final int[] nameOffsets = mapper.nameOffsets();
+        out.writeInts(nameOffsets, numberOfVertexes + 1);
+        out.writeBytes(mapper.arena(), nameOffsets[numberOfVertexes]);
+
+        out.writeInt(numberOfVertexes + 1);
+        for (int vertex = 0; vertex < numberOfVertexes; vertex++) {
+            out.writeInt(toEdges.begin(vertex));
+        }
+
+        out.writeInt(toEdges.numberOfEdges());
+
+        out.writeInt(toEdges.numberOfEdges());
+        for (int i = 0; i < toEdges.numberOfEdges(); i++) {
+            out.writeInt(toEdges.target(i));
+        }
+
+        out.writeInt(toEdges.numberOfEdges());
+        for (int i = 0; i < toEdges.numberOfEdges(); i++) {
+            out.writeInt(toEdges.weight(i));
+        }
+    }
+
+    /**
+     * @return  sections of the snapshot with the given content hash, none if there is no such snapshot
+     */
+    private static Set<Section> storedSections(final Path path, final long contentHash) throws IOException {
+        final Set<Section> sections = EnumSet.noneOf(Section.class);
+        if (!Files.isRegularFile(path)) {
+            return sections;
+        }
+
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final SnapshotReader in = new SnapshotReader(channel);
+            if (!readHeader(in, contentHash)) {
+                return sections;
+            }
+
+            // the vertex names and the edges, see writeGraph
+            skipArray(in, 4);
+            skipArray(in, 1);
+            for (int array = 0; array < 3; array++) {
+                skipArray(in, 4);
+            }
+
+            final int numberOfSections = in.readInt();
+            for (int s = 0; s < numberOfSections; s++) {
+                final Section section = Section.of(in.readInt());
+                in.skip(in.readLong());
+                if (section != null) {
+                    sections.add(section);
+                }
+            }
+        } catch (EOFException | IllegalArgumentException e) {
+            // a damaged snapshot is rewritten
+            sections.clear();
+        }
+
+        return sections;
+    }
+
+    private static void skipArray(final SnapshotReader in, final int elementSize) throws IOException {
+        final int length = in.readInt();
+        Preconditions.checkArgument(length >= 0, "Wrong array length [%s]", length);
+        in.skip((long) length * elementSize);
+    }
+
+    private static <T> void attach(final TownGraph townGraph, final Class<T> type, final Object index) {
+        townGraph.getDerivedIndex(type, Suppliers.ofInstance(type.cast(index)));
+    }
+
+    /**
+     * Stored index types, the tags must never be reused for other types.
+     */
+    private enum Section {
+        ALL_PAIRS(1, AllPairsShortestDistances.class) {
+            @Override
+            void write(final Object index, final SnapshotWriter out) throws IOException {
+                ((AllPairsShortestDistances) index).writeTo(out);
+            }
+
+            @Override
+            Object read(final SnapshotReader in, final TownGraph townGraph) throws IOException {
+                return AllPairsShortestDistances.readFrom(in, townGraph);
+            }
+        },
+
+        LANDMARKS(2, LandmarkDistances.class) {
+            @Override
+            void write(final Object index, final SnapshotWriter out) throws IOException {
+                ((LandmarkDistances) index).writeTo(out);
+            }
+
+            @Override
+            Object read(final SnapshotReader in, final TownGraph townGraph) throws IOException {
+                return LandmarkDistances.readFrom(in, townGraph);
+            }
+        },
+
+        CONTRACTION_HIERARCHY(3, ContractionHierarchy.class) {
+            @Override
+            void write(final Object index, final SnapshotWriter out) throws IOException {
+                ((ContractionHierarchy) index).writeTo(out);
+            }
+
+            @Override
+            Object read(final SnapshotReader in, final TownGraph townGraph) throws IOException {
+                return ContractionHierarchy.readFrom(in, townGraph);
+            }
+        },
+
+        MATRIX_POWERS(4, ConnectivityMatrixPowers.class) {
+            @Override
+            void write(final Object index, final SnapshotWriter out) throws IOException {
+                ((ConnectivityMatrixPowers) index).writeTo(out);
+            }
+
+            @Override
+            Object read(final SnapshotReader in, final TownGraph townGraph) throws IOException {
+                return ConnectivityMatrixPowers.readFrom(in, townGraph);
+            }
+        };
+
+        private final int tag;
+        private final Class<?> type;
+
+        Section(final int tag, final Class<?> type) {
+            this.tag = tag;
+            this.type = type;
+        }
+
+        abstract void write(Object index, SnapshotWriter out) throws IOException;
+
+        abstract Object read(SnapshotReader in, TownGraph townGraph) throws IOException;
+
+        static Section of(final int tag) {
+            for (Section section : values()) {
+                if (section.tag == tag) {
+                    return section;
+                }
+            }
+
+            return null;
+        }
+    }
+}
@@ -0,0 +1,473 @@
+package test.logic;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+
+import test.domain.INPUT_PROBLEM;
+
+/**
+ * <p>Parser of the {@code TestExecutor} input which scans the bytes of a channel, e.g. {@code FileChannel} or the
+ * standard input wrapped with {@code Channels.newChannel}, through a fixed buffer. The edges are decoded straight into
+ * primitive arrays and every query into the primitive fields of a reused {@link Query}, no line is turned into a String
+ * and no regular expression is involved.
+ *
+ * <p>The tokens are separated by spaces and tabs, the lines by '\n' with an optional '\r'. The vertexes are named by
+ * the characters of the basic multilingual plane encoded in UTF-8, see {@link VertexCharacterDecoder}, the rest of the
+ * input is ASCII. The edges are given either in the compact format of single character vertexes "XYN", or in the
+ * named format of the triplets "FROM TO N", e.g. "Paris Lyon 465", see {@link #parseEdges(VertexMapper)}. A query
+ * takes the vertex names in both cases.
+ *
+ * <p>The time complexity is O(N), where N - number of input bytes. The space complexity is O(E), where E - number of
+ * graph edges.
+ */
+public class InputParser {
+
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    private static final int END_OF_INPUT = -1;
+
+    private static final String EDGE_FORMAT =
+        "Expected graph edge in 'XYN' format, where X and Y - a single characters and N - positive integer";
+
+    private static final String NAMED_EDGE_FORMAT =
+        "Expected graph edge in 'FROM TO N' format, where FROM and TO - vertex names and N - positive integer";
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final byte[] bytes;
+    private int position;
+    private int limit;
+    private boolean endOfInput;
+
+    // the characters of the last token read, viewed as a CharSequence
+    private char[] token = new char[16];
+    private int tokenLength;
+    private CharBuffer tokenView = CharBuffer.wrap(token);
+
+    public InputParser(final ReadableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    public InputParser(final ReadableByteChannel channel, final int bufferSize) {
+        Preconditions.checkArgument(bufferSize > 0, "Buffer size must be positive, was [%s]", bufferSize);
+
+        this.channel = Preconditions.checkNotNull(channel, "Channel is missing");
+        this.bytes = new byte[bufferSize];
+        this.buffer = ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * Parses the line of the graph edges, the vertexes are mapped to ids with {@code mapper}. The format is decided by
+     * the first token: the line of the compact edges "XYN XYN ..." starts with a token of two characters followed by
+     * digits, any other line is a line of the named edges "FROM TO N FROM TO N ...". So the first vertex of the named
+     * edges must not look like a compact edge, e.g. "AB5" or "101", the other names are unrestricted.
+     */
+    public Edges parseEdges(final VertexMapper mapper) throws IOException {
+        int[] from = new int[16];
+        int[] to = new int[16];
+        int[] distances = new int[16];
+        int size = 0;
+        boolean compact = false;
+
+        while (true) {
+            skipSpaces();
+            if (isEndOfLine(peek())) {
+                break;
+            }
+
+            readToken();
+            if (size == 0) {
+                compact = isCompactEdge(token, tokenLength);
+            }
+
+            final int fromId;
+            final int toId;
+            final long distance;
+            if (compact) {
+                Preconditions.checkArgument(isCompactEdge(token, tokenLength), EDGE_FORMAT);
+                fromId = mapper.mapCharacterToId(token[0]);
+                toId = mapper.mapCharacterToId(token[1]);
+                distance = parseDistance(token, tokenLength);
+            } else {
+                fromId = mapper.mapNameToId(token());
+
+                skipSpaces();
+                Preconditions.checkArgument(!isEndOfLine(peek()), NAMED_EDGE_FORMAT);
+                readToken();
+                toId = mapper.mapNameToId(token());
+
+                skipSpaces();
+                Preconditions.checkArgument(isDigit(peek()), NAMED_EDGE_FORMAT);
+                distance = parseNumber();
+            }
+
+            Preconditions.checkArgument(distance <= Integer.MAX_VALUE, "Distance is too large [%s]", distance);
+
+            if (size == from.length) {
+                from = Arrays.copyOf(from, size * 2);
+                to = Arrays.copyOf(to, size * 2);
+                distances = Arrays.copyOf(distances, size * 2);
+            }
+
+            from[size] = fromId;
+            to[size] = toId;
+            distances[size] = (int) distance;
+            size++;
+        }
+
+        skipEndOfLine();
+        Preconditions.checkArgument(size > 0, "Missing graph edges");
+
+        return new Edges(Arrays.copyOf(from, size), Arrays.copyOf(to, size), Arrays.copyOf(distances, size));
+    }
+
+    /**
+     * Parses a line holding a single non negative integer, e.g. the number of queries.
+     */
+    public long parseNumberLine() throws IOException {
+        skipBlankLines();
+
+        final long number = parseNumber();
+        skipSpaces();
+        Preconditions.checkArgument(isEndOfLine(peek()), "Expected a single number on the line");
+        skipEndOfLine();
+
+        return number;
+    }
+
+    /**
+     * Parses the next query line "PN X Y ..." into {@code query}, the blank lines are skipped.
+     *
+     * @return  false if there are no more queries
+     */
+    public boolean parseQuery(final Query query) throws IOException {
+        skipBlankLines();
+        if (peek() == END_OF_INPUT) {
+            return false;
+        }
+
+        Preconditions.checkArgument(read() == 'P', "Expected problem in 'PN' format");
+
+        final long problem = parseNumber();
+        Preconditions.checkArgument(problem >= 1 && problem <= INPUT_PROBLEM.values().length, "Unknown problem P%s",
+            problem);
+        query.reset(INPUT_PROBLEM.values()[(int) problem - 1]);
+
+        while (true) {
+            skipSpaces();
+            if (isEndOfLine(peek())) {
+                break;
+            }
+
+            if (query.expectsNumber()) {
+                final boolean negative = peek() == '-';
+                if (negative) {
+                    read();
+                }
+
+                final long number = parseNumber();
+                query.setNumber(negative ? -number : number);
+                continue;
+            }
+
+            readToken();
+            query.addVertex(token, tokenLength);
+        }
+
+        skipEndOfLine();
+        return true;
+    }
+
+    /**
+     * Skips the white space, new lines included, and reads the first token of the input.
+     *
+     * @return  true if the input starts with a compact edge "XYN", see {@link #parseEdges(VertexMapper)}
+     */
+    boolean startsWithCompactEdge() throws IOException {
+        skipBlankLines();
+        readToken();
+
+        return isCompactEdge(token, tokenLength);
+    }
+
+    /**
+     * @return  true if the token is a compact edge "XYN": two vertex characters followed by the digits of the distance
+     */
+    static boolean isCompactEdge(final char[] characters, final int length) {
+        if (length < 3) {
+            return false;
+        }
+
+        for (int i = 2; i < length; i++) {
+            if (!isDigit(characters[i])) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Edges of the graph as primitive arrays, i-th edge goes from {@code getFrom()[i]} to {@code getTo()[i]} and has
+     * {@code getDistances()[i]} length.
+     */
+    public static class Edges {
+        private final int[] from;
+        private final int[] to;
+        private final int[] distances;
+
+        Edges(final int[] from, final int[] to, final int[] distances) {
+            this.from = from;
+            this.to = to;
+            this.distances = distances;
+        }
+
+        public int[] getFrom() {
+            return from;
+        }
+
+        public int[] getTo() {
+            return to;
+        }
+
+        public int[] getDistances() {
+            return distances;
+        }
+
+        public int numberOfEdges() {
+            return from.length;
+        }
+    }
+
+    /**
+     * Query decoded into primitive fields: the problem, the vertex names in the input order and, for the problems
+     * which have one, the trailing number (STOPS or MAX_DISTANCE). An instance is reused for all the queries of an
+     * input, the names are kept in a single array of characters.
+     */
+    public static class Query {
+
+        private INPUT_PROBLEM problem;
+        private char[] names = new char[16];
+
+        // i-th name spans the characters from i-th to (i+1)-th offset
+        private int[] nameOffsets = new int[5];
+        private int numberOfVertexes;
+        private long number;
+        private boolean hasNumber;
+
+        public INPUT_PROBLEM getProblem() {
+            return problem;
+        }
+
+        public int numberOfVertexes() {
+            return numberOfVertexes;
+        }
+
+        /**
+         * @return  the name of i-th vertex, the view is valid until the next query is parsed into the instance
+         */
+        public CharSequence vertex(final int i) {
+            Preconditions.checkElementIndex(i, numberOfVertexes);
+            return CharBuffer.wrap(names, nameOffsets[i], nameOffsets[i + 1] - nameOffsets[i]);
+        }
+
+        public boolean hasNumber() {
+            return hasNumber;
+        }
+
+        public long getNumber() {
+            Preconditions.checkState(hasNumber, "Query %s has no number", problem);
+            return number;
+        }
+
+        void reset(final INPUT_PROBLEM inputProblem) {
+            this.problem = inputProblem;
+            this.numberOfVertexes = 0;
+            this.hasNumber = false;
+        }
+
+        void addVertex(final char[] name, final int length) {
+            final int offset = nameOffsets[numberOfVertexes];
+            if (offset + length > names.length) {
+                names = Arrays.copyOf(names, Math.max(2 * names.length, offset + length));
+            }
+
+            if (numberOfVertexes + 1 == nameOffsets.length) {
+                nameOffsets = Arrays.copyOf(nameOffsets, 2 * nameOffsets.length);
+            }
+
+            System.arraycopy(name, 0, names, offset, length);
+            nameOffsets[++numberOfVertexes] = offset + length;
+        }
+
+        void setNumber(final long value) {
+            Preconditions.checkArgument(!hasNumber, "Unexpected parameter after the number of %s", problem);
+            this.number = value;
+            this.hasNumber = true;
+        }
+
+        /**
+         * @return  true if the next parameter is the trailing number: STOPS of P2 and P3, MAX_DISTANCE of P5
+         */
+        boolean expectsNumber() {
+            switch (problem) {
+
+                case P2 :
+                case P3 :
+                case P5 :
+                    return numberOfVertexes == 2;
+
+                default :
+                    return false;
+            }
+        }
+    }
+
+    /**
+     * Parses a non negative decimal number which ends with a delimiter.
+     */
+    private long parseNumber() throws IOException {
+        Preconditions.checkArgument(isDigit(peek()), "Expected a number");
+
+        long number = 0;
+        while (isDigit(peek())) {
+            final int digit = read() - '0';
+            Preconditions.checkArgument(number <= (Long.MAX_VALUE - digit) / 10, "Number is too large");
+            number = number * 10 + digit;
+        }
+
+        Preconditions.checkArgument(isDelimiter(peek()), "Expected a number");
+        return number;
+    }
+
+    /**
+     * Parses the distance of a compact edge "XYN".
+     */
+    private static long parseDistance(final char[] edge, final int length) {
+        long distance = 0;
+        for (int i = 2; i < length && distance <= Integer.MAX_VALUE; i++) {
+            distance = distance * 10 + edge[i] - '0';
+        }
+
+        return distance;
+    }
+
+    /**
+     * Reads the characters up to the next delimiter into the token, see {@link VertexCharacterDecoder}.
+     */
+    private void readToken() throws IOException {
+        tokenLength = 0;
+        while (!isDelimiter(peek())) {
+            if (tokenLength == token.length) {
+                token = Arrays.copyOf(token, 2 * tokenLength);
+                tokenView = CharBuffer.wrap(token);
+            }
+
+            token[tokenLength++] = readCharacter();
+        }
+    }
+
+    /**
+     * @return  the last token read, the view is reused by the next call
+     */
+    private CharSequence token() {
+        tokenView.clear();
+        tokenView.limit(tokenLength);
+
+        return tokenView;
+    }
+
+    /**
+     * Reads a vertex character, see {@link VertexCharacterDecoder}.
+     */
+    private char readCharacter() throws IOException {
+        final int first = read();
+        Preconditions.checkArgument(first != END_OF_INPUT, "Unexpected end of input");
+
+        final int length = VertexCharacterDecoder.encodedLength(first);
+        int character = VertexCharacterDecoder.start(first);
+        for (int i = 1; i < length; i++) {
+            character = VertexCharacterDecoder.append(character, read());
+        }
+
+        return VertexCharacterDecoder.finish(character, length);
+    }
+
+    private void skipSpaces() throws IOException {
+        int b = peek();
+        while (b == ' ' || b == '\t' || b == '\r') {
+            position++;
+            b = peek();
+        }
+    }
+
+    private void skipBlankLines() throws IOException {
+        int b = peek();
+        while (b == ' ' || b == '\t' || b == '\r' || b == '\n') {
+            position++;
+            b = peek();
+        }
+    }
+
+    private void skipEndOfLine() throws IOException {
+        if (peek() == '\n') {
+            position++;
+        }
+    }
+
+    private int read() throws IOException {
+        final int b = peek();
+        if (b != END_OF_INPUT) {
+            position++;
+        }
+
+        return b;
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return END_OF_INPUT;
+        }
+
+        return bytes[position] & 0xFF;
+    }
+
+    private boolean fill() throws IOException {
+        if (endOfInput) {
+            return false;
+        }
+
+        buffer.clear();
+
+        int read;
+        do {
+            read = channel.read(buffer);
+        } while (read == 0);
+
+        if (read < 0) {
+            endOfInput = true;
+            return false;
+        }
+
+        position = 0;
+        limit = read;
+        return true;
+    }
+
+    private static boolean isDigit(final int b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isEndOfLine(final int b) {
+        return b == '\n' || b == END_OF_INPUT;
+    }
+
+    private static boolean isDelimiter(final int b) {
+        return VertexCharacterDecoder.isSpace(b) || b == END_OF_INPUT;
+    }
+}
@@ -0,0 +1,57 @@
+package test.logic;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * <p>Decoding rules of the vertexes shared by {@link InputParser} and {@link EdgeFileLoader}: the tokens are separated
+ * by spaces, tabs and line breaks, a vertex character belongs to the basic multilingual plane and is encoded in UTF-8
+ * by one to three bytes. The malformed and the overlong sequences are rejected.
+ *
+ * <p>A character is decoded in steps, so the callers keep reading the bytes from their own sources: {@link #start(int)}
+ * with the first byte, {@link #append(int, int)} with every next one and {@link #finish(int, int)}.
+ */
+final class VertexCharacterDecoder {
+
+    private VertexCharacterDecoder() {
+    }
+
+    static boolean isSpace(final int b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    /**
+     * @return  number of bytes encoding the character which starts with the given byte
+     */
+    static int encodedLength(final int first) {
+        final int length = first < 0x80 ? 1 : (first & 0xE0) == 0xC0 ? 2 : (first & 0xF0) == 0xE0 ? 3 : 0;
+        Preconditions.checkArgument(length > 0, "Expected vertex character of the basic plane in UTF-8, found [%s]",
+            first);
+
+        return length;
+    }
+
+    /**
+     * @return  the bits of the character carried by its first byte
+     */
+    static int start(final int first) {
+        final int length = encodedLength(first);
+        return length == 1 ? first : first & (length == 2 ? 0x1F : 0x0F);
+    }
+
+    /**
+     * @return  the bits of the character with the next byte of its sequence
+     */
+    static int append(final int character, final int next) {
+        Preconditions.checkArgument((next & 0xC0) == 0x80, "Malformed UTF-8 vertex character");
+        return character << 6 | next & 0x3F;
+    }
+
+    /**
+     * @return  the character decoded from a sequence of the given length
+     */
+    static char finish(final int character, final int length) {
+        Preconditions.checkArgument(length == 1 || character >= (length == 2 ? 0x80 : 0x800),
+            "Overlong UTF-8 vertex character");
+        return (char) character;
+    }
+}
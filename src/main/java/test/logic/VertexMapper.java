@@ -1,46 +1,383 @@
 package test.logic;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
 
 /**
- * Maps vertexes represented as characters to integers and vice versa.
+ * <p>Maps vertexes named by strings, single characters included, to integers and vice versa. A character and the
+ * string of that single character name the same vertex.
+ *
+ * <p>The names are interned in CESU-8 into a single byte arena: every UTF-16 char is encoded by one to three bytes on
+ * its own, so a surrogate pair takes two 3-byte sequences rather than the single 4-byte sequence of UTF-8, and a lone
+ * surrogate is encoded the same way as a paired one. The ids are found by an open addressing hash table with linear
+ * probing, which holds the ids only and compares the names with the arena. The reverse table is an array of the arena
+ * offsets indexed by id. The ids of single character names are also kept in a table indexed by the character, so the
+ * vertexes of the text input are mapped with a single array access.
+ *
+ * <p>The lookups don't allocate, a new name takes about 4 ints and its CESU-8 bytes. The lookups may run concurrently
+ * once all the vertexes are mapped.
  */
 public class VertexMapper {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final int NUMBER_OF_BYTE_VALUES = 256;
+
+    private static final int NUMBER_OF_CHARACTERS = Character.MAX_VALUE + 1;
+
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    // the hash table of twice as many slots is still an array
+    private static final int MAX_NUMBER_OF_VERTEXES = 1 << 29;
+
+    private static final int FNV_OFFSET_BASIS = 0x811C9DC5;
+
+    private static final int FNV_PRIME = 0x01000193;
+
     private int nextAvailableId = 0;
-    Map<Character, Integer> characterIdIndex = new HashMap<>();
-    Map<Integer, Character> idCharacterIndex = new HashMap<>();
+
+    private byte[] arena = new byte[INITIAL_CAPACITY * 2];
+    private int arenaSize;
+
+    // id -> offset of the name in the arena, the name ends at the offset of the next id
+    private int[] nameOffsets = new int[INITIAL_CAPACITY + 1];
+    private int[] nameHashes = new int[INITIAL_CAPACITY];
+
+    // id + 1 of the names by their hashes, 0 - empty slot, at most half full
+    private int[] slots = new int[INITIAL_CAPACITY * 2];
+
+    // character -> id + 1 of the single character names, grows to all the characters with the first one above a byte
+    private int[] characterIds = new int[NUMBER_OF_BYTE_VALUES];
 
     public int mapCharacterToId(final char character) {
-        Integer id = characterIdIndex.get(character);
-        if (id == null) {
-            id = nextAvailableId++;
+        final int id = characterId(character);
+        if (id >= 0) {
+            return id;
         }
 
-        characterIdIndex.put(character, id);
-        idCharacterIndex.put(id, character);
-        return id;
+        ensureCapacity(3);
+
+        final int hash = hash(character);
+        final int slot = slot(hash, null);
+        arenaSize = encode(character, arena, arenaSize);
+
+        return add(slot, hash);
+    }
+
+    public int mapNameToId(final CharSequence name) {
+        Preconditions.checkArgument(name.length() > 0, "Vertex name is empty");
+
+        if (name.length() == 1) {
+            return mapCharacterToId(name.charAt(0));
+        }
+
+        final int hash = hash(name);
+        int slot = slot(hash, name);
+        if (slots[slot] != 0) {
+            return slots[slot] - 1;
+        }
+
+        Preconditions.checkArgument(name.length() <= MAX_ARRAY_SIZE / 3, "Vertex name is too long [%s]",
+            name.length());
+        ensureCapacity(3 * name.length());
+
+        // the table may be rehashed by the growth
+        slot = slot(hash, null);
+
+        for (int i = 0; i < name.length(); i++) {
+            arenaSize = encode(name.charAt(i), arena, arenaSize);
+        }
+
+        return add(slot, hash);
     }
 
     public int id(final char character) {
-        Integer id = characterIdIndex.get(character);
-        if (id == null) {
+        final int id = characterId(character);
+        if (id < 0) {
             throw new IllegalArgumentException(String.format("No id found for [%s]", character));
         }
 
         return id;
     }
 
+    public int id(final CharSequence name) {
+        if (name.length() == 1) {
+            return id(name.charAt(0));
+        }
+
+        final int slot = slot(hash(name), name);
+        if (slots[slot] == 0) {
+            throw new IllegalArgumentException(String.format("No id found for [%s]", name));
+        }
+
+        return slots[slot] - 1;
+    }
+
     public char character(final int id) {
-        Character ch = idCharacterIndex.get(id);
-        if (ch == null) {
-            throw new IllegalArgumentException(String.format("No character found for [%s]", id));
+        checkId(id);
+
+        final int offset = nameOffsets[id];
+        final int end = nameOffsets[id + 1];
+        Preconditions.checkArgument(end - offset == encodedLength(arena[offset]),
+            "Vertex [%s] is not named by a single character", id);
+
+        return decode(arena, offset);
+    }
+
+    public String name(final int id) {
+        checkId(id);
+
+        final char[] characters = new char[nameOffsets[id + 1] - nameOffsets[id]];
+        int length = 0;
+        for (int offset = nameOffsets[id]; offset < nameOffsets[id + 1]; offset += encodedLength(arena[offset])) {
+            characters[length++] = decode(arena, offset);
         }
 
-        return ch;
+        return new String(characters, 0, length);
     }
 
     public int numberOfVertexes() {
         return nextAvailableId;
     }
+
+    /**
+     * Registers the names of all the vertexes in the empty mapper at once, the name of id i is encoded in CESU-8 in
+     * {@code arena} from {@code nameOffsets[i]} to {@code nameOffsets[i + 1]}. The arena is taken over by the mapper.
+     *
+     * <p>The time complexity is O(V+N), where V - number of vertexes, N - total length of the names.
+     */
+    void mapNames(final int[] nameOffsets, final byte[] arena) {
+        Preconditions.checkArgument(nextAvailableId == 0, "Mapper must be empty, has [%s] vertexes", nextAvailableId);
+
+        final int numberOfVertexes = nameOffsets.length - 1;
+        Preconditions.checkArgument(numberOfVertexes >= 0 && numberOfVertexes <= MAX_NUMBER_OF_VERTEXES,
+            "Wrong number of vertexes [%s]", numberOfVertexes);
+        Preconditions.checkArgument(nameOffsets[0] == 0 && nameOffsets[numberOfVertexes] == arena.length,
+            "Vertex names don't match the arena of [%s] bytes", arena.length);
+
+        final int capacity = Math.max(INITIAL_CAPACITY, numberOfVertexes);
+        this.arena = arena;
+        this.nameOffsets = Arrays.copyOf(nameOffsets, capacity + 1);
+        this.nameHashes = new int[capacity];
+
+        int numberOfSlots = INITIAL_CAPACITY * 2;
+        while (numberOfSlots < 2L * numberOfVertexes) {
+            numberOfSlots *= 2;
+        }
+
+        this.slots = new int[numberOfSlots];
+
+        final int mask = slots.length - 1;
+        for (int id = 0; id < numberOfVertexes; id++) {
+            final int offset = nameOffsets[id];
+            final int end = nameOffsets[id + 1];
+            Preconditions.checkArgument(offset < end, "Vertex name of [%s] is empty", id);
+
+            int hash = FNV_OFFSET_BASIS;
+            for (int i = offset; i < end; i += encodedLength(arena[i])) {
+                Preconditions.checkArgument(i + encodedLength(arena[i]) <= end, "Malformed vertex name of [%s]", id);
+                hash = (hash ^ decode(arena, i)) * FNV_PRIME;
+            }
+
+            hash = mix(hash);
+
+            int slot = hash & mask;
+            while (slots[slot] != 0) {
+                Preconditions.checkArgument(!bytesEqual(slots[slot] - 1, offset, end), "Duplicate vertex name of [%s]",
+                    id);
+                slot = (slot + 1) & mask;
+            }
+
+            arenaSize = end;
+            add(slot, hash);
+        }
+    }
+
+    /**
+     * @return  offsets of the names in {@link #arena()} by id followed by the end of the last name, only the first
+     *          {@code numberOfVertexes() + 1} offsets are valid; the array is shared and must not be modified
+     */
+    int[] nameOffsets() {
+        return nameOffsets;
+    }
+
+    /**
+     * @return  the names encoded in CESU-8, only the bytes up to the end of the last name are valid; the array is
+     *          shared and must not be modified
+     */
+    byte[] arena() {
+        return arena;
+    }
+
+    private int characterId(final char character) {
+        return character < characterIds.length ? characterIds[character] - 1 : -1;
+    }
+
+    private void checkId(final int id) {
+        if (id < 0 || id >= nextAvailableId) {
+            throw new IllegalArgumentException(String.format("No character found for [%s]", id));
+        }
+    }
+
+    /**
+     * @return  slot of the name, or the empty slot it belongs to; the empty slot only if the name is null
+     */
+    private int slot(final int hash, final CharSequence name) {
+        final int mask = slots.length - 1;
+        int slot = hash & mask;
+        while (slots[slot] != 0 && (name == null || !nameEquals(slots[slot] - 1, hash, name))) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    private boolean nameEquals(final int id, final int hash, final CharSequence name) {
+        if (nameHashes[id] != hash) {
+            return false;
+        }
+
+        int offset = nameOffsets[id];
+        final int end = nameOffsets[id + 1];
+        for (int i = 0; i < name.length(); i++) {
+            if (offset >= end || decode(arena, offset) != name.charAt(i)) {
+                return false;
+            }
+
+            offset += encodedLength(arena[offset]);
+        }
+
+        return offset == end;
+    }
+
+    private boolean bytesEqual(final int id, final int offset, final int end) {
+        if (nameOffsets[id + 1] - nameOffsets[id] != end - offset) {
+            return false;
+        }
+
+        for (int i = 0; i < end - offset; i++) {
+            if (arena[nameOffsets[id] + i] != arena[offset + i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Registers the name just encoded at the end of the arena in the empty slot.
+     */
+    private int add(final int slot, final int hash) {
+        final int id = nextAvailableId++;
+        nameOffsets[id + 1] = arenaSize;
+        nameHashes[id] = hash;
+        slots[slot] = id + 1;
+
+        final int offset = nameOffsets[id];
+        if (arenaSize - offset == encodedLength(arena[offset])) {
+            final char character = decode(arena, offset);
+            if (character >= characterIds.length) {
+                characterIds = Arrays.copyOf(characterIds, NUMBER_OF_CHARACTERS);
+            }
+
+            characterIds[character] = id + 1;
+        }
+
+        return id;
+    }
+
+    /**
+     * Makes room for one more name of the given number of bytes at most.
+     */
+    private void ensureCapacity(final int bytes) {
+        Preconditions.checkArgument(nextAvailableId < MAX_NUMBER_OF_VERTEXES, "Too many vertexes [%s]",
+            nextAvailableId);
+        Preconditions.checkArgument(arenaSize <= MAX_ARRAY_SIZE - bytes, "Too long vertex names [%s]", arenaSize);
+
+        if (arenaSize + bytes > arena.length) {
+            final long capacity = Math.max(2L * arena.length, (long) arenaSize + bytes);
+            arena = Arrays.copyOf(arena, (int) Math.min(MAX_ARRAY_SIZE, capacity));
+        }
+
+        if (nextAvailableId == nameHashes.length) {
+            nameHashes = Arrays.copyOf(nameHashes, 2 * nameHashes.length);
+            nameOffsets = Arrays.copyOf(nameOffsets, nameHashes.length + 1);
+        }
+
+        if (2 * (nextAvailableId + 1) > slots.length) {
+            slots = new int[2 * slots.length];
+
+            final int mask = slots.length - 1;
+            for (int id = 0; id < nextAvailableId; id++) {
+                int slot = nameHashes[id] & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+
+                slots[slot] = id + 1;
+            }
+        }
+    }
+
+    private static int hash(final char character) {
+        return mix((FNV_OFFSET_BASIS ^ character) * FNV_PRIME);
+    }
+
+    private static int hash(final CharSequence name) {
+        int hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < name.length(); i++) {
+            hash = (hash ^ name.charAt(i)) * FNV_PRIME;
+        }
+
+        return mix(hash);
+    }
+
+    // finalizer of murmur3, spreads the low bits used by the table
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        hash ^= hash >>> 16;
+
+        return hash;
+    }
+
+    /**
+     * @return  offset after the encoded character
+     */
+    private static int encode(final char character, final byte[] bytes, int offset) {
+        //J-
+        if (character < 0x80) {
+            bytes[offset++] = (byte) character;
+        } else if (character < 0x800) {
+            bytes[offset++] = (byte) (0xC0 | character >>> 6);
+            bytes[offset++] = (byte) (0x80 | character & 0x3F);
+        } else {
+            bytes[offset++] = (byte) (0xE0 | character >>> 12);
+            bytes[offset++] = (byte) (0x80 | character >>> 6 & 0x3F);
+            bytes[offset++] = (byte) (0x80 | character & 0x3F);
+        }
+        //J+
+
+        return offset;
+    }
+
+    private static int encodedLength(final byte first) {
+        return first >= 0 ? 1 : (first & 0xE0) == 0xC0 ? 2 : 3;
+    }
+
+    private static char decode(final byte[] bytes, final int offset) {
+        //J-
+        final int first = bytes[offset];
+        if (first >= 0) {
+            return (char) first;
+        } else if ((first & 0xE0) == 0xC0) {
+            return (char) ((first & 0x1F) << 6 | bytes[offset + 1] & 0x3F);
+        }
+
+        return (char) ((first & 0x0F) << 12 | (bytes[offset + 1] & 0x3F) << 6 | bytes[offset + 2] & 0x3F);
+        //J+
+    }
 }
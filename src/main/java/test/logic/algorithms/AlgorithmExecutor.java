@@ -1,5 +1,6 @@
 package test.logic.algorithms;
 
+import test.domain.INPUT_PROBLEM;
 import test.domain.TownGraph;
 
 import test.logic.VertexMapper;
@@ -12,4 +13,10 @@ public interface AlgorithmExecutor {
     String NO_ROUTE_FOUND = "NO SUCH ROUTE";
 
     String validateParametersAndExecute(TownGraph townGraph, VertexMapper mapper, String[] parameters);
+
+    /**
+     * Executes the query already decoded into the ids of its vertexes and its trailing number, which is ignored by the
+     * problems without one, see {@link ParsedQuery}.
+     */
+    String validateParametersAndExecute(TownGraph townGraph, INPUT_PROBLEM problem, int[] vertexes, long number);
 }
@@ -22,7 +22,7 @@ public class AlgorithmExecutorFactory {
                 return new P3FindNumberOfRoutesWithExactlyStopsAlgorithm();
 
             case P4 :
-                return new P4FindShortestDistanceAlgorithm();
+                return new P4FindShortestDistanceAlgorithm(P4FindShortestDistanceAlgorithm.configuredStrategy());
 
             case P5 :
                 return new P5FindNumberOfRoutesWithDistanceAlgorithm();
@@ -0,0 +1,9 @@
+package test.logic.algorithms;
+
+/**
+ * Receives the answers to the queries of a block, identified by the index of the query in the block.
+ */
+public interface AnswerConsumer {
+
+    void accept(int queryIndex, String answer);
+}
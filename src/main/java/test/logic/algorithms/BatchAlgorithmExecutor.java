@@ -0,0 +1,22 @@
+package test.logic.algorithms;
+
+import java.util.List;
+
+import test.domain.TownGraph;
+
+/**
+ * Algorithm which answers a batch of queries of its problem at once, running the work shared by the queries with the
+ * same parameters only once.
+ */
+public interface BatchAlgorithmExecutor extends AlgorithmExecutor {
+
+    /**
+     * @return  answers to the queries in the same order
+     */
+    List<String> validateParametersAndExecuteAll(TownGraph townGraph, List<ParsedQuery> queries);
+
+    /**
+     * @return  the parameter the work is shared by, only the queries with the same key are worth executing in one batch
+     */
+    long batchKey(ParsedQuery query);
+}
@@ -4,23 +4,29 @@ import java.util.List;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Lists;
 
+import test.domain.EdgeWeightIndex;
 import test.domain.INPUT_PROBLEM;
 import test.domain.TownGraph;
 
 import test.logic.VertexMapper;
 
+import test.logic.utils.RouteDistances;
+
 /**
  * <p>Problem 1: find the distance along the given route.
  *
- * <p>The solution is linear traversal through the adjacency matrix and summing up the met values. In case if the
- * distance is 0, then the route does not exist.
+ * <p>The solution is linear traversal through the route looking up the edge distances in the hash index of the edges
+ * and summing up the met values, see {@link EdgeWeightIndex}. In case if the distance is 0, then the route does not
+ * exist.
+ *
+ * <p>The time complexity: O(E+K) where E - number of graph edges (for building the edge index once per graph), K -
+ * number of vertexes in the route.
  *
- * <p>The time complexity: O(E+K) where E - number of graph edges (for building adjacency matrix), K - number of
- * vertexes in the route.
+ * <p>The space complexity: O(E) where E - number of graph edges.
  *
- * <p>The space complexity: O(V^2) where V - number of graph vertexes.
+ * <p>Long routes and batches of routes are evaluated with the primitive entry points, without boxing and with the
+ * distances summed up in longs, optionally in parallel across the routes, see {@link RouteDistances}.
  */
 public class P1CalculateDistanceForRouteAlgorithm implements AlgorithmExecutor {
 
@@ -33,18 +39,25 @@ public class P1CalculateDistanceForRouteAlgorithm implements AlgorithmExecutor {
         Preconditions.checkArgument(INPUT_PROBLEM.valueOf(parameters[0]) == INPUT_PROBLEM.P1,
             "Wrong parameters, expected P1, found [%s]", parameters[0]);
 
-        List<Integer> route = Lists.newArrayList();
+        final int[] route = new int[parameters.length - 1];
         for (int i = 1; i < parameters.length; i++) {
-            Preconditions.checkArgument(parameters[i] != null && parameters[i].length() == 1,
-                "Expected single character as vertex");
-
-            char vertex = parameters[i].charAt(0);
-            route.add(mapper.id(vertex));
+            Preconditions.checkArgument(parameters[i] != null, "Vertex name is missing");
+            route[i - 1] = mapper.id(parameters[i]);
         }
 
-        Optional<Integer> result = algorithm(townGraph, route);
+        return validateParametersAndExecute(townGraph, INPUT_PROBLEM.P1, route, 0);
+    }
+
+    @Override
+    public String validateParametersAndExecute(final TownGraph townGraph, final INPUT_PROBLEM problem,
+            final int[] vertexes, final long number) {
+
+        Preconditions.checkArgument(problem == INPUT_PROBLEM.P1, "Wrong parameters, expected P1, found [%s]", problem);
+
+        final long distance = algorithm(townGraph, vertexes);
 
-        return result.isPresent() ? String.valueOf(result.get()) : NO_ROUTE_FOUND;
+        // a zero distance means no route, the same as for the boxed route
+        return distance > 0 ? String.valueOf(distance) : NO_ROUTE_FOUND;
     }
 
     public Optional<Integer> algorithm(final TownGraph townGraph, final List<Integer> route) {
@@ -52,17 +65,18 @@ public class P1CalculateDistanceForRouteAlgorithm implements AlgorithmExecutor {
             return Optional.absent();
         }
 
-        final int[][] adjacencyMatrix = townGraph.getAdjacencyMatrix();
+        final EdgeWeightIndex edgeWeightIndex = townGraph.getEdgeWeightIndex();
 
         int distance = 0;
         Integer prevVertex = null;
         for (Integer currentVertex : route) {
             if (prevVertex != null) {
-                if (adjacencyMatrix[prevVertex][currentVertex] == 0) {
+                final int edgeDistance = edgeWeightIndex.weight(prevVertex, currentVertex);
+                if (edgeDistance == EdgeWeightIndex.NO_EDGE) {
                     return Optional.absent();
                 }
 
-                distance += adjacencyMatrix[prevVertex][currentVertex];
+                distance += edgeDistance;
             }
 
             prevVertex = currentVertex;
@@ -71,6 +85,21 @@ public class P1CalculateDistanceForRouteAlgorithm implements AlgorithmExecutor {
         return optionalOrAbsentIfZero(distance);
     }
 
+    /**
+     * @return  distance along the route or {@link RouteDistances#NO_ROUTE}
+     */
+    public long algorithm(final TownGraph townGraph, final int[] route) {
+        return RouteDistances.distance(townGraph.getEdgeWeightIndex(), route);
+    }
+
+    /**
+     * @return  distances along the routes in the same order, {@link RouteDistances#NO_ROUTE} for the routes which do
+     *          not exist
+     */
+    public long[] algorithm(final TownGraph townGraph, final int[][] routes, final boolean parallel) {
+        return RouteDistances.distances(townGraph.getEdgeWeightIndex(), routes, parallel);
+    }
+
     private static Optional<Integer> optionalOrAbsentIfZero(final int result) {
         return result != 0 ? Optional.of(result) : Optional.<Integer>absent();
     }
@@ -2,63 +2,101 @@ package test.logic.algorithms;
 
 import com.google.common.base.Preconditions;
 
+import test.domain.CompressedEdgeIndex;
 import test.domain.INPUT_PROBLEM;
 import test.domain.TownGraph;
 
 import test.logic.VertexMapper;
 
-import test.logic.utils.MatrixUtils;
+import test.logic.utils.ConnectivityMatrixPowers;
+import test.logic.utils.RouteCountingUtils;
 
 /**
  * <p>Problem 2: find the number of routes from START vertex to FINISH vertex with a less or equal number of STOPS.
  *
  * <p>The solution is based on raising graph's connectivity matrix to the power of STOPS.
  *
- * <p>The result is found by summing up the intermediate result of matrix exponentiation for every STOP value:
- * resultPowK[START][FINISH].
+ * <p>The result is found by summing up the powers of the matrix for every STOP value: S(STOPS)[START][FINISH], where
+ * S(N) = A + A^2 + ... + A^N. The sum is computed by doubling S(2N) = S(N) + A^N*S(N).
  *
- * <p>The time complexity is O(V^3*STOPS), where V - number of graph vertexes.
+ * <p>The binary powers and the partial sums are kept in the per graph {@link ConnectivityMatrixPowers} cache, so the
+ * repeated queries with the same number of STOPS take O(1).
+ *
+ * <p>The time complexity is O(V^3*LOG(STOPS)), where V - number of graph vertexes.
  *
  * <p>The space complexity is O(V^2), where N - number of graph vertexes.
  *
+ * <p>For sparse graphs, when E*STOPS is less than the cost of the matrix multiplications, the vector of route counts is
+ * propagated from START vertex over the graph edges instead, see {@link RouteCountingUtils}. The time complexity in
+ * this case is O(E*STOPS), the space complexity is O(V).
+ *
+ * <p>A batch of queries is grouped by the number of STOPS, and every group either sums up the matrix powers once or
+ * propagates the vector of route counts once per distinct START vertex, whichever is cheaper, see
+ * {@link RouteCountingByStopsAlgorithm}.
+ *
  * @return  number of routes
  */
-public class P2FindNumberOfRoutesWithLessThanAndExactlyStopsAlgorithm implements AlgorithmExecutor {
+public class P2FindNumberOfRoutesWithLessThanAndExactlyStopsAlgorithm extends RouteCountingByStopsAlgorithm {
+
+    public P2FindNumberOfRoutesWithLessThanAndExactlyStopsAlgorithm() {
+        super(INPUT_PROBLEM.P2);
+    }
+
     @Override
     public String validateParametersAndExecute(final TownGraph townGraph, final VertexMapper mapper,
             final String[] parameters) {
 
+        final int[] query = parseQuery(mapper, parameters);
+
+        return validateParametersAndExecute(townGraph, INPUT_PROBLEM.P2, new int[] {query[0], query[1]}, query[2]);
+    }
+
+    /**
+     * @return  number of routes modulo 2^64
+     */
+    public long findNumberOfRoutesWithLessThanAndExactlyStops(final TownGraph townGraph, final int from, final int to,
+            final int maxStopsInclusive) {
+        return countRoutes(townGraph, from, to, maxStopsInclusive);
+    }
+
+    @Override
+    protected boolean isCached(final ConnectivityMatrixPowers powers, final int maxStopsInclusive) {
+        return powers.isSumOfPowersCached(maxStopsInclusive);
+    }
+
+    @Override
+    protected long[][] matrix(final ConnectivityMatrixPowers powers, final int maxStopsInclusive) {
+        return powers.sumOfPowers(maxStopsInclusive);
+    }
+
+    @Override
+    protected int multiplications(final int maxStopsInclusive) {
+        return 3 * (Integer.SIZE - Integer.numberOfLeadingZeros(maxStopsInclusive));
+    }
+
+    @Override
+    protected long[] propagate(final CompressedEdgeIndex toEdges, final int source, final int maxStopsInclusive) {
+        return RouteCountingUtils.routeCountsWithAtMostStops(toEdges, source, maxStopsInclusive);
+    }
+
+    /**
+     * @return  START vertex, FINISH vertex and maximum number of STOPS
+     */
+    private static int[] parseQuery(final VertexMapper mapper, final String[] parameters) {
+
         Preconditions.checkArgument(parameters != null && parameters.length == 4,
             "Expected input: P2 X Y N - find the number of routes from START vertex to FINISH vertex with a less or equal number of STOPS. X - START vertex, Y - FINISH vertex, N - number of STOPS to consider");
         Preconditions.checkArgument(INPUT_PROBLEM.valueOf(parameters[0]) == INPUT_PROBLEM.P2,
             "Wrong parameters, expected P2, found [%s]", parameters[0]);
 
-        char from = parameters[1].charAt(0);
-        char to = parameters[2].charAt(0);
+        String from = parameters[1];
+        String to = parameters[2];
         int maxStopsInclusive = Integer.parseInt(parameters[3]);
 
-        long result = findNumberOfRoutesWithLessThanAndExactlyStops(townGraph, mapper.id(from), mapper.id(to),
-                maxStopsInclusive);
-
-        return String.valueOf(result);
-    }
-
-    public long findNumberOfRoutesWithLessThanAndExactlyStops(final TownGraph townGraph, final int from, final int to,
-            final int maxStopsInclusive) {
         Preconditions.checkArgument(maxStopsInclusive >= 0, "Number of stops must be non negative, was [%s]",
             maxStopsInclusive);
 
-        long[][] connectivityMatrix = townGraph.getConnectivityMatrix();
-
-        long[][] result = MatrixUtils.identityMatrix(connectivityMatrix.length, connectivityMatrix[0].length);
-
-        long numberOfRoutes = 0;
-        for (int i = 0; i < maxStopsInclusive; i++) {
-            result = MatrixUtils.multiplyMatrices(result, connectivityMatrix);
-            numberOfRoutes += result[from][to];
-        }
-
-        return numberOfRoutes;
+        return new int[] {mapper.id(from), mapper.id(to), maxStopsInclusive};
     }
 
 }
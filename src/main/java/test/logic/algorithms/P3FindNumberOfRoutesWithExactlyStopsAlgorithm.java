@@ -2,12 +2,14 @@ package test.logic.algorithms;
 
 import com.google.common.base.Preconditions;
 
+import test.domain.CompressedEdgeIndex;
 import test.domain.INPUT_PROBLEM;
 import test.domain.TownGraph;
 
 import test.logic.VertexMapper;
 
-import test.logic.utils.MatrixUtils;
+import test.logic.utils.ConnectivityMatrixPowers;
+import test.logic.utils.RouteCountingUtils;
 
 /**
  * <p>Problem 3: find the number of routes from START vertex to FINISH vertex with a exactly number of STOPS.
@@ -19,50 +21,80 @@ import test.logic.utils.MatrixUtils;
  * <p>The time complexity is O(V^3*LOG(STOPS)), where V - number of graph vertexes. LOG(STOPS) is achieved by
  * exponentiating the matrix using efficient binary power algorithm.
  *
+ * <p>The binary powers and the results are kept in the per graph {@link ConnectivityMatrixPowers} cache, so the
+ * repeated queries with the same number of STOPS take O(1).
+ *
  * <p>The space complexity is O(V^2), where V - number of graph vertexes.
  *
+ * <p>For sparse graphs, when E*STOPS is less than the cost of the exponentiation, the vector of route counts is
+ * propagated from START vertex over the graph edges instead, see {@link RouteCountingUtils}. The time complexity in
+ * this case is O(E*STOPS), the space complexity is O(V).
+ *
+ * <p>A batch of queries is grouped by the number of STOPS, and every group either raises the matrix to the power once
+ * or propagates the vector of route counts once per distinct START vertex, whichever is cheaper, see
+ * {@link RouteCountingByStopsAlgorithm}.
+ *
  * @return  number of routes
  */
-public class P3FindNumberOfRoutesWithExactlyStopsAlgorithm implements AlgorithmExecutor {
+public class P3FindNumberOfRoutesWithExactlyStopsAlgorithm extends RouteCountingByStopsAlgorithm {
+
+    public P3FindNumberOfRoutesWithExactlyStopsAlgorithm() {
+        super(INPUT_PROBLEM.P3);
+    }
+
     @Override
     public String validateParametersAndExecute(final TownGraph townGraph, final VertexMapper mapper,
             final String[] parameters) {
 
-        Preconditions.checkArgument(parameters != null && parameters.length == 4,
-            "Expected input: P3 X Y N - problem 3: find the number of routes from START vertex to FINISH vertex with a exactly number of STOPS. X - START vertex, Y - FINISH vertex, N - number of STOPS to consider");
-        Preconditions.checkArgument(INPUT_PROBLEM.valueOf(parameters[0]) == INPUT_PROBLEM.P3,
-            "Wrong parameters, expected P3, found [%s]", parameters[0]);
+        final int[] query = parseQuery(mapper, parameters);
 
-        char from = parameters[1].charAt(0);
-        char to = parameters[2].charAt(0);
-        int stops = Integer.parseInt(parameters[3]);
+        return validateParametersAndExecute(townGraph, INPUT_PROBLEM.P3, new int[] {query[0], query[1]}, query[2]);
+    }
+
+    /**
+     * @return  number of routes modulo 2^64
+     */
+    public long algorithm(final TownGraph townGraph, final int from, final int to, final int stops) {
+        return countRoutes(townGraph, from, to, stops);
+    }
 
-        long result = algorithm(townGraph, mapper.id(from), mapper.id(to), stops);
+    @Override
+    protected boolean isCached(final ConnectivityMatrixPowers powers, final int stops) {
+        return powers.isPowerCached(stops);
+    }
 
-        return String.valueOf(result);
+    @Override
+    protected long[][] matrix(final ConnectivityMatrixPowers powers, final int stops) {
+        return powers.power(stops);
     }
 
-    public long algorithm(final TownGraph townGraph, final int from, final int to, final int stops) {
+    @Override
+    protected int multiplications(final int stops) {
+        return 2 * (Integer.SIZE - Integer.numberOfLeadingZeros(stops));
+    }
 
-        Preconditions.checkArgument(stops >= 0, "Number of stops must be non negative, was [%s]", stops);
+    @Override
+    protected long[] propagate(final CompressedEdgeIndex toEdges, final int source, final int stops) {
+        return RouteCountingUtils.routeCountsWithExactlyStops(toEdges, source, stops);
+    }
 
-        int multiplyTimes = stops;
+    /**
+     * @return  START vertex, FINISH vertex and number of STOPS
+     */
+    private static int[] parseQuery(final VertexMapper mapper, final String[] parameters) {
 
-        long[][] connectivityMatrix = townGraph.getConnectivityMatrix();
+        Preconditions.checkArgument(parameters != null && parameters.length == 4,
+            "Expected input: P3 X Y N - problem 3: find the number of routes from START vertex to FINISH vertex with a exactly number of STOPS. X - START vertex, Y - FINISH vertex, N - number of STOPS to consider");
+        Preconditions.checkArgument(INPUT_PROBLEM.valueOf(parameters[0]) == INPUT_PROBLEM.P3,
+            "Wrong parameters, expected P3, found [%s]", parameters[0]);
 
-        long[][] result = MatrixUtils.identityMatrix(connectivityMatrix.length, connectivityMatrix[0].length);
+        String from = parameters[1];
+        String to = parameters[2];
+        int stops = Integer.parseInt(parameters[3]);
 
-        while (multiplyTimes > 0) {
-            if (multiplyTimes % 2 == 1) {
-                result = MatrixUtils.multiplyMatrices(result, connectivityMatrix);
-                multiplyTimes--;
-            } else {
-                connectivityMatrix = MatrixUtils.multiplyMatrices(connectivityMatrix, connectivityMatrix);
-                multiplyTimes >>= 1;
-            }
-        }
+        Preconditions.checkArgument(stops >= 0, "Number of stops must be non negative, was [%s]", stops);
 
-        return result[from][to];
+        return new int[] {mapper.id(from), mapper.id(to), stops};
     }
 
 }
@@ -1,104 +1,248 @@
 package test.logic.algorithms;
 
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Sets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 import test.domain.INPUT_PROBLEM;
 import test.domain.TownGraph;
-import test.domain.TownGraphEdge;
 
 import test.logic.VertexMapper;
 
+import test.logic.utils.AllPairsShortestDistances;
+import test.logic.utils.BidirectionalDijkstraUtils;
+import test.logic.utils.ContractionHierarchy;
+import test.logic.utils.DijkstraUtils;
+import test.logic.utils.LandmarkDistances;
+
 /**
  * <p>Problem 4: find the shortest distance from START vertex to FINISH vertex with at least one stop.
  *
- * <p>The solution is based on Dijkstra's shortest path algorithm, with modification for the case when START == FINISH
+ * <p>The solution is based on Dijkstra's shortest path algorithm, with modification for the case when START == FINISH:
+ * the search is seeded with the edges going out of START vertex, so reaching START vertex again gives the shortest
+ * cycle. The search stops as soon as FINISH vertex is settled, see {@link DijkstraUtils}.
  *
- * <p>The time complexity is O(V^2*E), where V - number of graph vertexes. E - number graph edges. This is naive
- * implementation of Dijkstra's algorithm, which may be further improved to reach O(E + V*LOG(V)) with Fibonacci Heap.
+ * <p>The time complexity is O(E*LOG(V) + V*LOG(V)), where V - number of graph vertexes. E - number graph edges. The
+ * vertexes are kept in an indexed 4-ary heap with decrease key.
  *
  * <p>The space complexity is O(V), where V - number of graph vertexes.
  *
+ * <p>With {@link Strategy#ALL_PAIRS} the distances between all the pairs of vertexes are precomputed once per graph
+ * with V parallel runs of the same search, see {@link AllPairsShortestDistances}. Every query is a table read then,
+ * the space complexity is O(V^2). The executors build the table right after the graph is loaded, see
+ * {@link #precompute(TownGraph)}.
+ *
+ * <p>For large graphs {@link Strategy#BIDIRECTIONAL} searches from both ends at once, see
+ * {@link BidirectionalDijkstraUtils}, and {@link Strategy#ALT} directs the search towards FINISH vertex with the lower
+ * bounds from landmark distances precomputed once per graph, see {@link LandmarkDistances}. Both settle far fewer
+ * vertexes than the plain search on road like graphs and give exact answers.
+ *
+ * <p>{@link Strategy#CONTRACTION_HIERARCHIES} contracts the graph once per graph into a hierarchy with shortcuts, see
+ * {@link ContractionHierarchy}. A query then runs two small upward searches and settles only a few hundred vertexes
+ * even on graphs with millions of them.
+ *
+ * <p>A batch of queries with {@link Strategy#DIJKSTRA} is grouped by START vertex, and every START vertex with more
+ * than one query gets a single full search answering all its FINISH vertexes.
+ *
  * @return  number of routes
  */
-public class P4FindShortestDistanceAlgorithm implements AlgorithmExecutor {
+public class P4FindShortestDistanceAlgorithm implements BatchAlgorithmExecutor {
+
+    /**
+     * System property selecting the {@link Strategy} used by {@link AlgorithmExecutorFactory}.
+     */
+    public static final String STRATEGY_PROPERTY = "algofun.p4.strategy";
+
+    public enum Strategy {
+
+        /**
+         * Single Dijkstra search per query.
+         */
+        DIJKSTRA,
+
+        /**
+         * Table of distances between all the pairs of vertexes, precomputed when the graph is loaded.
+         */
+        ALL_PAIRS,
+
+        /**
+         * Bidirectional Dijkstra search per query.
+         */
+        BIDIRECTIONAL,
+
+        /**
+         * A* search with landmark lower bounds per query, landmark distances are precomputed when the graph is loaded.
+         */
+        ALT,
+
+        /**
+         * Bidirectional upward search in a contraction hierarchy per query, the hierarchy is built when the graph is
+         * loaded.
+         */
+        CONTRACTION_HIERARCHIES
+    }
+
+    private final Strategy strategy;
+
+    public P4FindShortestDistanceAlgorithm() {
+        this(Strategy.DIJKSTRA);
+    }
+
+    public P4FindShortestDistanceAlgorithm(final Strategy strategy) {
+        this.strategy = Preconditions.checkNotNull(strategy, "Strategy is missing");
+    }
+
+    /**
+     * @return  the strategy selected with {@link #STRATEGY_PROPERTY}, {@link Strategy#DIJKSTRA} by default
+     */
+    public static Strategy configuredStrategy() {
+        return Strategy.valueOf(System.getProperty(STRATEGY_PROPERTY, Strategy.DIJKSTRA.name()));
+    }
+
+    /**
+     * Builds the per graph index of the strategy, so the first query does not pay for it. The index is built on the
+     * first query otherwise.
+     */
+    public void precompute(final TownGraph townGraph) {
+        switch (strategy) {
+
+            case ALL_PAIRS :
+                AllPairsShortestDistances.of(townGraph);
+                break;
+
+            case ALT :
+                LandmarkDistances.of(townGraph);
+                break;
+
+            case CONTRACTION_HIERARCHIES :
+                ContractionHierarchy.of(townGraph);
+                break;
+
+            default :
+                break;
+        }
+    }
 
     @Override
     public String validateParametersAndExecute(final TownGraph townGraph, final VertexMapper mapper,
             final String[] parameters) {
-        Preconditions.checkArgument(parameters != null && parameters.length == 3,
-            "Expected input: P4 X Y - problem 4: find the shortest distance from START vertex to FINISH vertex with at least one stop. X - START vertex, Y - FINISH vertex");
-        Preconditions.checkArgument(INPUT_PROBLEM.valueOf(parameters[0]) == INPUT_PROBLEM.P4,
-            "Wrong parameters, expected P4, found [%s]", parameters[0]);
 
-        char from = parameters[1].charAt(0);
-        char to = parameters[2].charAt(0);
+        final int[] query = parseQuery(mapper, parameters);
 
-        Optional<Long> result = algorithm(townGraph, mapper.id(from), mapper.id(to));
+        return validateParametersAndExecute(townGraph, INPUT_PROBLEM.P4, query, 0);
+    }
 
-        return result.isPresent() ? String.valueOf(result.get()) : NO_ROUTE_FOUND;
+    @Override
+    public String validateParametersAndExecute(final TownGraph townGraph, final INPUT_PROBLEM problem,
+            final int[] vertexes, final long number) {
+
+        final int[] query = parseQuery(problem, vertexes);
+
+        return toAnswer(algorithm(townGraph, query[0], query[1]));
     }
 
-    public Optional<Long> algorithm(final TownGraph townGraph, final int from, final int to) {
+    @Override
+    public List<String> validateParametersAndExecuteAll(final TownGraph townGraph, final List<ParsedQuery> queries) {
 
-        long[] shortestDistance = new long[townGraph.getVertexes().size()];
-        for (int i = 0; i < shortestDistance.length; i++) {
-            shortestDistance[i] = Long.MAX_VALUE;
-        }
+        final int[][] parsedQueries = new int[queries.size()][];
+        final Map<Integer, Integer> numberOfQueriesBySource = Maps.newHashMap();
+        for (int i = 0; i < parsedQueries.length; i++) {
+            parsedQueries[i] = parseQuery(queries.get(i).getProblem(), queries.get(i).getVertexes());
 
-        shortestDistance[from] = 0;
-
-        final Set<Integer> visitedVertexes = Sets.newHashSet(from);
-        final Set<Integer> remainingVertexes = Sets.newHashSet(townGraph.getVertexes());
-        remainingVertexes.remove(from);
-        while (!remainingVertexes.isEmpty()) {
-            Integer remainingVertexWithMinimalDistance = null;
-            long minimalDistance = Long.MAX_VALUE;
-            for (Integer remainingVertex : remainingVertexes) {
-                if (remainingVertexWithMinimalDistance == null) {
-                    remainingVertexWithMinimalDistance = remainingVertex;
-                }
+            final Integer numberOfQueries = numberOfQueriesBySource.get(parsedQueries[i][0]);
+            numberOfQueriesBySource.put(parsedQueries[i][0], numberOfQueries == null ? 1 : numberOfQueries + 1);
+        }
 
-                List<TownGraphEdge> edges = townGraph.getFromEdges(remainingVertex);
-                for (TownGraphEdge edge : edges) {
-                    if (visitedVertexes.contains(edge.getFrom())) {
-                        long currentDistance = sumConsideringInf(shortestDistance[edge.getFrom()], edge.getDistance());
-                        if (shortestDistance[edge.getTo()] > currentDistance) {
-                            shortestDistance[edge.getTo()] = currentDistance;
-                        }
-
-                        if (shortestDistance[edge.getTo()] < minimalDistance) {
-                            remainingVertexWithMinimalDistance = edge.getTo();
-                            minimalDistance = shortestDistance[edge.getTo()];
-                        }
-                    }
+        final Map<Integer, long[]> distancesBySource = Maps.newHashMap();
+        if (strategy == Strategy.DIJKSTRA) {
+            for (Map.Entry<Integer, Integer> entry : numberOfQueriesBySource.entrySet()) {
+                if (entry.getValue() > 1) {
+                    distancesBySource.put(entry.getKey(),
+                        DijkstraUtils.shortestDistances(townGraph.getToEdgesIndex(), entry.getKey(), true));
                 }
             }
+        }
 
-            visitedVertexes.add(remainingVertexWithMinimalDistance);
-            remainingVertexes.remove(remainingVertexWithMinimalDistance);
+        final List<String> results = Lists.newArrayListWithCapacity(parsedQueries.length);
+        for (int[] query : parsedQueries) {
+            final long[] distances = distancesBySource.get(query[0]);
+            results.add(toAnswer(distances == null ? algorithm(townGraph, query[0], query[1])
+                                                   : toOptional(distances[query[1]])));
         }
 
-        if (from == to) {
-            List<TownGraphEdge> edges = townGraph.getFromEdges(to);
-            shortestDistance[to] = Long.MAX_VALUE;
-            for (TownGraphEdge edge : edges) {
-                long currentDistance = sumConsideringInf(shortestDistance[edge.getFrom()], edge.getDistance());
-                if (shortestDistance[edge.getTo()] > currentDistance) {
-                    shortestDistance[edge.getTo()] = currentDistance;
-                }
-            }
+        return results;
+    }
+
+    @Override
+    public long batchKey(final ParsedQuery query) {
+        return query.getVertexes().length > 0 ? query.getVertexes()[0] : -1;
+    }
+
+    public Optional<Long> algorithm(final TownGraph townGraph, final int from, final int to) {
+
+        final long shortestDistance;
+        switch (strategy) {
+
+            case ALL_PAIRS :
+                shortestDistance = AllPairsShortestDistances.of(townGraph).distance(from, to);
+                break;
+
+            case BIDIRECTIONAL :
+                shortestDistance = BidirectionalDijkstraUtils.shortestDistance(townGraph.getToEdgesIndex(),
+                        townGraph.getFromEdgesIndex(), from, to);
+                break;
+
+            case ALT :
+                shortestDistance = LandmarkDistances.of(townGraph).shortestDistance(from, to);
+                break;
+
+            case CONTRACTION_HIERARCHIES :
+                shortestDistance = ContractionHierarchy.of(townGraph).shortestDistance(from, to);
+                break;
+
+            default :
+                shortestDistance = DijkstraUtils.shortestDistance(townGraph.getToEdgesIndex(), from, to);
         }
 
-        return shortestDistance[to] == Long.MAX_VALUE ? Optional.<Long>absent() : Optional.of(shortestDistance[to]);
+        return toOptional(shortestDistance);
+    }
+
+    /**
+     * @return  START vertex and FINISH vertex
+     */
+    private static int[] parseQuery(final VertexMapper mapper, final String[] parameters) {
+        Preconditions.checkArgument(parameters != null && parameters.length == 3,
+            "Expected input: P4 X Y - problem 4: find the shortest distance from START vertex to FINISH vertex with at least one stop. X - START vertex, Y - FINISH vertex");
+        Preconditions.checkArgument(INPUT_PROBLEM.valueOf(parameters[0]) == INPUT_PROBLEM.P4,
+            "Wrong parameters, expected P4, found [%s]", parameters[0]);
+
+        String from = parameters[1];
+        String to = parameters[2];
+
+        return new int[] {mapper.id(from), mapper.id(to)};
+    }
+
+    /**
+     * @return  START vertex and FINISH vertex
+     */
+    private static int[] parseQuery(final INPUT_PROBLEM problem, final int[] vertexes) {
+        Preconditions.checkArgument(problem == INPUT_PROBLEM.P4, "Wrong parameters, expected P4, found [%s]", problem);
+        Preconditions.checkArgument(vertexes != null && vertexes.length == 2,
+            "Expected START vertex and FINISH vertex for P4");
+
+        return vertexes;
+    }
+
+    private static String toAnswer(final Optional<Long> result) {
+        return result.isPresent() ? String.valueOf(result.get()) : NO_ROUTE_FOUND;
     }
 
-    private static long sumConsideringInf(final long value, final int distance) {
-        return value == Long.MAX_VALUE ? Long.MAX_VALUE : value + distance;
+    private static Optional<Long> toOptional(final long shortestDistance) {
+        return shortestDistance == DijkstraUtils.UNREACHABLE ? Optional.<Long>absent() : Optional.of(shortestDistance);
     }
 
 }
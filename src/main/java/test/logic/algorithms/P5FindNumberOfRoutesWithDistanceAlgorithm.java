@@ -1,117 +1,171 @@
 package test.logic.algorithms;
 
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Queue;
+import java.util.Map;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.UnsignedLongs;
 
 import test.domain.INPUT_PROBLEM;
 import test.domain.TownGraph;
-import test.domain.TownGraphEdge;
 
 import test.logic.VertexMapper;
 
+import test.logic.utils.RouteCountsByDistance;
+
 /**
  * <p>Problem 5: find the number of different routes from START vertex to FINISH vertex with a distance of less than
  * MAX_DISTANCE.
  *
- * <p>This problem is NP-hard since it is possible to make a reduction from longest path problem to it in polynomial
- * time.
+ * <p>The number of routes grows exponentially with MAX_DISTANCE, so the routes are counted rather than enumerated.
  *
- * <p>The solution is based on dynamic programming where the state is dp[current_vertex][w] - number of paths to FINISH
- * vertex from current_vertex with path weight less than or equal to w.
+ * <p>The solution is based on dynamic programming where the state is dp[current_vertex][w] - number of routes from
+ * current_vertex to FINISH vertex with the route weight exactly w. Since all the edge weights are positive, the table
+ * is filled in increasing order of w:
  *
- * <p>Algorithm starts from FINISH vertex and traverses all paths with breadth-first search until the path weight is
- * less or equal than MAX_DISTANCE.
+ * <pre>
+ *     dp[v][w] = SUM over edges v -> u with weight d ([u == FINISH and w == d] + dp[u][w - d])
+ * </pre>
  *
  * <p>The result is found by summing up dp[START][w], where w < MAX_DISTANCE.
  *
- * <p>The worst case time complexity is V^MAX_DISTANCE, where V - number of graph vertexes, the graph is complete and
- * the weight of each edge is 1.
+ * <p>The table is anchored at FINISH vertex, so it answers every START vertex and every smaller MAX_DISTANCE as well.
+ * It is kept per FINISH vertex with the cumulative sums over w and extended when a larger MAX_DISTANCE arrives, see
+ * {@link RouteCountsByDistance}. Repeated queries to the same FINISH vertex are a single array read.
+ *
+ * <p>MAX_DISTANCE may be as large as a long. When the table would not fit into the cache, the routes are counted over
+ * sparse distance buckets holding only the reached (vertex, distance) states, so the memory does not grow with
+ * V*MAX_DISTANCE.
+ *
+ * <p>Both ways skip the states which can't end at FINISH vertex within MAX_DISTANCE: the shortest distances to FINISH
+ * vertex are found once with Dijkstra's algorithm and serve as lower bounds of the remaining distance.
+ *
+ * <p>A batch of queries is grouped by FINISH vertex, and the table of every FINISH vertex is extended once to the
+ * largest MAX_DISTANCE of its group before any of the group is answered.
+ *
+ * <p>The time complexity is O((E+V)*MAX_DISTANCE), the space complexity is O(V*MAX_DISTANCE), where V - number of
+ * graph vertexes, E - number of graph edges. The algorithm is pseudo-polynomial, as it is polynomial in the value of
+ * MAX_DISTANCE rather than in its length.
+ *
+ * <p>The number of routes is counted modulo 2^64 and printed as an unsigned number, so the answer is exact as long as
+ * the number of routes is below 2^64.
  *
  * @return  number of routes, absent in case if no route is found
  */
-public class P5FindNumberOfRoutesWithDistanceAlgorithm implements AlgorithmExecutor {
+public class P5FindNumberOfRoutesWithDistanceAlgorithm implements BatchAlgorithmExecutor {
     @Override
     public String validateParametersAndExecute(final TownGraph townGraph, final VertexMapper mapper,
             final String[] parameters) {
-        Preconditions.checkArgument(parameters != null && parameters.length == 4,
-            "Expected input: P5 X Y N - problem 5: find the number of different routes from START vertex to FINISH vertex with a distance of less than MAX_DISTANCE."
-                + "X - START vertex, Y - FINISH vertex, N - short integer representing MAX_DISTANCE");
-        Preconditions.checkArgument(INPUT_PROBLEM.valueOf(parameters[0]) == INPUT_PROBLEM.P5,
-            "Wrong parameters, expected P5, found [%s]", parameters[0]);
 
-        char from = parameters[1].charAt(0);
-        char to = parameters[2].charAt(0);
-        short maxDistanceExclusive = Short.parseShort(parameters[3]);
+        final long[] query = parseQuery(mapper, parameters);
+
+        return validateParametersAndExecute(townGraph, INPUT_PROBLEM.P5, new int[] {(int) query[0], (int) query[1]},
+                query[2]);
+    }
+
+    @Override
+    public String validateParametersAndExecute(final TownGraph townGraph, final INPUT_PROBLEM problem,
+            final int[] vertexes, final long number) {
 
-        Optional<Integer> result = algorithm(townGraph, mapper.id(from), mapper.id(to), maxDistanceExclusive);
+        final long[] query = parseQuery(problem, vertexes, number);
 
-        return result.isPresent() ? String.valueOf(result.get()) : NO_ROUTE_FOUND;
+        return toAnswer(algorithm(townGraph, (int) query[0], (int) query[1], query[2]));
     }
 
-    private static class NodeInQueue {
-        private int vertex;
-        private int totalDistanceToFinal;
+    @Override
+    public List<String> validateParametersAndExecuteAll(final TownGraph townGraph, final List<ParsedQuery> queries) {
+
+        final long[][] parsedQueries = new long[queries.size()][];
+        final Map<Integer, Integer> largestQueryByFinish = Maps.newHashMap();
+        for (int i = 0; i < parsedQueries.length; i++) {
+            final ParsedQuery query = queries.get(i);
+            parsedQueries[i] = parseQuery(query.getProblem(), query.getVertexes(), query.getNumber());
 
-        private NodeInQueue(final int vertex, final int totalDistanceToFinal) {
-            this.vertex = vertex;
-            this.totalDistanceToFinal = totalDistanceToFinal;
+            final Integer largestQuery = largestQueryByFinish.get((int) parsedQueries[i][1]);
+            if (largestQuery == null || parsedQueries[largestQuery][2] < parsedQueries[i][2]) {
+                largestQueryByFinish.put((int) parsedQueries[i][1], i);
+            }
         }
 
-        public int getVertex() {
-            return vertex;
+        // the largest query of every FINISH vertex goes first, so its table is extended only once
+        final String[] results = new String[parsedQueries.length];
+        for (int i : largestQueryByFinish.values()) {
+            results[i] = toAnswer(algorithm(townGraph, (int) parsedQueries[i][0], (int) parsedQueries[i][1],
+                        parsedQueries[i][2]));
         }
 
-        public int getTotalDistanceToFinal() {
-            return totalDistanceToFinal;
+        for (int i = 0; i < parsedQueries.length; i++) {
+            if (results[i] == null) {
+                results[i] = toAnswer(algorithm(townGraph, (int) parsedQueries[i][0], (int) parsedQueries[i][1],
+                            parsedQueries[i][2]));
+            }
         }
+
+        return Arrays.asList(results);
+    }
+
+    @Override
+    public long batchKey(final ParsedQuery query) {
+        return query.getVertexes().length > 1 ? query.getVertexes()[1] : -1;
     }
 
-    public Optional<Integer> algorithm(final TownGraph townGraph, final int start, final int finish,
-            final int maxDistanceExclusive) {
+    /**
+     * @return  number of routes modulo 2^64, absent in case if no route is found
+     */
+    public Optional<Long> algorithm(final TownGraph townGraph, final int start, final int finish,
+            final long maxDistanceExclusive) {
 
         Preconditions.checkArgument(maxDistanceExclusive >= 0, "Max distance must be non negative, was [%s]",
             maxDistanceExclusive);
 
-        int numberOfVertexes = townGraph.getVertexes().size();
+        final RouteCountsByDistance routeCounts = RouteCountsByDistance.of(townGraph);
+        final long result = routeCounts.countRoutes(start, finish, maxDistanceExclusive);
 
-        final Queue<NodeInQueue> queue = new LinkedList<>();
+        // a multiple of 2^64 routes wraps to 0 as well
+        if (result == 0 && !routeCounts.hasRoutes(start, finish, maxDistanceExclusive)) {
+            return Optional.absent();
+        }
 
-        queue.add(new NodeInQueue(finish, 0));
+        return Optional.of(result);
+    }
 
-        final int[][] dp = new int[numberOfVertexes][maxDistanceExclusive + 1];
+    /**
+     * @return  START vertex, FINISH vertex and MAX_DISTANCE
+     */
+    private static long[] parseQuery(final VertexMapper mapper, final String[] parameters) {
+        Preconditions.checkArgument(parameters != null && parameters.length == 4,
+            "Expected input: P5 X Y N - problem 5: find the number of different routes from START vertex to FINISH vertex with a distance of less than MAX_DISTANCE."
+                + "X - START vertex, Y - FINISH vertex, N - integer representing MAX_DISTANCE");
+        Preconditions.checkArgument(INPUT_PROBLEM.valueOf(parameters[0]) == INPUT_PROBLEM.P5,
+            "Wrong parameters, expected P5, found [%s]", parameters[0]);
 
-        while (!queue.isEmpty()) {
-            final NodeInQueue node = queue.poll();
-            final List<TownGraphEdge> fromNeighbours = townGraph.getFromEdges(node.getVertex());
+        String from = parameters[1];
+        String to = parameters[2];
+        long maxDistanceExclusive = Long.parseLong(parameters[3]);
 
-            //J-
-            for (TownGraphEdge fromEdge : fromNeighbours) {
-                NodeInQueue newNode = new NodeInQueue(fromEdge.getFrom(), node.getTotalDistanceToFinal() + fromEdge.getDistance());
-                if (newNode.getTotalDistanceToFinal() <= maxDistanceExclusive) {
-                    dp[newNode.getVertex()][newNode.getTotalDistanceToFinal()] +=
-                            dp[node.getVertex()][node.getTotalDistanceToFinal()] == 0
-                                    ? 1 : dp[node.getVertex()][node.getTotalDistanceToFinal()];
-                    queue.offer(newNode);
-                }
-            }
-            //J+
-        }
+        Preconditions.checkArgument(maxDistanceExclusive >= 0, "Max distance must be non negative, was [%s]",
+            maxDistanceExclusive);
 
-        int result = 0;
+        return new long[] {mapper.id(from), mapper.id(to), maxDistanceExclusive};
+    }
 
-        for (int distance = 0; distance < maxDistanceExclusive; distance++) {
-            result += dp[start][distance];
-        }
+    /**
+     * @return  START vertex, FINISH vertex and MAX_DISTANCE
+     */
+    private static long[] parseQuery(final INPUT_PROBLEM problem, final int[] vertexes, final long number) {
+        Preconditions.checkArgument(problem == INPUT_PROBLEM.P5, "Wrong parameters, expected P5, found [%s]", problem);
+        Preconditions.checkArgument(vertexes != null && vertexes.length == 2,
+            "Expected START vertex and FINISH vertex for P5");
+        Preconditions.checkArgument(number >= 0, "Max distance must be non negative, was [%s]", number);
 
-        return optionalOrAbsentIfZero(result);
+        return new long[] {vertexes[0], vertexes[1], number};
     }
 
-    private static Optional<Integer> optionalOrAbsentIfZero(final int result) {
-        return result != 0 ? Optional.of(result) : Optional.<Integer>absent();
+    private static String toAnswer(final Optional<Long> result) {
+        return result.isPresent() ? UnsignedLongs.toString(result.get()) : NO_ROUTE_FOUND;
     }
 
 }
@@ -0,0 +1,96 @@
+package test.logic.algorithms;
+
+import com.google.common.base.Preconditions;
+
+import test.domain.INPUT_PROBLEM;
+
+import test.logic.InputParser;
+import test.logic.VertexMapper;
+
+/**
+ * <p>Query decoded into primitive values: the problem, the ids of the vertexes in the input order and, for the problems
+ * which have one, the trailing number (STOPS of P2 and P3, MAX_DISTANCE of P5), 0 for the other problems.
+ *
+ * <p>The queries decoded by {@link InputParser} are executed with
+ * {@link AlgorithmExecutor#validateParametersAndExecute(test.domain.TownGraph, INPUT_PROBLEM, int[], long)}, so they
+ * are never turned back into strings and parsed again.
+ */
+public class ParsedQuery {
+
+    private final INPUT_PROBLEM problem;
+    private final int[] vertexes;
+    private final long number;
+
+    public ParsedQuery(final INPUT_PROBLEM problem, final int[] vertexes, final long number) {
+        this.problem = Preconditions.checkNotNull(problem, "Problem is missing");
+        this.vertexes = Preconditions.checkNotNull(vertexes, "Vertexes are missing");
+        this.number = number;
+    }
+
+    /**
+     * @return  the query decoded by {@link InputParser}, the vertexes are mapped to ids with {@code mapper}
+     */
+    public static ParsedQuery of(final InputParser.Query query, final VertexMapper mapper) {
+        Preconditions.checkArgument(query.hasNumber() || !hasNumber(query.getProblem()),
+            "Expected the number of %s as the last parameter", query.getProblem());
+
+        final int[] vertexes = new int[query.numberOfVertexes()];
+        for (int i = 0; i < vertexes.length; i++) {
+            vertexes[i] = mapper.id(query.vertex(i));
+        }
+
+        return new ParsedQuery(query.getProblem(), vertexes, query.hasNumber() ? query.getNumber() : 0);
+    }
+
+    /**
+     * @return  the query given in the format of {@link AlgorithmExecutor} parameters, e.g. {"P3", "A", "C", "4"}, the
+     *          vertexes are mapped to ids with {@code mapper}
+     */
+    public static ParsedQuery of(final String[] parameters, final VertexMapper mapper) {
+        Preconditions.checkArgument(parameters != null && parameters.length >= 1, "The problem query is missing");
+
+        final INPUT_PROBLEM problem = INPUT_PROBLEM.valueOf(parameters[0]);
+        final int numberOfVertexes = parameters.length - (hasNumber(problem) ? 2 : 1);
+        Preconditions.checkArgument(numberOfVertexes >= 0, "Expected the number of %s as the last parameter", problem);
+
+        final int[] vertexes = new int[numberOfVertexes];
+        for (int i = 0; i < vertexes.length; i++) {
+            Preconditions.checkArgument(parameters[i + 1] != null, "Vertex name is missing");
+            vertexes[i] = mapper.id(parameters[i + 1]);
+        }
+
+        return new ParsedQuery(problem, vertexes,
+                hasNumber(problem) ? Long.parseLong(parameters[parameters.length - 1]) : 0);
+    }
+
+    public INPUT_PROBLEM getProblem() {
+        return problem;
+    }
+
+    /**
+     * @return  the ids of the vertexes in the input order, the array must not be modified
+     */
+    public int[] getVertexes() {
+        return vertexes;
+    }
+
+    public long getNumber() {
+        return number;
+    }
+
+    /**
+     * @return  true if the query of the problem ends with a number: STOPS of P2 and P3, MAX_DISTANCE of P5
+     */
+    private static boolean hasNumber(final INPUT_PROBLEM problem) {
+        switch (problem) {
+
+            case P2 :
+            case P3 :
+            case P5 :
+                return true;
+
+            default :
+                return false;
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package test.logic.algorithms;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import test.domain.INPUT_PROBLEM;
+import test.domain.TownGraph;
+
+import test.logic.VertexMapper;
+
+import test.logic.utils.ParallelUtils;
+
+/**
+ * <p>Executes a whole block of queries at once. The queries are grouped by problem and by
+ * {@link BatchAlgorithmExecutor#batchKey(ParsedQuery) batch key}, and every group is passed to its
+ * {@link BatchAlgorithmExecutor}, which runs the work shared by the queries with the same parameters only once: the
+ * same number of STOPS for P2 and P3, the same START vertex for P4, the same FINISH vertex for P5. The problems without
+ * batch support are executed query by query.
+ *
+ * <p>The queries are planned and executed as {@link ParsedQuery parsed queries}, the queries given as strings are
+ * parsed once beforehand.
+ *
+ * <p>With more than one thread the groups are executed concurrently in a fixed pool, the graph is immutable and its
+ * derived indexes are thread safe. The groups are submitted in the order of their first queries and the answers pass
+ * through a {@link ReorderBuffer}, so they are always delivered in the order of the queries.
+ *
+ * <p>An invalid query fails the block the same way as if the queries were executed one by one: the answers to all the
+ * preceding queries are delivered, then the exception of the first invalid query is thrown and none of the following
+ * answers is delivered. A batch with an invalid query is executed query by query to find out which queries precede it.
+ */
+public class QueryPlanner {
+
+    /**
+     * System property with the number of threads the queries are executed in, 1 by default. It also sets the
+     * parallelism of the fork/join pool shared by the computations, see {@link ParallelUtils}.
+     */
+    public static final String THREADS_PROPERTY = ParallelUtils.THREADS_PROPERTY;
+
+    private final AlgorithmExecutorFactory factory;
+    private final ExecutorService executor;
+
+    public QueryPlanner(final AlgorithmExecutorFactory factory) {
+        this(factory, 1);
+    }
+
+    public QueryPlanner(final AlgorithmExecutorFactory factory, final int threads) {
+        Preconditions.checkArgument(threads >= 1, "Number of threads must be positive, was [%s]", threads);
+
+        this.factory = Preconditions.checkNotNull(factory, "Factory is missing");
+
+        //J-
+        this.executor = threads == 1 ? null : Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                .setNameFormat("query-%d")
+                .setDaemon(true)
+                .build());
+        //J+
+    }
+
+    /**
+     * @return  answers to the queries in the same order
+     */
+    public List<String> execute(final TownGraph townGraph, final VertexMapper mapper, final List<String[]> queries) {
+        final String[] answers = new String[queries.size()];
+
+        //J-
+        execute(townGraph, mapper, queries, new AnswerConsumer() {
+                @Override
+                public void accept(final int queryIndex, final String answer) {
+                    answers[queryIndex] = answer;
+                }
+            });
+        //J+
+
+        return Arrays.asList(answers);
+    }
+
+    /**
+     * Executes the queries given in the format of {@link AlgorithmExecutor} parameters, see
+     * {@link #execute(TownGraph, List, AnswerConsumer)}.
+     */
+    public void execute(final TownGraph townGraph, final VertexMapper mapper, final List<String[]> queries,
+            final AnswerConsumer consumer) {
+
+        final List<ParsedQuery> parsedQueries = Lists.newArrayListWithCapacity(queries.size());
+        RuntimeException invalidQuery = null;
+        for (String[] query : queries) {
+            try {
+                parsedQueries.add(ParsedQuery.of(query, mapper));
+            } catch (RuntimeException e) {
+                // the queries after the invalid one are not executed
+                invalidQuery = e;
+                break;
+            }
+        }
+
+        execute(townGraph, parsedQueries, consumer);
+
+        if (invalidQuery != null) {
+            throw invalidQuery;
+        }
+    }
+
+    /**
+     * Executes the queries and passes the answers to the consumer in the order of the queries, each answer as soon as
+     * the answers to all the preceding queries are passed. If a query is invalid, the answers to the preceding queries
+     * are passed and its exception is thrown.
+     */
+    public void execute(final TownGraph townGraph, final List<ParsedQuery> queries, final AnswerConsumer consumer) {
+        final ReorderBuffer buffer = new ReorderBuffer(consumer);
+        final List<Callable<Void>> tasks = plan(townGraph, queries, buffer);
+
+        QueryFailure failure = null;
+        if (executor == null) {
+            for (Callable<Void> task : tasks) {
+                failure = QueryFailure.first(failure, call(task));
+            }
+        } else {
+            final List<Future<Void>> futures = Lists.newArrayListWithCapacity(tasks.size());
+            for (Callable<Void> task : tasks) {
+                futures.add(executor.submit(task));
+            }
+
+            try {
+                for (Future<Void> future : futures) {
+                    failure = QueryFailure.first(failure, get(future));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while executing the queries", e);
+            } finally {
+                for (Future<Void> future : futures) {
+                    future.cancel(true);
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw Throwables.propagate(failure.getCause());
+        }
+    }
+
+    /**
+     * Stops the threads of the planner, the queries being executed are completed.
+     */
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private List<Callable<Void>> plan(final TownGraph townGraph, final List<ParsedQuery> queries,
+            final AnswerConsumer consumer) {
+
+        // the groups keep the order of their first queries
+        final Map<List<Object>, List<Integer>> groups = Maps.newLinkedHashMap();
+        final Map<INPUT_PROBLEM, AlgorithmExecutor> algorithms = Maps.newEnumMap(INPUT_PROBLEM.class);
+        for (int i = 0; i < queries.size(); i++) {
+            final ParsedQuery query = queries.get(i);
+            final INPUT_PROBLEM inputProblem = query.getProblem();
+
+            AlgorithmExecutor algorithm = algorithms.get(inputProblem);
+            if (algorithm == null) {
+                algorithm = factory.getAlgorithmExecutor(inputProblem);
+                algorithms.put(inputProblem, algorithm);
+            }
+
+            final List<Object> key = algorithm instanceof BatchAlgorithmExecutor
+                ? Arrays.<Object>asList(inputProblem, ((BatchAlgorithmExecutor) algorithm).batchKey(query))
+                : Arrays.<Object>asList(inputProblem, i);
+
+            List<Integer> indexes = groups.get(key);
+            if (indexes == null) {
+                indexes = Lists.newArrayList();
+                groups.put(key, indexes);
+            }
+
+            indexes.add(i);
+        }
+
+        final List<Callable<Void>> tasks = Lists.newArrayListWithCapacity(groups.size());
+        for (Map.Entry<List<Object>, List<Integer>> entry : groups.entrySet()) {
+            final AlgorithmExecutor algorithm = algorithms.get((INPUT_PROBLEM) entry.getKey().get(0));
+            tasks.add(new GroupTask(townGraph, algorithm, queries, entry.getValue(), consumer));
+        }
+
+        return tasks;
+    }
+
+    /**
+     * @return  the failure of an invalid query, null if the task succeeded
+     */
+    private static QueryFailure call(final Callable<Void> task) {
+        try {
+            task.call();
+            return null;
+        } catch (QueryFailure e) {
+            return e;
+        } catch (Exception e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    /**
+     * @return  the failure of an invalid query, null if the task succeeded
+     */
+    private static QueryFailure get(final Future<Void> future) throws InterruptedException {
+        try {
+            future.get();
+            return null;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof QueryFailure) {
+                return (QueryFailure) e.getCause();
+            }
+
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    /**
+     * Exception of the invalid query with the given index.
+     */
+    @SuppressWarnings("serial")
+    private static class QueryFailure extends RuntimeException {
+        private final int queryIndex;
+
+        QueryFailure(final int queryIndex, final RuntimeException cause) {
+            super(cause);
+            this.queryIndex = queryIndex;
+        }
+
+        static QueryFailure first(final QueryFailure one, final QueryFailure other) {
+            if (one == null || other == null) {
+                return one == null ? other : one;
+            }
+
+            return one.queryIndex <= other.queryIndex ? one : other;
+        }
+    }
+
+    private static class GroupTask implements Callable<Void> {
+        private final TownGraph townGraph;
+        private final AlgorithmExecutor algorithm;
+        private final List<ParsedQuery> queries;
+        private final List<Integer> indexes;
+        private final AnswerConsumer consumer;
+
+        GroupTask(final TownGraph townGraph, final AlgorithmExecutor algorithm, final List<ParsedQuery> queries,
+                final List<Integer> indexes, final AnswerConsumer consumer) {
+            this.townGraph = townGraph;
+            this.algorithm = algorithm;
+            this.queries = queries;
+            this.indexes = indexes;
+            this.consumer = consumer;
+        }
+
+        @Override
+        public Void call() {
+            if (!(algorithm instanceof BatchAlgorithmExecutor) || indexes.size() == 1) {
+                executeOneByOne();
+                return null;
+            }
+
+            final List<ParsedQuery> group = Lists.newArrayListWithCapacity(indexes.size());
+            for (int i : indexes) {
+                group.add(queries.get(i));
+            }
+
+            final List<String> answers;
+            try {
+                answers = ((BatchAlgorithmExecutor) algorithm).validateParametersAndExecuteAll(townGraph, group);
+            } catch (RuntimeException e) {
+                executeOneByOne();
+                return null;
+            }
+
+            for (int i = 0; i < indexes.size(); i++) {
+                consumer.accept(indexes.get(i), answers.get(i));
+            }
+
+            return null;
+        }
+
+        private void executeOneByOne() {
+            for (int i : indexes) {
+                final String answer;
+                try {
+                    final ParsedQuery query = queries.get(i);
+                    answer = algorithm.validateParametersAndExecute(townGraph, query.getProblem(), query.getVertexes(),
+                            query.getNumber());
+                } catch (RuntimeException e) {
+                    throw new QueryFailure(i, e);
+                }
+
+                consumer.accept(i, answer);
+            }
+        }
+    }
+}
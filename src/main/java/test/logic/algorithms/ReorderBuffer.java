@@ -0,0 +1,44 @@
+package test.logic.algorithms;
+
+import java.util.Map;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+
+/**
+ * <p>Accepts the answers in any order and passes them downstream strictly in the order of the queries: an answer is
+ * held until the answers to all the preceding queries have been passed. The downstream consumer is called by one thread
+ * at a time.
+ *
+ * <p>The space complexity is O(P), where P - number of the answers held.
+ */
+public class ReorderBuffer implements AnswerConsumer {
+
+    private final AnswerConsumer downstream;
+    private final Map<Integer, String> pending = Maps.newHashMap();
+    private int nextQueryIndex;
+
+    public ReorderBuffer(final AnswerConsumer downstream) {
+        this.downstream = Preconditions.checkNotNull(downstream, "Downstream consumer is missing");
+    }
+
+    @Override
+    public synchronized void accept(final int queryIndex, final String answer) {
+        Preconditions.checkArgument(queryIndex >= nextQueryIndex && !pending.containsKey(queryIndex),
+            "Answer to query [%s] is passed twice", queryIndex);
+
+        pending.put(queryIndex, answer);
+
+        String nextAnswer;
+        while ((nextAnswer = pending.remove(nextQueryIndex)) != null) {
+            downstream.accept(nextQueryIndex++, nextAnswer);
+        }
+    }
+
+    /**
+     * @return  index of the first query whose answer has not been passed downstream yet
+     */
+    public synchronized int nextQueryIndex() {
+        return nextQueryIndex;
+    }
+}
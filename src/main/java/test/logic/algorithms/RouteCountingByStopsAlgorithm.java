@@ -0,0 +1,161 @@
+package test.logic.algorithms;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.UnsignedLongs;
+
+import test.domain.CompressedEdgeIndex;
+import test.domain.INPUT_PROBLEM;
+import test.domain.TownGraph;
+
+import test.logic.utils.ConnectivityMatrixPowers;
+import test.logic.utils.RouteCountingUtils;
+
+/**
+ * <p>Counting of the routes from START vertex to FINISH vertex by the number of STOPS, shared by P2 and P3. The routes
+ * are counted either with a matrix derived from the connectivity matrix, or by propagating the vector of route counts
+ * from START vertex over the graph edges, whichever is cheaper.
+ *
+ * <p>A batch of queries is grouped by the number of STOPS, and every group either computes the matrix once or
+ * propagates the vector of route counts once per distinct START vertex.
+ *
+ * <p>The number of routes grows exponentially with STOPS, it is counted modulo 2^64 and printed as an unsigned number,
+ * so the answer is exact as long as the number of routes is below 2^64.
+ */
+public abstract class RouteCountingByStopsAlgorithm implements BatchAlgorithmExecutor {
+
+    private final INPUT_PROBLEM problem;
+
+    protected RouteCountingByStopsAlgorithm(final INPUT_PROBLEM problem) {
+        this.problem = problem;
+    }
+
+    @Override
+    public String validateParametersAndExecute(final TownGraph townGraph, final INPUT_PROBLEM problem,
+            final int[] vertexes, final long number) {
+
+        final int[] query = parseQuery(problem, vertexes, number);
+
+        return UnsignedLongs.toString(countRoutes(townGraph, query[0], query[1], query[2]));
+    }
+
+    @Override
+    public List<String> validateParametersAndExecuteAll(final TownGraph townGraph, final List<ParsedQuery> queries) {
+
+        final int[][] parsedQueries = new int[queries.size()][];
+        final Map<Integer, Set<Integer>> sourcesByStops = Maps.newHashMap();
+        for (int i = 0; i < parsedQueries.length; i++) {
+            final ParsedQuery query = queries.get(i);
+            parsedQueries[i] = parseQuery(query.getProblem(), query.getVertexes(), query.getNumber());
+
+            Set<Integer> sources = sourcesByStops.get(parsedQueries[i][2]);
+            if (sources == null) {
+                sources = Sets.newHashSet();
+                sourcesByStops.put(parsedQueries[i][2], sources);
+            }
+
+            sources.add(parsedQueries[i][0]);
+        }
+
+        final Map<Integer, Map<Integer, long[]>> routeCountsByStops = Maps.newHashMap();
+        for (Map.Entry<Integer, Set<Integer>> entry : sourcesByStops.entrySet()) {
+            routeCountsByStops.put(entry.getKey(), routeCounts(townGraph, entry.getValue(), entry.getKey()));
+        }
+
+        final List<String> results = Lists.newArrayListWithCapacity(parsedQueries.length);
+        for (int[] query : parsedQueries) {
+            results.add(UnsignedLongs.toString(routeCountsByStops.get(query[2]).get(query[0])[query[1]]));
+        }
+
+        return results;
+    }
+
+    @Override
+    public long batchKey(final ParsedQuery query) {
+        return query.getNumber();
+    }
+
+    /**
+     * @return  true if the matrix for {@code stops} can be returned without any multiplication
+     */
+    protected abstract boolean isCached(ConnectivityMatrixPowers powers, int stops);
+
+    /**
+     * @return  the matrix of route counts for {@code stops}, the matrix is shared and must not be modified
+     */
+    protected abstract long[][] matrix(ConnectivityMatrixPowers powers, int stops);
+
+    /**
+     * @return  number of matrix multiplications computing the matrix for {@code stops} takes in the worst case
+     */
+    protected abstract int multiplications(int stops);
+
+    /**
+     * @return  numbers of routes from {@code source} to every vertex, propagated over the edges
+     */
+    protected abstract long[] propagate(CompressedEdgeIndex toEdges, int source, int stops);
+
+    /**
+     * @return  number of routes modulo 2^64
+     */
+    protected long countRoutes(final TownGraph townGraph, final int from, final int to, final int stops) {
+        Preconditions.checkArgument(stops >= 0, "Number of stops must be non negative, was [%s]", stops);
+
+        if (propagating(townGraph, stops, 1)) {
+            return propagate(townGraph.getToEdgesIndex(), from, stops)[to];
+        }
+
+        return matrix(ConnectivityMatrixPowers.of(townGraph), stops)[from][to];
+    }
+
+    /**
+     * @return  START vertex, FINISH vertex and number of STOPS
+     */
+    private int[] parseQuery(final INPUT_PROBLEM problem, final int[] vertexes, final long number) {
+        Preconditions.checkArgument(problem == this.problem, "Wrong parameters, expected %s, found [%s]", this.problem,
+            problem);
+        Preconditions.checkArgument(vertexes != null && vertexes.length == 2,
+            "Expected START vertex and FINISH vertex for %s", this.problem);
+        Preconditions.checkArgument(number >= 0 && number <= Integer.MAX_VALUE,
+            "Number of stops must be a non negative int, was [%s]", number);
+
+        return new int[] {vertexes[0], vertexes[1], (int) number};
+    }
+
+    /**
+     * @return  the rows of route counts for {@code stops} by START vertex, the rows must not be modified
+     */
+    private Map<Integer, long[]> routeCounts(final TownGraph townGraph, final Set<Integer> sources, final int stops) {
+        final boolean propagating = propagating(townGraph, stops, sources.size());
+
+        final long[][] matrix = propagating ? null : matrix(ConnectivityMatrixPowers.of(townGraph), stops);
+
+        final Map<Integer, long[]> result = Maps.newHashMap();
+        for (int source : sources) {
+            result.put(source, propagating ? propagate(townGraph.getToEdgesIndex(), source, stops) : matrix[source]);
+        }
+
+        return result;
+    }
+
+    /**
+     * @return  true if propagating the route counts from {@code numberOfSources} vertexes is cheaper than computing the
+     *          matrix, or if the matrices can't be allocated at all
+     */
+    private boolean propagating(final TownGraph townGraph, final int stops, final int numberOfSources) {
+        final CompressedEdgeIndex toEdges = townGraph.getToEdgesIndex();
+        if (!ConnectivityMatrixPowers.fitsInMemory(toEdges.numberOfVertexes())) {
+            return true;
+        }
+
+        return !isCached(ConnectivityMatrixPowers.of(townGraph), stops)
+                && RouteCountingUtils.propagationCost(toEdges, stops, numberOfSources)
+                < ConnectivityMatrixPowers.multiplicationsCost(toEdges.numberOfVertexes(), multiplications(stops));
+    }
+}
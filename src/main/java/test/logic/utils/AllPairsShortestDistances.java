@@ -0,0 +1,128 @@
+package test.logic.utils;
+
+import java.io.IOException;
+import java.util.concurrent.RecursiveAction;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+
+import test.domain.CompressedEdgeIndex;
+import test.domain.TownGraph;
+
+/**
+ * <p>Table of the shortest distances with at least one stop between all the pairs of graph vertexes, the diagonal holds
+ * the shortest cycles through the vertexes.
+ *
+ * <p>The table is filled with V single source runs of {@link DijkstraUtils} executed in parallel with fork/join, and
+ * stored as a flat row major array, so a query is a single array read.
+ *
+ * <p>The time complexity of the precomputation is O(V*(E+V)*LOG(V)), where V - number of graph vertexes, E - number of
+ * graph edges. The space complexity is O(V^2).
+ */
+public class AllPairsShortestDistances {
+
+    /**
+     * Number of sources a fork/join task processes without splitting.
+     */
+    private static final int SOURCES_PER_TASK = 16;
+
+    private final int numberOfVertexes;
+    private final long[] distances;
+
+    AllPairsShortestDistances(final int numberOfVertexes, final long[] distances) {
+        this.numberOfVertexes = numberOfVertexes;
+        this.distances = distances;
+    }
+
+    /**
+     * @return  the table attached to the given graph, computing it on the first request
+     */
+    public static AllPairsShortestDistances of(final TownGraph townGraph) {
+        //J-
+        return townGraph.getDerivedIndex(AllPairsShortestDistances.class, new Supplier<AllPairsShortestDistances>() {
+                @Override
+                public AllPairsShortestDistances get() {
+                    return compute(townGraph.getToEdgesIndex());
+                }
+            });
+        //J+
+    }
+
+    public static AllPairsShortestDistances compute(final CompressedEdgeIndex toEdges) {
+        final int numberOfVertexes = toEdges.numberOfVertexes();
+        Preconditions.checkArgument((long) numberOfVertexes * numberOfVertexes <= Integer.MAX_VALUE,
+            "Too many vertexes for all pairs table [%s]", numberOfVertexes);
+
+        final long[] distances = new long[numberOfVertexes * numberOfVertexes];
+        ParallelUtils.pool().invoke(new SourcesTask(toEdges, distances, 0, numberOfVertexes));
+
+        return new AllPairsShortestDistances(numberOfVertexes, distances);
+    }
+
+    /**
+     * @return  the shortest distance with at least one stop or {@link DijkstraUtils#UNREACHABLE}
+     */
+    public long distance(final int from, final int to) {
+        return distances[from * numberOfVertexes + to];
+    }
+
+    public int numberOfVertexes() {
+        return numberOfVertexes;
+    }
+
+    /**
+     * Writes the table to a snapshot, see {@link #readFrom(SnapshotReader, TownGraph)}.
+     */
+    public void writeTo(final SnapshotWriter out) throws IOException {
+        out.writeInt(numberOfVertexes);
+        out.writeLongs(distances);
+    }
+
+    /**
+     * @return  the table written by {@link #writeTo(SnapshotWriter)} for the same graph
+     */
+    public static AllPairsShortestDistances readFrom(final SnapshotReader in, final TownGraph townGraph)
+        throws IOException {
+        final int numberOfVertexes = in.readInt();
+        Preconditions.checkArgument(numberOfVertexes == townGraph.getToEdgesIndex().numberOfVertexes(),
+            "Snapshot of all pairs table has wrong number of vertexes [%s]", numberOfVertexes);
+
+        final long[] distances = in.readLongs();
+        Preconditions.checkArgument(distances.length == numberOfVertexes * numberOfVertexes,
+            "Snapshot of all pairs table has wrong size [%s]", distances.length);
+
+        return new AllPairsShortestDistances(numberOfVertexes, distances);
+    }
+
+    @SuppressWarnings("serial")
+    private static class SourcesTask extends RecursiveAction {
+        private final CompressedEdgeIndex toEdges;
+        private final long[] distances;
+        private final int fromSource;
+        private final int toSource;
+
+        SourcesTask(final CompressedEdgeIndex toEdges, final long[] distances, final int fromSource,
+                final int toSource) {
+            this.toEdges = toEdges;
+            this.distances = distances;
+            this.fromSource = fromSource;
+            this.toSource = toSource;
+        }
+
+        @Override
+        protected void compute() {
+            if (toSource - fromSource > SOURCES_PER_TASK) {
+                final int middleSource = (fromSource + toSource) >>> 1;
+                invokeAll(new SourcesTask(toEdges, distances, fromSource, middleSource),
+                    new SourcesTask(toEdges, distances, middleSource, toSource));
+                return;
+            }
+
+            final int numberOfVertexes = toEdges.numberOfVertexes();
+            for (int source = fromSource; source < toSource; source++) {
+                final long[] row = DijkstraUtils.shortestDistances(toEdges, source, true);
+                System.arraycopy(row, 0, distances, source * numberOfVertexes, numberOfVertexes);
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package test.logic.utils;
+
+import java.util.Arrays;
+
+import test.domain.CompressedEdgeIndex;
+
+/**
+ * <p>Bidirectional Dijkstra's algorithm: the forward search runs from START vertex over the forward index, the backward
+ * one from FINISH vertex over the reverse index, always advancing the side with the smaller top key. Every time a
+ * vertex gets labelled by both searches the route through it becomes a candidate. The search stops when the sum of the
+ * top keys of both heaps is not less than the best candidate, typically after settling about two balls of half the
+ * radius of a one directional search.
+ *
+ * <p>"At least one stop" is kept the same way as in {@link DijkstraUtils}: the forward search is seeded with the edges
+ * going out of START vertex, so for START == FINISH the backward search meets it on the shortest cycle.
+ *
+ * <p>The time complexity is O((E+V)*LOG(V)) in the worst case, where V - number of graph vertexes, E - number of graph
+ * edges. The space complexity is O(V).
+ */
+public class BidirectionalDijkstraUtils {
+
+    /**
+     * @return  the shortest distance with at least one stop or {@link DijkstraUtils#UNREACHABLE}
+     */
+    public static long shortestDistance(final CompressedEdgeIndex toEdges, final CompressedEdgeIndex fromEdges,
+            final int from, final int to) {
+
+        final int numberOfVertexes = toEdges.numberOfVertexes();
+
+        final Search forward = new Search(toEdges, numberOfVertexes);
+        final Search backward = new Search(fromEdges, numberOfVertexes);
+
+        backward.label(to, 0);
+
+        long best = DijkstraUtils.UNREACHABLE;
+        for (int i = toEdges.begin(from); i < toEdges.end(from); i++) {
+            best = forward.relax(toEdges.target(i), toEdges.weight(i), backward, best);
+        }
+
+        while (!forward.heap.isEmpty() && !backward.heap.isEmpty()) {
+            final long forwardTop = forward.heap.peekKey();
+            final long backwardTop = backward.heap.peekKey();
+            if (best != DijkstraUtils.UNREACHABLE && forwardTop + backwardTop >= best) {
+                break;
+            }
+
+            if (forwardTop <= backwardTop) {
+                best = forward.settleNext(backward, best);
+            } else {
+                best = backward.settleNext(forward, best);
+            }
+        }
+
+        return best;
+    }
+
+    private static class Search {
+        private final CompressedEdgeIndex edges;
+        private final long[] distances;
+        private final IndexedDaryHeap heap;
+
+        Search(final CompressedEdgeIndex edges, final int numberOfVertexes) {
+            this.edges = edges;
+            this.distances = new long[numberOfVertexes];
+            this.heap = new IndexedDaryHeap(numberOfVertexes);
+            Arrays.fill(distances, DijkstraUtils.UNREACHABLE);
+        }
+
+        void label(final int vertex, final long distance) {
+            distances[vertex] = distance;
+            heap.insertOrDecrease(vertex, distance);
+        }
+
+        long relax(final int vertex, final long distance, final Search opposite, final long best) {
+            if (distance >= distances[vertex]) {
+                return best;
+            }
+
+            label(vertex, distance);
+
+            final long oppositeDistance = opposite.distances[vertex];
+            if (oppositeDistance != DijkstraUtils.UNREACHABLE && distance + oppositeDistance < best) {
+                return distance + oppositeDistance;
+            }
+
+            return best;
+        }
+
+        long settleNext(final Search opposite, final long best) {
+            final int vertex = heap.poll();
+            final long distance = distances[vertex];
+
+            long result = best;
+            for (int i = edges.begin(vertex); i < edges.end(vertex); i++) {
+                result = relax(edges.target(i), distance + edges.weight(i), opposite, result);
+            }
+
+            return result;
+        }
+    }
+}
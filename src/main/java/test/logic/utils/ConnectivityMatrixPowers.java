@@ -0,0 +1,306 @@
+package test.logic.utils;
+
+import java.io.IOException;
+import java.util.Map;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.math.LongMath;
+
+import test.domain.TownGraph;
+
+/**
+ * <p>Per graph cache of the powers of the connectivity matrix A and of their partial sums S(N) = A + A^2 + ... + A^N
+ * shared by the route counting queries.
+ *
+ * <p>A^N is composed from the binary powers A^(2^K), S(N) - from the binary powers and the binary sums S(2^K) with
+ * S(2^K + M) = S(2^K) + A^(2^K)*S(M). The binary powers and sums are cached as well, so a query needs at most
+ * O(LOG(N)) multiplications, or none if the result has been computed before.
+ *
+ * <p>The memory is bounded by the total number of cached matrix cells, the least recently used matrices are evicted
+ * first. The bound is never below the cells of one matrix, and the cache is kept in a single segment, because the
+ * cache divides the bound among its segments and a matrix heavier than the share of its segment is evicted as soon as
+ * it is put.
+ */
+public class ConnectivityMatrixPowers {
+
+    /**
+     * Default bound of the cached matrix cells, 2^24 longs take 128Mb.
+     */
+    static final long DEFAULT_MAXIMUM_CELLS = 1L << 24;
+
+    /**
+     * Number of V x V matrices the dense path holds at once: the connectivity matrix, a cached power and the product.
+     */
+    private static final int DENSE_MATRICES = 3;
+
+    private final long[][] connectivityMatrix;
+    private final Cache<Key, long[][]> cache;
+
+    ConnectivityMatrixPowers(final long[][] connectivityMatrix, final long maximumCells) {
+        this.connectivityMatrix = connectivityMatrix;
+
+        //J-
+        this.cache = CacheBuilder.newBuilder()
+                .concurrencyLevel(1)
+                .maximumWeight(Math.max(maximumCells, cells(connectivityMatrix)))
+                .weigher(new Weigher<Key, long[][]>() {
+                        @Override
+                        public int weigh(final Key key, final long[][] matrix) {
+                            return (int) Math.min(Integer.MAX_VALUE, cells(matrix));
+                        }
+                    })
+                .build();
+        //J+
+    }
+
+    /**
+     * @return  the cache attached to the given graph
+     */
+    public static ConnectivityMatrixPowers of(final TownGraph townGraph) {
+        //J-
+        return townGraph.getDerivedIndex(ConnectivityMatrixPowers.class, new Supplier<ConnectivityMatrixPowers>() {
+                @Override
+                public ConnectivityMatrixPowers get() {
+                    return new ConnectivityMatrixPowers(townGraph.getConnectivityMatrix(), DEFAULT_MAXIMUM_CELLS);
+                }
+            });
+        //J+
+    }
+
+    /**
+     * @return  true if the matrices of a graph with {@code numberOfVertexes} vertexes can be allocated in the heap, the
+     *          route counts are propagated over the edges otherwise
+     */
+    public static boolean fitsInMemory(final int numberOfVertexes) {
+        final long cells = (long) numberOfVertexes * numberOfVertexes;
+
+        return cells <= Runtime.getRuntime().maxMemory() / (DENSE_MATRICES * Long.SIZE / Byte.SIZE);
+    }
+
+    /**
+     * @return  number of multiply-add operations {@code multiplications} products of the matrices take, saturated to
+     *          Long.MAX_VALUE, because V^3 overflows long once V reaches 2^21
+     */
+    public static long multiplicationsCost(final int numberOfVertexes, final int multiplications) {
+        try {
+            return LongMath.checkedMultiply(LongMath.checkedMultiply((long) numberOfVertexes * numberOfVertexes,
+                        numberOfVertexes), multiplications);
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * @return  A^N, the matrix is shared and must not be modified
+     */
+    public long[][] power(final int n) {
+        Preconditions.checkArgument(n >= 0, "Power must be non negative, was [%s]", n);
+
+        if (n == 0) {
+            return MatrixUtils.identityMatrix(connectivityMatrix.length, connectivityMatrix.length);
+        }
+
+        final Key key = Key.power(n);
+        long[][] result = cache.getIfPresent(key);
+        if (result != null) {
+            return result;
+        }
+
+        for (int bit = 0; (n >>> bit) != 0; bit++) {
+            if (((n >>> bit) & 1) == 1) {
+                final long[][] binaryPower = binaryPower(bit);
+                result = result == null ? binaryPower : MatrixUtils.multiplyMatrices(result, binaryPower);
+            }
+        }
+
+        cache.put(key, result);
+        return result;
+    }
+
+    /**
+     * @return  S(N) = A + A^2 + ... + A^N, the matrix is shared and must not be modified
+     */
+    public long[][] sumOfPowers(final int n) {
+        Preconditions.checkArgument(n >= 0, "Power must be non negative, was [%s]", n);
+
+        if (n == 0) {
+            return new long[connectivityMatrix.length][connectivityMatrix.length];
+        }
+
+        final Key key = Key.sum(n);
+        final long[][] cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        long[][] sum = null;
+        for (int bit = 0; (n >>> bit) != 0; bit++) {
+            if (((n >>> bit) & 1) == 1) {
+                sum = sum == null ? binarySum(bit)
+                                  : MatrixUtils.prependBinaryBlock(binaryPower(bit), binarySum(bit), sum);
+            }
+        }
+
+        cache.put(key, sum);
+        return sum;
+    }
+
+    /**
+     * @return  true if A^N can be returned without any multiplication
+     */
+    public boolean isPowerCached(final int n) {
+        return n == 0 || cache.getIfPresent(Key.power(n)) != null;
+    }
+
+    /**
+     * @return  true if S(N) can be returned without any multiplication
+     */
+    public boolean isSumOfPowersCached(final int n) {
+        return n == 0 || cache.getIfPresent(Key.sum(n)) != null;
+    }
+
+    /**
+     * Writes the cached matrices to a snapshot, see {@link #readFrom(SnapshotReader, TownGraph)}.
+     */
+    public void writeTo(final SnapshotWriter out) throws IOException {
+        final Map<Key, long[][]> cached = ImmutableMap.copyOf(cache.asMap());
+
+        out.writeInt(cached.size());
+        for (Map.Entry<Key, long[][]> entry : cached.entrySet()) {
+            out.writeInt(entry.getKey().power ? 1 : 0);
+            out.writeInt(entry.getKey().exponent);
+            out.writeInt(entry.getValue().length);
+            for (long[] row : entry.getValue()) {
+                out.writeLongs(row);
+            }
+        }
+    }
+
+    /**
+     * @return  the cache of the given graph with the matrices written by {@link #writeTo(SnapshotWriter)} for the same
+     *          graph
+     */
+    public static ConnectivityMatrixPowers readFrom(final SnapshotReader in, final TownGraph townGraph)
+        throws IOException {
+        final long[][] connectivityMatrix = townGraph.getConnectivityMatrix();
+        final ConnectivityMatrixPowers powers = new ConnectivityMatrixPowers(connectivityMatrix,
+                DEFAULT_MAXIMUM_CELLS);
+
+        final int numberOfMatrices = in.readInt();
+        for (int m = 0; m < numberOfMatrices; m++) {
+            final Key key = new Key(in.readInt() == 1, in.readInt());
+            final long[][] matrix = new long[in.readInt()][];
+            Preconditions.checkArgument(matrix.length == connectivityMatrix.length,
+                "Snapshot of matrix %s has wrong size [%s]", key, matrix.length);
+
+            for (int i = 0; i < matrix.length; i++) {
+                matrix[i] = in.readLongs();
+                Preconditions.checkArgument(matrix[i].length == connectivityMatrix.length,
+                    "Snapshot of matrix %s has wrong size [%s]", key, matrix[i].length);
+            }
+
+            powers.cache.put(key, matrix);
+        }
+
+        return powers;
+    }
+
+    private static long cells(final long[][] matrix) {
+        return matrix.length == 0 ? 0 : (long) matrix.length * matrix[0].length;
+    }
+
+    private long[][] binaryPower(final int bit) {
+        if (bit == 0) {
+            return connectivityMatrix;
+        }
+
+        final Key key = Key.power(1 << bit);
+        long[][] result = cache.getIfPresent(key);
+        if (result == null) {
+            final long[][] halfPower = binaryPower(bit - 1);
+            result = MatrixUtils.multiplyMatrices(halfPower, halfPower);
+            cache.put(key, result);
+        }
+
+        return result;
+    }
+
+    private long[][] binarySum(final int bit) {
+        if (bit == 0) {
+            return connectivityMatrix;
+        }
+
+        final Key key = Key.sum(1 << bit);
+        long[][] result = cache.getIfPresent(key);
+        if (result == null) {
+            result = MatrixUtils.prependBinaryBlock(binaryPower(bit - 1), binarySum(bit - 1), binarySum(bit - 1));
+            cache.put(key, result);
+        }
+
+        return result;
+    }
+
+    private static class Key {
+        private final boolean power;
+        private final int exponent;
+
+        private Key(final boolean power, final int exponent) {
+            this.power = power;
+            this.exponent = exponent;
+        }
+
+        static Key power(final int exponent) {
+            return new Key(true, exponent);
+        }
+
+        static Key sum(final int exponent) {
+            return new Key(false, exponent);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            Key key = (Key) o;
+
+            if (power != key.power) {
+                return false;
+            }
+
+            if (exponent != key.exponent) {
+                return false;
+            }
+
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = power ? 1 : 0;
+            result = 31 * result + exponent;
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            //J-
+            return Objects.toStringHelper(this)
+                    .add("power", power)
+                    .add("exponent", exponent)
+                    .toString();
+            //J+
+        }
+    }
+}
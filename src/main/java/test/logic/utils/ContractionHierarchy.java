@@ -0,0 +1,561 @@
+package test.logic.utils;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+
+import test.domain.CompressedEdgeIndex;
+import test.domain.TownGraph;
+
+/**
+ * <p>Contraction hierarchy over the town graph for exact shortest distance queries.
+ *
+ * <p>Preprocessing contracts the vertexes one by one in the order of their importance. Contracting vertex V removes it
+ * from the remaining graph and, for every pair of its neighbours U -> V -> W, inserts the shortcut U -> W unless a
+ * local witness search finds a path from U to W avoiding V which is not longer. The importance of a vertex is its edge
+ * difference (shortcuts added minus edges removed) plus the number of already contracted neighbours, updated lazily.
+ * When the witness search hits its limit the shortcut is inserted anyway, which only costs space.
+ *
+ * <p>A query runs two Dijkstra searches which only go up in the hierarchy: the forward one from START vertex over the
+ * edges to more important vertexes, the backward one from FINISH vertex over the reversed edges from more important
+ * vertexes. The shortest route meets at its most important vertex, so both searches settle only a small part of the
+ * graph.
+ *
+ * <p>"At least one stop" for START == FINISH is answered as the shortest cycle: the minimum over the edges X -> START
+ * of d(START, X) + |X -> START|.
+ *
+ * <p>The space complexity is O(V+E+S), where V - number of graph vertexes, E - number of graph edges, S - number of
+ * shortcuts.
+ */
+public class ContractionHierarchy {
+
+    /**
+     * Number of vertexes a witness search settles before giving up.
+     */
+    static final int WITNESS_SEARCH_SETTLED_LIMIT = 500;
+
+    private final CompressedEdgeIndex fromEdges;
+    private final int numberOfVertexes;
+
+    // edges to the more important vertexes
+    private final int[] upwardOffsets;
+    private final int[] upwardTargets;
+    private final long[] upwardWeights;
+
+    // reversed edges from the more important vertexes
+    private final int[] downwardOffsets;
+    private final int[] downwardTargets;
+    private final long[] downwardWeights;
+
+    // per thread search state, reset through the lists of labelled vertexes instead of being allocated per query
+    private final ThreadLocal<UpwardSearch[]> searches = new ThreadLocal<UpwardSearch[]>() {
+        @Override
+        protected UpwardSearch[] initialValue() {
+            //J-
+            return new UpwardSearch[] {
+                new UpwardSearch(upwardOffsets, upwardTargets, upwardWeights, numberOfVertexes),
+                new UpwardSearch(downwardOffsets, downwardTargets, downwardWeights, numberOfVertexes)
+            };
+            //J+
+        }
+    };
+
+    ContractionHierarchy(final CompressedEdgeIndex fromEdges, final int[] upwardOffsets, final int[] upwardTargets,
+            final long[] upwardWeights, final int[] downwardOffsets, final int[] downwardTargets,
+            final long[] downwardWeights) {
+        this.fromEdges = fromEdges;
+        this.numberOfVertexes = fromEdges.numberOfVertexes();
+        this.upwardOffsets = upwardOffsets;
+        this.upwardTargets = upwardTargets;
+        this.upwardWeights = upwardWeights;
+        this.downwardOffsets = downwardOffsets;
+        this.downwardTargets = downwardTargets;
+        this.downwardWeights = downwardWeights;
+    }
+
+    /**
+     * @return  the hierarchy attached to the given graph, building it on the first request
+     */
+    public static ContractionHierarchy of(final TownGraph townGraph) {
+        //J-
+        return townGraph.getDerivedIndex(ContractionHierarchy.class, new Supplier<ContractionHierarchy>() {
+                @Override
+                public ContractionHierarchy get() {
+                    return build(townGraph.getToEdgesIndex(), townGraph.getFromEdgesIndex());
+                }
+            });
+        //J+
+    }
+
+    public static ContractionHierarchy build(final CompressedEdgeIndex toEdges, final CompressedEdgeIndex fromEdges) {
+        return new Contraction(toEdges).contract(fromEdges);
+    }
+
+    public int numberOfShortcutsAndEdges() {
+        return upwardTargets.length + downwardTargets.length;
+    }
+
+    /**
+     * Writes the hierarchy to a snapshot, see {@link #readFrom(SnapshotReader, TownGraph)}.
+     */
+    public void writeTo(final SnapshotWriter out) throws IOException {
+        out.writeInts(upwardOffsets);
+        out.writeInts(upwardTargets);
+        out.writeLongs(upwardWeights);
+        out.writeInts(downwardOffsets);
+        out.writeInts(downwardTargets);
+        out.writeLongs(downwardWeights);
+    }
+
+    /**
+     * @return  the hierarchy written by {@link #writeTo(SnapshotWriter)} for the same graph
+     */
+    public static ContractionHierarchy readFrom(final SnapshotReader in, final TownGraph townGraph)
+        throws IOException {
+        final CompressedEdgeIndex fromEdges = townGraph.getFromEdgesIndex();
+
+        final int[] upwardOffsets = in.readInts();
+        final int[] upwardTargets = in.readInts();
+        final long[] upwardWeights = in.readLongs();
+        final int[] downwardOffsets = in.readInts();
+        final int[] downwardTargets = in.readInts();
+        final long[] downwardWeights = in.readLongs();
+
+        //J-
+        Preconditions.checkArgument(upwardOffsets.length == fromEdges.numberOfVertexes() + 1
+                && downwardOffsets.length == upwardOffsets.length
+                && upwardTargets.length == upwardWeights.length
+                && downwardTargets.length == downwardWeights.length
+                && upwardOffsets[upwardOffsets.length - 1] == upwardTargets.length
+                && downwardOffsets[downwardOffsets.length - 1] == downwardTargets.length,
+            "Snapshot of contraction hierarchy does not match the graph");
+        //J+
+        checkEdges(upwardOffsets, upwardTargets, fromEdges.numberOfVertexes());
+        checkEdges(downwardOffsets, downwardTargets, fromEdges.numberOfVertexes());
+
+        return new ContractionHierarchy(fromEdges, upwardOffsets, upwardTargets, upwardWeights, downwardOffsets,
+                downwardTargets, downwardWeights);
+    }
+
+    /**
+     * @return  the shortest distance with at least one stop or {@link DijkstraUtils#UNREACHABLE}
+     */
+    public long shortestDistance(final int from, final int to) {
+        if (from != to) {
+            return distance(from, to);
+        }
+
+        long result = DijkstraUtils.UNREACHABLE;
+        for (int i = fromEdges.begin(to); i < fromEdges.end(to); i++) {
+            final long distance = distance(from, fromEdges.target(i));
+            if (distance != DijkstraUtils.UNREACHABLE) {
+                result = Math.min(result, distance + fromEdges.weight(i));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return  the shortest distance where the distance from a vertex to itself is 0
+     */
+    long distance(final int from, final int to) {
+        if (from == to) {
+            return 0;
+        }
+
+        final UpwardSearch[] workspace = searches.get();
+        final UpwardSearch forward = workspace[0];
+        final UpwardSearch backward = workspace[1];
+
+        forward.label(from, 0);
+        backward.label(to, 0);
+
+        long best = DijkstraUtils.UNREACHABLE;
+        while (forward.isActive(best) || backward.isActive(best)) {
+            if (forward.isActive(best)) {
+                best = forward.settleNext(backward, best);
+            }
+
+            if (backward.isActive(best)) {
+                best = backward.settleNext(forward, best);
+            }
+        }
+
+        forward.reset();
+        backward.reset();
+
+        return best;
+    }
+
+    /**
+     * Checks the edges read from a snapshot, so that a damaged snapshot fails the restore rather than the queries.
+     */
+    private static void checkEdges(final int[] offsets, final int[] targets, final int numberOfVertexes) {
+        Preconditions.checkArgument(offsets[0] == 0, "Snapshot of contraction hierarchy has wrong offset [%s]",
+            offsets[0]);
+
+        for (int vertex = 0; vertex < numberOfVertexes; vertex++) {
+            Preconditions.checkArgument(offsets[vertex] <= offsets[vertex + 1],
+                "Snapshot of contraction hierarchy has decreasing offsets of vertex [%s]", vertex);
+        }
+
+        for (int target : targets) {
+            Preconditions.checkArgument(target >= 0 && target < numberOfVertexes,
+                "Snapshot of contraction hierarchy has wrong target [%s]", target);
+        }
+    }
+
+    private static class UpwardSearch {
+        private final int[] offsets;
+        private final int[] targets;
+        private final long[] weights;
+        private final long[] distances;
+        private final IndexedDaryHeap heap;
+        private final int[] labelled;
+        private int labelledSize;
+
+        UpwardSearch(final int[] offsets, final int[] targets, final long[] weights, final int numberOfVertexes) {
+            this.offsets = offsets;
+            this.targets = targets;
+            this.weights = weights;
+            this.distances = new long[numberOfVertexes];
+            this.heap = new IndexedDaryHeap(numberOfVertexes);
+            this.labelled = new int[numberOfVertexes];
+            Arrays.fill(distances, DijkstraUtils.UNREACHABLE);
+        }
+
+        boolean isActive(final long best) {
+            return !heap.isEmpty() && heap.peekKey() < best;
+        }
+
+        void label(final int vertex, final long distance) {
+            if (distances[vertex] == DijkstraUtils.UNREACHABLE) {
+                labelled[labelledSize++] = vertex;
+            }
+
+            distances[vertex] = distance;
+            heap.insertOrDecrease(vertex, distance);
+        }
+
+        void reset() {
+            for (int i = 0; i < labelledSize; i++) {
+                distances[labelled[i]] = DijkstraUtils.UNREACHABLE;
+            }
+
+            labelledSize = 0;
+            heap.clear();
+        }
+
+        long settleNext(final UpwardSearch opposite, final long best) {
+            final int vertex = heap.poll();
+            final long distance = distances[vertex];
+
+            long result = best;
+            if (opposite.distances[vertex] != DijkstraUtils.UNREACHABLE) {
+                result = Math.min(result, distance + opposite.distances[vertex]);
+            }
+
+            for (int i = offsets[vertex]; i < offsets[vertex + 1]; i++) {
+                final int neighbour = targets[i];
+                final long neighbourDistance = distance + weights[i];
+                if (neighbourDistance < distances[neighbour]) {
+                    label(neighbour, neighbourDistance);
+                }
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * Mutable graph of the not yet contracted vertexes, with the edges collected into the upward and downward graphs
+     * as the vertexes get contracted.
+     */
+    private static class Contraction {
+        private final int numberOfVertexes;
+
+        private final int[][] outTargets;
+        private final long[][] outWeights;
+        private final int[] outSizes;
+
+        private final int[][] inTargets;
+        private final long[][] inWeights;
+        private final int[] inSizes;
+
+        private final boolean[] contracted;
+        private final int[] contractedNeighbours;
+
+        // witness search state, reset through the list of touched vertexes
+        private final long[] witnessDistances;
+        private final int[] touched;
+        private int touchedSize;
+        private final IndexedDaryHeap witnessHeap;
+
+        Contraction(final CompressedEdgeIndex toEdges) {
+            numberOfVertexes = toEdges.numberOfVertexes();
+
+            outTargets = new int[numberOfVertexes][];
+            outWeights = new long[numberOfVertexes][];
+            outSizes = new int[numberOfVertexes];
+            inTargets = new int[numberOfVertexes][];
+            inWeights = new long[numberOfVertexes][];
+            inSizes = new int[numberOfVertexes];
+
+            for (int vertex = 0; vertex < numberOfVertexes; vertex++) {
+                outTargets[vertex] = new int[4];
+                outWeights[vertex] = new long[4];
+                inTargets[vertex] = new int[4];
+                inWeights[vertex] = new long[4];
+            }
+
+            for (int vertex = 0; vertex < numberOfVertexes; vertex++) {
+                for (int i = toEdges.begin(vertex); i < toEdges.end(vertex); i++) {
+                    if (toEdges.target(i) != vertex) {
+                        addOrImproveEdge(vertex, toEdges.target(i), toEdges.weight(i));
+                    }
+                }
+            }
+
+            contracted = new boolean[numberOfVertexes];
+            contractedNeighbours = new int[numberOfVertexes];
+
+            witnessDistances = new long[numberOfVertexes];
+            Arrays.fill(witnessDistances, DijkstraUtils.UNREACHABLE);
+            touched = new int[numberOfVertexes];
+            witnessHeap = new IndexedDaryHeap(numberOfVertexes);
+        }
+
+        ContractionHierarchy contract(final CompressedEdgeIndex fromEdges) {
+            final IndexedDaryHeap order = new IndexedDaryHeap(numberOfVertexes);
+            for (int vertex = 0; vertex < numberOfVertexes; vertex++) {
+                order.insertOrDecrease(vertex, priority(vertex));
+            }
+
+            final int[] upwardOffsets = new int[numberOfVertexes + 1];
+            final int[] downwardOffsets = new int[numberOfVertexes + 1];
+            final int[][] upwardTargetsByVertex = new int[numberOfVertexes][];
+            final long[][] upwardWeightsByVertex = new long[numberOfVertexes][];
+            final int[][] downwardTargetsByVertex = new int[numberOfVertexes][];
+            final long[][] downwardWeightsByVertex = new long[numberOfVertexes][];
+
+            while (!order.isEmpty()) {
+                final int vertex = order.poll();
+
+                final long priority = priority(vertex);
+                if (!order.isEmpty() && priority > order.peekKey()) {
+                    order.insertOrDecrease(vertex, priority);
+                    continue;
+                }
+
+                upwardTargetsByVertex[vertex] = Arrays.copyOf(outTargets[vertex], outSizes[vertex]);
+                upwardWeightsByVertex[vertex] = Arrays.copyOf(outWeights[vertex], outSizes[vertex]);
+                downwardTargetsByVertex[vertex] = Arrays.copyOf(inTargets[vertex], inSizes[vertex]);
+                downwardWeightsByVertex[vertex] = Arrays.copyOf(inWeights[vertex], inSizes[vertex]);
+
+                contractVertex(vertex, false);
+            }
+
+            for (int vertex = 0; vertex < numberOfVertexes; vertex++) {
+                upwardOffsets[vertex + 1] = upwardOffsets[vertex] + upwardTargetsByVertex[vertex].length;
+                downwardOffsets[vertex + 1] = downwardOffsets[vertex] + downwardTargetsByVertex[vertex].length;
+            }
+
+            //J-
+            return new ContractionHierarchy(fromEdges,
+                    upwardOffsets, concatenate(upwardTargetsByVertex, upwardOffsets[numberOfVertexes]),
+                    concatenate(upwardWeightsByVertex, upwardOffsets[numberOfVertexes]),
+                    downwardOffsets, concatenate(downwardTargetsByVertex, downwardOffsets[numberOfVertexes]),
+                    concatenate(downwardWeightsByVertex, downwardOffsets[numberOfVertexes]));
+            //J+
+        }
+
+        private long priority(final int vertex) {
+            final int shortcuts = contractVertex(vertex, true);
+
+            return shortcuts - outSizes[vertex] - inSizes[vertex] + contractedNeighbours[vertex];
+        }
+
+        /**
+         * Finds the shortcuts needed to contract the vertex, inserts them and removes the vertex from the remaining
+         * graph unless it is a simulation.
+         *
+         * @return  number of shortcuts
+         */
+        private int contractVertex(final int vertex, final boolean simulation) {
+            int shortcuts = 0;
+
+            for (int in = 0; in < inSizes[vertex]; in++) {
+                final int source = inTargets[vertex][in];
+                final long sourceWeight = inWeights[vertex][in];
+
+                long limit = -1;
+                for (int out = 0; out < outSizes[vertex]; out++) {
+                    if (outTargets[vertex][out] != source) {
+                        limit = Math.max(limit, sourceWeight + outWeights[vertex][out]);
+                    }
+                }
+
+                if (limit < 0) {
+                    continue;
+                }
+
+                witnessSearch(source, vertex, limit);
+
+                for (int out = 0; out < outSizes[vertex]; out++) {
+                    final int target = outTargets[vertex][out];
+                    final long viaVertex = sourceWeight + outWeights[vertex][out];
+                    if (target != source && witnessDistances[target] > viaVertex) {
+                        shortcuts++;
+                        if (!simulation) {
+                            addOrImproveEdge(source, target, viaVertex);
+                        }
+                    }
+                }
+
+                resetWitnessSearch();
+            }
+
+            if (!simulation) {
+                removeVertex(vertex);
+            }
+
+            return shortcuts;
+        }
+
+        private void witnessSearch(final int source, final int excluded, final long limit) {
+            witnessDistances[source] = 0;
+            touched[touchedSize++] = source;
+            witnessHeap.insertOrDecrease(source, 0);
+
+            int settled = 0;
+            while (!witnessHeap.isEmpty() && witnessHeap.peekKey() <= limit
+                    && settled++ < WITNESS_SEARCH_SETTLED_LIMIT) {
+                final int vertex = witnessHeap.poll();
+                final long distance = witnessDistances[vertex];
+
+                for (int i = 0; i < outSizes[vertex]; i++) {
+                    final int neighbour = outTargets[vertex][i];
+                    final long neighbourDistance = distance + outWeights[vertex][i];
+                    if (neighbour != excluded && neighbourDistance < witnessDistances[neighbour]) {
+                        if (witnessDistances[neighbour] == DijkstraUtils.UNREACHABLE) {
+                            touched[touchedSize++] = neighbour;
+                        }
+
+                        witnessDistances[neighbour] = neighbourDistance;
+                        witnessHeap.insertOrDecrease(neighbour, neighbourDistance);
+                    }
+                }
+            }
+        }
+
+        private void resetWitnessSearch() {
+            for (int i = 0; i < touchedSize; i++) {
+                witnessDistances[touched[i]] = DijkstraUtils.UNREACHABLE;
+            }
+
+            touchedSize = 0;
+            witnessHeap.clear();
+        }
+
+        private void removeVertex(final int vertex) {
+            contracted[vertex] = true;
+
+            for (int out = 0; out < outSizes[vertex]; out++) {
+                final int target = outTargets[vertex][out];
+                removeInEdge(target, vertex);
+                contractedNeighbours[target]++;
+            }
+
+            for (int in = 0; in < inSizes[vertex]; in++) {
+                final int source = inTargets[vertex][in];
+                removeOutEdge(source, vertex);
+                contractedNeighbours[source]++;
+            }
+        }
+
+        private void addOrImproveEdge(final int source, final int target, final long weight) {
+            for (int i = 0; i < outSizes[source]; i++) {
+                if (outTargets[source][i] == target) {
+                    if (weight < outWeights[source][i]) {
+                        outWeights[source][i] = weight;
+                        improveInEdge(target, source, weight);
+                    }
+
+                    return;
+                }
+            }
+
+            if (outSizes[source] == outTargets[source].length) {
+                outTargets[source] = Arrays.copyOf(outTargets[source], outSizes[source] * 2);
+                outWeights[source] = Arrays.copyOf(outWeights[source], outSizes[source] * 2);
+            }
+
+            outTargets[source][outSizes[source]] = target;
+            outWeights[source][outSizes[source]++] = weight;
+
+            if (inSizes[target] == inTargets[target].length) {
+                inTargets[target] = Arrays.copyOf(inTargets[target], inSizes[target] * 2);
+                inWeights[target] = Arrays.copyOf(inWeights[target], inSizes[target] * 2);
+            }
+
+            inTargets[target][inSizes[target]] = source;
+            inWeights[target][inSizes[target]++] = weight;
+        }
+
+        private void improveInEdge(final int target, final int source, final long weight) {
+            for (int i = 0; i < inSizes[target]; i++) {
+                if (inTargets[target][i] == source) {
+                    inWeights[target][i] = weight;
+                    return;
+                }
+            }
+        }
+
+        private void removeOutEdge(final int source, final int target) {
+            for (int i = 0; i < outSizes[source]; i++) {
+                if (outTargets[source][i] == target) {
+                    final int last = --outSizes[source];
+                    outTargets[source][i] = outTargets[source][last];
+                    outWeights[source][i] = outWeights[source][last];
+                    return;
+                }
+            }
+        }
+
+        private void removeInEdge(final int target, final int source) {
+            for (int i = 0; i < inSizes[target]; i++) {
+                if (inTargets[target][i] == source) {
+                    final int last = --inSizes[target];
+                    inTargets[target][i] = inTargets[target][last];
+                    inWeights[target][i] = inWeights[target][last];
+                    return;
+                }
+            }
+        }
+
+        private static int[] concatenate(final int[][] arrays, final int length) {
+            final int[] result = new int[length];
+            int position = 0;
+            for (int[] array : arrays) {
+                System.arraycopy(array, 0, result, position, array.length);
+                position += array.length;
+            }
+
+            return result;
+        }
+
+        private static long[] concatenate(final long[][] arrays, final int length) {
+            final long[] result = new long[length];
+            int position = 0;
+            for (long[] array : arrays) {
+                System.arraycopy(array, 0, result, position, array.length);
+                position += array.length;
+            }
+
+            return result;
+        }
+    }
+}
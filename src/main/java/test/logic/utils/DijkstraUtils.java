@@ -0,0 +1,92 @@
+package test.logic.utils;
+
+import java.util.Arrays;
+
+import test.domain.CompressedEdgeIndex;
+
+/**
+ * <p>Dijkstra's shortest path algorithm over a compressed edge index with an {@link IndexedDaryHeap}.
+ *
+ * <p>Passing the forward index of a graph gives distances from the vertex, passing the reverse index - distances to
+ * the vertex.
+ *
+ * <p>The "at least one stop" mode seeds the search with the edges going out of START vertex instead of START vertex
+ * itself, so the distance to START vertex is the length of the shortest cycle through it. The distances to the other
+ * vertexes do not change since all the edges are positive.
+ *
+ * <p>The time complexity is O(E*LOG_D(V) + V*D*LOG_D(V)), where V - number of graph vertexes, E - number of graph
+ * edges, D - arity of the heap. The space complexity is O(V).
+ */
+public class DijkstraUtils {
+
+    public static final long UNREACHABLE = Long.MAX_VALUE;
+
+    private static final int NO_TARGET = -1;
+
+    /**
+     * Finds the shortest distance with at least one stop, the search stops as soon as {@code to} is settled.
+     *
+     * @return  the distance or {@link #UNREACHABLE}
+     */
+    public static long shortestDistance(final CompressedEdgeIndex edges, final int from, final int to) {
+        final long[] distances = newDistances(edges.numberOfVertexes());
+
+        return search(edges, from, to, true, distances);
+    }
+
+    /**
+     * @return  the shortest distances from {@code from} to every vertex, {@link #UNREACHABLE} for the vertexes which
+     *          can't be reached. In "at least one stop" mode the distance to {@code from} is its shortest cycle,
+     *          otherwise 0.
+     */
+    public static long[] shortestDistances(final CompressedEdgeIndex edges, final int from,
+            final boolean atLeastOneStop) {
+        final long[] distances = newDistances(edges.numberOfVertexes());
+        search(edges, from, NO_TARGET, atLeastOneStop, distances);
+
+        return distances;
+    }
+
+    private static long[] newDistances(final int numberOfVertexes) {
+        final long[] distances = new long[numberOfVertexes];
+        Arrays.fill(distances, UNREACHABLE);
+
+        return distances;
+    }
+
+    private static long search(final CompressedEdgeIndex edges, final int from, final int target,
+            final boolean atLeastOneStop, final long[] distances) {
+
+        final IndexedDaryHeap heap = new IndexedDaryHeap(edges.numberOfVertexes());
+
+        if (atLeastOneStop) {
+            relax(edges, from, 0, distances, heap);
+        } else {
+            distances[from] = 0;
+            heap.insertOrDecrease(from, 0);
+        }
+
+        while (!heap.isEmpty()) {
+            final int vertex = heap.poll();
+            if (vertex == target) {
+                return distances[vertex];
+            }
+
+            relax(edges, vertex, distances[vertex], distances, heap);
+        }
+
+        return target == NO_TARGET ? UNREACHABLE : distances[target];
+    }
+
+    private static void relax(final CompressedEdgeIndex edges, final int vertex, final long distance,
+            final long[] distances, final IndexedDaryHeap heap) {
+        for (int i = edges.begin(vertex); i < edges.end(vertex); i++) {
+            final int neighbour = edges.target(i);
+            final long neighbourDistance = distance + edges.weight(i);
+            if (neighbourDistance < distances[neighbour]) {
+                distances[neighbour] = neighbourDistance;
+                heap.insertOrDecrease(neighbour, neighbourDistance);
+            }
+        }
+    }
+}
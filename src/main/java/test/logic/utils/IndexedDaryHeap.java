@@ -0,0 +1,165 @@
+package test.logic.utils;
+
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * <p>Indexed d-ary min heap of vertexes [0, capacity) keyed by long distances, backed by primitive arrays. Every vertex
+ * is in the heap at most once, its key can be decreased in place.
+ *
+ * <p>The time complexity of insert and decrease key is O(LOG_D(V)), of poll - O(D*LOG_D(V)), where V - number of
+ * vertexes in the heap, D - arity of the heap. The space complexity is O(capacity).
+ */
+public class IndexedDaryHeap {
+
+    public static final int DEFAULT_ARITY = 4;
+
+    private static final int ABSENT = -1;
+
+    private final int arity;
+    private final int[] heap;
+    private final int[] positions;
+    private final long[] keys;
+    private int size;
+
+    public IndexedDaryHeap(final int capacity) {
+        this(capacity, DEFAULT_ARITY);
+    }
+
+    public IndexedDaryHeap(final int capacity, final int arity) {
+        Preconditions.checkArgument(capacity >= 0, "Capacity must be non negative, was [%s]", capacity);
+        Preconditions.checkArgument(arity >= 2, "Arity must be at least 2, was [%s]", arity);
+
+        this.arity = arity;
+        this.heap = new int[capacity];
+        this.positions = new int[capacity];
+        this.keys = new long[capacity];
+        Arrays.fill(positions, ABSENT);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(final int vertex) {
+        return positions[vertex] != ABSENT;
+    }
+
+    /**
+     * @return  the smallest key in the heap, the heap must not be empty
+     */
+    public long peekKey() {
+        Preconditions.checkState(size > 0, "Heap is empty");
+        return keys[heap[0]];
+    }
+
+    /**
+     * Inserts the vertex or decreases its key if the vertex is already in the heap with a bigger key.
+     *
+     * @return  true if the heap has been changed
+     */
+    public boolean insertOrDecrease(final int vertex, final long key) {
+        int position = positions[vertex];
+        if (position == ABSENT) {
+            position = size++;
+            heap[position] = vertex;
+            positions[vertex] = position;
+        } else if (keys[vertex] <= key) {
+            return false;
+        }
+
+        keys[vertex] = key;
+        siftUp(position);
+        return true;
+    }
+
+    /**
+     * Removes the vertex with the smallest key, the heap must not be empty.
+     */
+    public int poll() {
+        Preconditions.checkState(size > 0, "Heap is empty");
+
+        final int top = heap[0];
+        positions[top] = ABSENT;
+
+        final int last = heap[--size];
+        if (size > 0) {
+            heap[0] = last;
+            positions[last] = 0;
+            siftDown(0);
+        }
+
+        return top;
+    }
+
+    /**
+     * Removes all the vertexes, the time complexity is O(size).
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            positions[heap[i]] = ABSENT;
+        }
+
+        size = 0;
+    }
+
+    private void siftUp(int position) {
+        final int vertex = heap[position];
+        final long key = keys[vertex];
+
+        while (position > 0) {
+            final int parentPosition = (position - 1) / arity;
+            final int parent = heap[parentPosition];
+            if (keys[parent] <= key) {
+                break;
+            }
+
+            heap[position] = parent;
+            positions[parent] = position;
+            position = parentPosition;
+        }
+
+        heap[position] = vertex;
+        positions[vertex] = position;
+    }
+
+    private void siftDown(int position) {
+        final int vertex = heap[position];
+        final long key = keys[vertex];
+
+        while (true) {
+            final int firstChild = position * arity + 1;
+            if (firstChild >= size) {
+                break;
+            }
+
+            final int lastChild = Math.min(firstChild + arity, size);
+            int minimalChildPosition = firstChild;
+            long minimalChildKey = keys[heap[firstChild]];
+            for (int child = firstChild + 1; child < lastChild; child++) {
+                final long childKey = keys[heap[child]];
+                if (childKey < minimalChildKey) {
+                    minimalChildPosition = child;
+                    minimalChildKey = childKey;
+                }
+            }
+
+            if (minimalChildKey >= key) {
+                break;
+            }
+
+            final int minimalChild = heap[minimalChildPosition];
+            heap[position] = minimalChild;
+            positions[minimalChild] = position;
+            position = minimalChildPosition;
+        }
+
+        heap[position] = vertex;
+        positions[vertex] = position;
+    }
+}
@@ -0,0 +1,205 @@
+package test.logic.utils;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+
+import test.domain.CompressedEdgeIndex;
+import test.domain.TownGraph;
+
+/**
+ * <p>A* search with landmarks and the triangle inequality (ALT). For a few landmark vertexes L the distances from and
+ * to every vertex are precomputed once per graph, then for any vertex V and FINISH vertex T
+ *
+ * <pre>
+ *     d(V, T) >= d(L, T) - d(L, V)
+ *     d(V, T) >= d(V, L) - d(T, L)
+ * </pre>
+ *
+ * <p>The maximum of these bounds is a consistent potential, so the search settles every vertex at most once and mostly
+ * the vertexes in the direction of FINISH vertex. If a landmark proves that FINISH vertex is not reachable from a
+ * vertex, the vertex is not explored at all.
+ *
+ * <p>The landmarks are picked with the farthest point heuristic: every next landmark is the vertex with the largest
+ * distance to the closest of already picked ones.
+ *
+ * <p>"At least one stop" is kept the same way as in {@link DijkstraUtils}: the search is seeded with the edges going
+ * out of START vertex.
+ *
+ * <p>The time complexity of the precomputation is O(L*(E+V)*LOG(V)), the space complexity is O(L*V), where L - number
+ * of landmarks, V - number of graph vertexes, E - number of graph edges.
+ */
+public class LandmarkDistances {
+
+    public static final int DEFAULT_NUMBER_OF_LANDMARKS = 8;
+
+    private final CompressedEdgeIndex toEdges;
+    private final int numberOfVertexes;
+    private final int numberOfLandmarks;
+
+    // [landmark * V + vertex] - distance from the landmark to the vertex
+    private final long[] fromLandmarks;
+
+    // [landmark * V + vertex] - distance from the vertex to the landmark
+    private final long[] toLandmarks;
+
+    LandmarkDistances(final CompressedEdgeIndex toEdges, final int numberOfLandmarks, final long[] fromLandmarks,
+            final long[] toLandmarks) {
+        this.toEdges = toEdges;
+        this.numberOfVertexes = toEdges.numberOfVertexes();
+        this.numberOfLandmarks = numberOfLandmarks;
+        this.fromLandmarks = fromLandmarks;
+        this.toLandmarks = toLandmarks;
+    }
+
+    /**
+     * @return  the landmark distances attached to the given graph, computing them on the first request
+     */
+    public static LandmarkDistances of(final TownGraph townGraph) {
+        //J-
+        return townGraph.getDerivedIndex(LandmarkDistances.class, new Supplier<LandmarkDistances>() {
+                @Override
+                public LandmarkDistances get() {
+                    return compute(townGraph.getToEdgesIndex(), townGraph.getFromEdgesIndex(),
+                        DEFAULT_NUMBER_OF_LANDMARKS);
+                }
+            });
+        //J+
+    }
+
+    public static LandmarkDistances compute(final CompressedEdgeIndex toEdges, final CompressedEdgeIndex fromEdges,
+            final int maxNumberOfLandmarks) {
+
+        final int numberOfVertexes = toEdges.numberOfVertexes();
+        final int numberOfLandmarks = Math.min(maxNumberOfLandmarks, numberOfVertexes);
+
+        final long[] fromLandmarks = new long[numberOfLandmarks * numberOfVertexes];
+        final long[] toLandmarks = new long[numberOfLandmarks * numberOfVertexes];
+
+        // distance from every vertex to the closest landmark picked so far in any direction
+        final long[] closestLandmark = new long[numberOfVertexes];
+        Arrays.fill(closestLandmark, DijkstraUtils.UNREACHABLE);
+
+        int landmark = 0;
+        for (int l = 0; l < numberOfLandmarks; l++) {
+            final long[] from = DijkstraUtils.shortestDistances(toEdges, landmark, false);
+            final long[] to = DijkstraUtils.shortestDistances(fromEdges, landmark, false);
+            System.arraycopy(from, 0, fromLandmarks, l * numberOfVertexes, numberOfVertexes);
+            System.arraycopy(to, 0, toLandmarks, l * numberOfVertexes, numberOfVertexes);
+
+            int farthestVertex = 0;
+            long farthestDistance = -1;
+            for (int vertex = 0; vertex < numberOfVertexes; vertex++) {
+                closestLandmark[vertex] = Math.min(closestLandmark[vertex], Math.min(from[vertex], to[vertex]));
+                if (closestLandmark[vertex] > farthestDistance) {
+                    farthestVertex = vertex;
+                    farthestDistance = closestLandmark[vertex];
+                }
+            }
+
+            landmark = farthestVertex;
+        }
+
+        return new LandmarkDistances(toEdges, numberOfLandmarks, fromLandmarks, toLandmarks);
+    }
+
+    /**
+     * Writes the landmark distances to a snapshot, see {@link #readFrom(SnapshotReader, TownGraph)}.
+     */
+    public void writeTo(final SnapshotWriter out) throws IOException {
+        out.writeInt(numberOfLandmarks);
+        out.writeLongs(fromLandmarks);
+        out.writeLongs(toLandmarks);
+    }
+
+    /**
+     * @return  the landmark distances written by {@link #writeTo(SnapshotWriter)} for the same graph
+     */
+    public static LandmarkDistances readFrom(final SnapshotReader in, final TownGraph townGraph) throws IOException {
+        final CompressedEdgeIndex toEdges = townGraph.getToEdgesIndex();
+        final int numberOfLandmarks = in.readInt();
+        final long[] fromLandmarks = in.readLongs();
+        final long[] toLandmarks = in.readLongs();
+
+        final long size = (long) numberOfLandmarks * toEdges.numberOfVertexes();
+        Preconditions.checkArgument(fromLandmarks.length == size && toLandmarks.length == size,
+            "Snapshot of landmark distances has wrong size [%s], expected [%s]", fromLandmarks.length, size);
+
+        return new LandmarkDistances(toEdges, numberOfLandmarks, fromLandmarks, toLandmarks);
+    }
+
+    /**
+     * @return  the shortest distance with at least one stop or {@link DijkstraUtils#UNREACHABLE}
+     */
+    public long shortestDistance(final int from, final int to) {
+        final long[] distances = new long[numberOfVertexes];
+        Arrays.fill(distances, DijkstraUtils.UNREACHABLE);
+
+        final IndexedDaryHeap heap = new IndexedDaryHeap(numberOfVertexes);
+
+        relax(from, 0, to, distances, heap);
+
+        while (!heap.isEmpty()) {
+            final int vertex = heap.poll();
+            if (vertex == to) {
+                return distances[vertex];
+            }
+
+            relax(vertex, distances[vertex], to, distances, heap);
+        }
+
+        return DijkstraUtils.UNREACHABLE;
+    }
+
+    private void relax(final int vertex, final long distance, final int to, final long[] distances,
+            final IndexedDaryHeap heap) {
+        for (int i = toEdges.begin(vertex); i < toEdges.end(vertex); i++) {
+            final int neighbour = toEdges.target(i);
+            final long neighbourDistance = distance + toEdges.weight(i);
+            if (neighbourDistance < distances[neighbour]) {
+                final long potential = potential(neighbour, to);
+                if (potential == DijkstraUtils.UNREACHABLE) {
+                    continue;
+                }
+
+                distances[neighbour] = neighbourDistance;
+                heap.insertOrDecrease(neighbour, neighbourDistance + potential);
+            }
+        }
+    }
+
+    /**
+     * @return  lower bound of the distance from the vertex to FINISH vertex, {@link DijkstraUtils#UNREACHABLE} if
+     *          FINISH vertex can't be reached from the vertex
+     */
+    long potential(final int vertex, final int to) {
+        long result = 0;
+        for (int l = 0; l < numberOfLandmarks; l++) {
+            final int offset = l * numberOfVertexes;
+
+            final long landmarkToVertex = fromLandmarks[offset + vertex];
+            final long landmarkToFinish = fromLandmarks[offset + to];
+            if (landmarkToFinish == DijkstraUtils.UNREACHABLE) {
+                if (landmarkToVertex != DijkstraUtils.UNREACHABLE) {
+                    return DijkstraUtils.UNREACHABLE;
+                }
+            } else if (landmarkToVertex != DijkstraUtils.UNREACHABLE) {
+                result = Math.max(result, landmarkToFinish - landmarkToVertex);
+            }
+
+            final long vertexToLandmark = toLandmarks[offset + vertex];
+            final long finishToLandmark = toLandmarks[offset + to];
+            if (finishToLandmark != DijkstraUtils.UNREACHABLE) {
+                if (vertexToLandmark == DijkstraUtils.UNREACHABLE) {
+                    return DijkstraUtils.UNREACHABLE;
+                }
+
+                result = Math.max(result, vertexToLandmark - finishToLandmark);
+            }
+        }
+
+        return result;
+    }
+}
@@ -1,8 +1,31 @@
 package test.logic.utils;
 
+import java.util.concurrent.RecursiveAction;
+
 import com.google.common.base.Preconditions;
 
+/**
+ * <p>Operations over dense matrices of longs.
+ *
+ * <p>Multiplication of small matrices is done with the plain i-k-j loop. Bigger matrices are copied into flat row
+ * major arrays, the right operand is transposed so that every cell of the result is a dot product of two contiguous
+ * rows, and the product is computed tile by tile in parallel over the blocks of rows with fork/join.
+ *
+ * <p>The geometric series of a matrix S(N) = A + A^2 + ... + A^N is extended by blocks of binary powers:
+ * S(2^K + M) = S(2^K) + A^(2^K)*S(M), see {@link ConnectivityMatrixPowers}.
+ */
 public class MatrixUtils {
+
+    /**
+     * Number of multiply-add operations starting from which the tiled parallel kernel is used.
+     */
+    static final long TILED_MULTIPLICATION_THRESHOLD = 64L * 64 * 64;
+
+    /**
+     * Side of the square tile, 64x64 longs of both operands fit into L2 cache.
+     */
+    static final int TILE = 64;
+
     public static long[][] identityMatrix(final int rows, final int cols) {
         long[][] result = new long[rows][cols];
         for (int i = 0; i < rows; i++) {
@@ -26,19 +49,173 @@ public class MatrixUtils {
         );
         //J+
 
+        final int rows = matrixOne.length;
+        final int inner = matrixTwo.length;
+        final int cols = matrixTwo[0].length;
+
+        if ((long) rows * inner * cols < TILED_MULTIPLICATION_THRESHOLD) {
+            return multiplySmallMatrices(matrixOne, matrixTwo);
+        }
+
+        checkFlatSize(rows, inner);
+        checkFlatSize(inner, cols);
+        checkFlatSize(rows, cols);
+
+        final long[] left = flatten(matrixOne, rows, inner);
+        final long[] rightTransposed = flattenTransposed(matrixTwo, inner, cols);
+        final long[] result = new long[rows * cols];
+
+        ParallelUtils.pool().invoke(new MultiplyRowsTask(left, rightTransposed, result, inner, cols, 0, rows));
+
+        return unflatten(result, rows, cols);
+    }
+
+    /**
+     * Extends the geometric series by a block of 2^K powers: S(2^K + M) = S(2^K) + A^(2^K)*S(M).
+     *
+     * @param  binaryPower  A^(2^K)
+     * @param  binarySum    S(2^K)
+     * @param  sum          S(M)
+     */
+    public static long[][] prependBinaryBlock(final long[][] binaryPower, final long[][] binarySum,
+            final long[][] sum) {
+        return addMatrices(binarySum, multiplyMatrices(binaryPower, sum));
+    }
+
+    public static long[][] addMatrices(final long[][] matrixOne, final long[][] matrixTwo) {
+
+        //J-
+        Preconditions.checkArgument(
+                matrixOne.length == matrixTwo.length && matrixOne[0].length == matrixTwo[0].length,
+                "Dimensions of the added matrices are wrong, matrixOne [%sx%s], matrixTwo [%sx%s]",
+                matrixOne.length, matrixOne[0].length,
+                matrixTwo.length, matrixTwo[0].length
+        );
+        //J+
+
+        final long[][] result = new long[matrixOne.length][matrixOne[0].length];
+        for (int i = 0; i < matrixOne.length; i++) {
+            for (int j = 0; j < matrixOne[0].length; j++) {
+                result[i][j] = matrixOne[i][j] + matrixTwo[i][j];
+            }
+        }
+
+        return result;
+    }
+
+    private static long[][] multiplySmallMatrices(final long[][] matrixOne, final long[][] matrixTwo) {
         long[][] result = new long[matrixOne.length][matrixTwo[0].length];
         for (int i = 0; i < matrixOne.length; i++) {
-            for (int j = 0; j < matrixTwo[0].length; j++) {
-                int value = 0;
-                for (int k = 0; k < matrixOne[0].length; k++) {
-                    value += matrixOne[i][k] * matrixTwo[k][j];
+            final long[] resultRow = result[i];
+            for (int k = 0; k < matrixTwo.length; k++) {
+                final long value = matrixOne[i][k];
+                if (value == 0) {
+                    continue;
                 }
 
-                result[i][j] = value;
+                final long[] matrixTwoRow = matrixTwo[k];
+                for (int j = 0; j < resultRow.length; j++) {
+                    resultRow[j] += value * matrixTwoRow[j];
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private static void checkFlatSize(final int rows, final int cols) {
+        Preconditions.checkArgument((long) rows * cols <= Integer.MAX_VALUE,
+            "Matrix [%sx%s] is too big to be flattened", rows, cols);
+    }
+
+    private static long[] flatten(final long[][] matrix, final int rows, final int cols) {
+        final long[] result = new long[rows * cols];
+        for (int i = 0; i < rows; i++) {
+            System.arraycopy(matrix[i], 0, result, i * cols, cols);
+        }
+
+        return result;
+    }
+
+    private static long[] flattenTransposed(final long[][] matrix, final int rows, final int cols) {
+        final long[] result = new long[rows * cols];
+        for (int i = 0; i < rows; i++) {
+            final long[] row = matrix[i];
+            for (int j = 0; j < cols; j++) {
+                result[j * rows + i] = row[j];
             }
         }
 
         return result;
     }
 
+    private static long[][] unflatten(final long[] matrix, final int rows, final int cols) {
+        final long[][] result = new long[rows][cols];
+        for (int i = 0; i < rows; i++) {
+            System.arraycopy(matrix, i * cols, result[i], 0, cols);
+        }
+
+        return result;
+    }
+
+    /**
+     * Computes the rows [fromRow, toRow) of the product, splitting the range in halves until it fits into one tile.
+     */
+    @SuppressWarnings("serial")
+    private static class MultiplyRowsTask extends RecursiveAction {
+        private final long[] left;
+        private final long[] rightTransposed;
+        private final long[] result;
+        private final int inner;
+        private final int cols;
+        private final int fromRow;
+        private final int toRow;
+
+        MultiplyRowsTask(final long[] left, final long[] rightTransposed, final long[] result, final int inner,
+                final int cols, final int fromRow, final int toRow) {
+            this.left = left;
+            this.rightTransposed = rightTransposed;
+            this.result = result;
+            this.inner = inner;
+            this.cols = cols;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
+
+        @Override
+        protected void compute() {
+            if (toRow - fromRow > TILE) {
+                final int middleRow = (fromRow + toRow) >>> 1;
+                invokeAll(new MultiplyRowsTask(left, rightTransposed, result, inner, cols, fromRow, middleRow),
+                    new MultiplyRowsTask(left, rightTransposed, result, inner, cols, middleRow, toRow));
+                return;
+            }
+
+            for (int colTile = 0; colTile < cols; colTile += TILE) {
+                final int colTileEnd = Math.min(colTile + TILE, cols);
+                for (int innerTile = 0; innerTile < inner; innerTile += TILE) {
+                    final int innerTileEnd = Math.min(innerTile + TILE, inner);
+                    multiplyTile(colTile, colTileEnd, innerTile, innerTileEnd);
+                }
+            }
+        }
+
+        private void multiplyTile(final int colTile, final int colTileEnd, final int innerTile,
+                final int innerTileEnd) {
+            for (int i = fromRow; i < toRow; i++) {
+                final int leftRow = i * inner;
+                final int resultRow = i * cols;
+                for (int j = colTile; j < colTileEnd; j++) {
+                    final int rightRow = j * inner;
+                    long value = 0;
+                    for (int k = innerTile; k < innerTileEnd; k++) {
+                        value += left[leftRow + k] * rightTransposed[rightRow + k];
+                    }
+
+                    result[resultRow + j] += value;
+                }
+            }
+        }
+    }
+
 }
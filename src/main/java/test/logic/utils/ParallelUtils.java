@@ -0,0 +1,29 @@
+package test.logic.utils;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * <p>The fork/join pool shared by all the parallel computations: matrix multiplications, all pairs distances, route
+ * distances and chunked file parsing. A single pool keeps the number of busy threads at its parallelism even when
+ * several computations run at once, e.g. for the concurrent queries of the query server.
+ *
+ * <p>The parallelism is taken from {@code -Dalgofun.threads=N}, the same property the number of query threads is
+ * taken from, and is the number of available processors by default.
+ */
+public class ParallelUtils {
+
+    /**
+     * System property with the parallelism of the pool.
+     */
+    public static final String THREADS_PROPERTY = "algofun.threads";
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(Math.max(1,
+                Integer.getInteger(THREADS_PROPERTY, Runtime.getRuntime().availableProcessors())));
+
+    /**
+     * @return  the shared pool
+     */
+    public static ForkJoinPool pool() {
+        return POOL;
+    }
+}
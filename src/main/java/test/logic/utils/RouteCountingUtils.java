@@ -0,0 +1,143 @@
+package test.logic.utils;
+
+import com.google.common.base.Preconditions;
+import com.google.common.math.LongMath;
+
+import test.domain.CompressedEdgeIndex;
+
+/**
+ * <p>Counts routes between two vertexes by propagating the vector of route counts from START vertex over the edges,
+ * one STOP at a time: after K steps the cell of a vertex holds the number of routes from START to it with exactly K
+ * stops. It is the same as multiplying the row vector of START by the connectivity matrix K times, but only the edges
+ * of the vertexes reached so far are visited. As in the connectivity matrix, parallel edges between two vertexes are
+ * counted once.
+ *
+ * <p>The time complexity is O(E*STOPS), where E - number of graph edges.
+ *
+ * <p>The space complexity is O(V), where V - number of graph vertexes.
+ */
+public class RouteCountingUtils {
+
+    /**
+     * @return  number of routes from {@code from} to {@code to} with exactly {@code stops} stops
+     */
+    public static long countRoutesWithExactlyStops(final CompressedEdgeIndex toEdges, final int from, final int to,
+            final int stops) {
+        return countRoutes(toEdges, from, stops, false)[to];
+    }
+
+    /**
+     * @return  number of routes from {@code from} to {@code to} with at least one and at most {@code maxStopsInclusive}
+     *          stops
+     */
+    public static long countRoutesWithAtMostStops(final CompressedEdgeIndex toEdges, final int from, final int to,
+            final int maxStopsInclusive) {
+        return countRoutes(toEdges, from, maxStopsInclusive, true)[to];
+    }
+
+    /**
+     * @return  numbers of routes from {@code from} to every vertex with exactly {@code stops} stops
+     */
+    public static long[] routeCountsWithExactlyStops(final CompressedEdgeIndex toEdges, final int from,
+            final int stops) {
+        return countRoutes(toEdges, from, stops, false);
+    }
+
+    /**
+     * @return  numbers of routes from {@code from} to every vertex with at least one and at most
+     *          {@code maxStopsInclusive} stops
+     */
+    public static long[] routeCountsWithAtMostStops(final CompressedEdgeIndex toEdges, final int from,
+            final int maxStopsInclusive) {
+        return countRoutes(toEdges, from, maxStopsInclusive, true);
+    }
+
+    /**
+     * @return  number of multiply-add operations the propagation over {@code stops} steps takes in the worst case
+     */
+    public static long propagationCost(final CompressedEdgeIndex toEdges, final int stops) {
+        return (long) Math.max(toEdges.numberOfEdges(), toEdges.numberOfVertexes()) * stops;
+    }
+
+    /**
+     * @return  number of multiply-add operations the propagations from {@code numberOfSources} vertexes take in the
+     *          worst case, saturated to Long.MAX_VALUE
+     */
+    public static long propagationCost(final CompressedEdgeIndex toEdges, final int stops, final int numberOfSources) {
+        try {
+            return LongMath.checkedMultiply(propagationCost(toEdges, stops), numberOfSources);
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static long[] countRoutes(final CompressedEdgeIndex toEdges, final int from, final int stops,
+            final boolean summingUpEveryStop) {
+
+        Preconditions.checkArgument(stops >= 0, "Number of stops must be non negative, was [%s]", stops);
+
+        final int numberOfVertexes = toEdges.numberOfVertexes();
+
+        long[] current = new long[numberOfVertexes];
+        long[] next = new long[numberOfVertexes];
+
+        // vertexes reached at the current and at the next step
+        int[] frontier = new int[numberOfVertexes];
+        int[] nextFrontier = new int[numberOfVertexes];
+        int frontierSize = 1;
+
+        // the last step a vertex was added to the next frontier at
+        final int[] addedAtStop = new int[numberOfVertexes];
+
+        // the last processed vertex an edge to a vertex was followed from, used to skip parallel edges
+        final int[] followedFrom = new int[numberOfVertexes];
+        int followedFromStamp = 0;
+
+        current[from] = 1;
+        frontier[0] = from;
+
+        final long[] numberOfRoutes = summingUpEveryStop ? new long[numberOfVertexes] : null;
+        for (int stop = 1; stop <= stops && frontierSize > 0; stop++) {
+            int nextFrontierSize = 0;
+
+            for (int f = 0; f < frontierSize; f++) {
+                final int vertex = frontier[f];
+                final long routes = current[vertex];
+                current[vertex] = 0;
+                followedFromStamp++;
+
+                for (int i = toEdges.begin(vertex); i < toEdges.end(vertex); i++) {
+                    final int neighbour = toEdges.target(i);
+                    if (followedFrom[neighbour] == followedFromStamp) {
+                        continue;
+                    }
+
+                    followedFrom[neighbour] = followedFromStamp;
+                    if (addedAtStop[neighbour] != stop) {
+                        addedAtStop[neighbour] = stop;
+                        nextFrontier[nextFrontierSize++] = neighbour;
+                    }
+
+                    next[neighbour] += routes;
+                }
+            }
+
+            if (summingUpEveryStop) {
+                for (int f = 0; f < nextFrontierSize; f++) {
+                    numberOfRoutes[nextFrontier[f]] += next[nextFrontier[f]];
+                }
+            }
+
+            final long[] vector = current;
+            current = next;
+            next = vector;
+
+            final int[] vertexes = frontier;
+            frontier = nextFrontier;
+            nextFrontier = vertexes;
+            frontierSize = nextFrontierSize;
+        }
+
+        return summingUpEveryStop ? numberOfRoutes : current;
+    }
+}
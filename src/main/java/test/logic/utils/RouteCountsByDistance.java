@@ -0,0 +1,380 @@
+package test.logic.utils;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.Striped;
+
+import test.domain.CompressedEdgeIndex;
+import test.domain.TownGraph;
+
+/**
+ * <p>Per graph cache of the route counting tables by route distance, one table per FINISH vertex.
+ *
+ * <p>The table for FINISH vertex holds the number of routes from every vertex to FINISH vertex with the distance less
+ * than or equal to d, for all d below the largest bound requested so far. It answers every START vertex and every
+ * smaller bound with a single array read. A larger bound extends the table with the rows for the missing distances
+ * only, using the recurrence
+ *
+ * <pre>
+ *     exact[v][d] = SUM over edges v -> u with weight w ([u == FINISH and d == w] + exact[u][d - w])
+ * </pre>
+ *
+ * <p>where exact[v][d] is the difference of two consecutive cumulative rows. The number of routes grows exponentially
+ * with the distance, it is counted modulo 2^64: the arithmetic wraps on overflow and the differences stay exact.
+ *
+ * <p>The rows computed before are not recomputed, but they are copied into the array of the larger bound, so an
+ * extension also takes O(V*MAX_DISTANCE) for the copy.
+ *
+ * <p>The memory is bounded by the total number of cached table cells, the least recently used tables are evicted first.
+ * The cache is kept in a single segment, because the cache divides the bound among its segments and a table heavier
+ * than the share of its segment would be evicted as soon as it is put.
+ *
+ * <p>A bound which would make the table larger than the whole cache is counted with the sparse distance buckets
+ * instead: the route counts from START vertex are propagated in increasing order of distance, keeping only the
+ * (vertex, distance) states actually reached within the next MAX_EDGE_WEIGHT distances. The memory scales with the
+ * reachable states rather than with V*MAX_DISTANCE, and the distances no route ends at are skipped entirely.
+ */
+public class RouteCountsByDistance {
+
+    /**
+     * Default bound of the cached table cells, 2^24 longs take 128Mb.
+     */
+    static final long DEFAULT_MAXIMUM_CELLS = 1L << 24;
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final CompressedEdgeIndex toEdges;
+    private final CompressedEdgeIndex fromEdges;
+    private final long maximumCells;
+    private final Cache<Integer, CountTable> cache;
+    private final Striped<Lock> locks = Striped.lock(LOCK_STRIPES);
+
+    RouteCountsByDistance(final CompressedEdgeIndex toEdges, final CompressedEdgeIndex fromEdges,
+            final long maximumCells) {
+        this.toEdges = toEdges;
+        this.fromEdges = fromEdges;
+        this.maximumCells = maximumCells;
+
+        //J-
+        this.cache = CacheBuilder.newBuilder()
+                .concurrencyLevel(1)
+                .maximumWeight(maximumCells)
+                .weigher(new Weigher<Integer, CountTable>() {
+                        @Override
+                        public int weigh(final Integer finish, final CountTable table) {
+                            return table.cumulative.length;
+                        }
+                    })
+                .build();
+        //J+
+    }
+
+    /**
+     * @return  the cache attached to the given graph
+     */
+    public static RouteCountsByDistance of(final TownGraph townGraph) {
+        //J-
+        return townGraph.getDerivedIndex(RouteCountsByDistance.class, new Supplier<RouteCountsByDistance>() {
+                @Override
+                public RouteCountsByDistance get() {
+                    return new RouteCountsByDistance(townGraph.getToEdgesIndex(), townGraph.getFromEdgesIndex(),
+                            DEFAULT_MAXIMUM_CELLS);
+                }
+            });
+        //J+
+    }
+
+    /**
+     * @return  number of routes from START vertex to FINISH vertex with the distance less than MAX_DISTANCE modulo 2^64
+     */
+    public long countRoutes(final int start, final int finish, final long maxDistanceExclusive) {
+        Preconditions.checkArgument(maxDistanceExclusive >= 0, "Max distance must be non negative, was [%s]",
+            maxDistanceExclusive);
+
+        if (maxDistanceExclusive <= 1) {
+            return 0;
+        }
+
+        if (maxDistanceExclusive > maximumCells / Math.max(1, toEdges.numberOfVertexes())) {
+            return countRoutesInBuckets(toEdges, fromEdges, start, finish, maxDistanceExclusive);
+        }
+
+        final int bound = (int) maxDistanceExclusive;
+        CountTable table = cache.getIfPresent(finish);
+        if (table == null || table.bound < bound) {
+            table = extend(finish, bound);
+        }
+
+        return table.cumulative(start, bound - 1);
+    }
+
+    /**
+     * Counts the routes without any table, propagating the route counts from START vertex over the sparse distance
+     * buckets. The arithmetic wraps on overflow the same way as in the tables.
+     *
+     * <p>Every state is reached from START vertex, and a state (V, d) is discarded as soon as d plus the shortest
+     * distance from V to FINISH vertex is not less than MAX_DISTANCE, which includes all the vertexes FINISH vertex is
+     * not reachable from. The shortest distances to FINISH vertex are found with one Dijkstra search over the reverse
+     * index.
+     *
+     * <p>The time complexity is O(S*(D+LOG(S))), the space complexity is O(V*W) in the worst case, where S - number of
+     * reachable (vertex, distance) states, D - maximum vertex out degree, V - number of graph vertexes, W - maximum
+     * edge weight.
+     *
+     * @return  number of routes from START vertex to FINISH vertex with the distance less than MAX_DISTANCE modulo 2^64
+     */
+    public static long countRoutesInBuckets(final CompressedEdgeIndex toEdges, final CompressedEdgeIndex fromEdges,
+            final int start, final int finish, final long maxDistanceExclusive) {
+        Preconditions.checkArgument(maxDistanceExclusive >= 0, "Max distance must be non negative, was [%s]",
+            maxDistanceExclusive);
+
+        final long[] distancesToFinish = DijkstraUtils.shortestDistances(fromEdges, finish, false);
+        if (isBeyondBound(distancesToFinish[start], 0, maxDistanceExclusive)) {
+            return 0;
+        }
+
+        final TreeMap<Long, Bucket> buckets = new TreeMap<>();
+        final Bucket startBucket = new Bucket();
+        startBucket.add(start, 1);
+        buckets.put(0L, startBucket);
+
+        long result = 0;
+        while (!buckets.isEmpty()) {
+            final Map.Entry<Long, Bucket> entry = buckets.pollFirstEntry();
+            final long distance = entry.getKey();
+            final Bucket bucket = entry.getValue();
+
+            for (int slot = 0; slot < bucket.capacity(); slot++) {
+                final int vertex = bucket.vertex(slot);
+                if (vertex == Bucket.EMPTY) {
+                    continue;
+                }
+
+                final long routes = bucket.routes(slot);
+                for (int i = toEdges.begin(vertex); i < toEdges.end(vertex); i++) {
+                    final long neighbourDistance = distance + toEdges.weight(i);
+                    final int neighbour = toEdges.target(i);
+                    if (isBeyondBound(distancesToFinish[neighbour], neighbourDistance, maxDistanceExclusive)) {
+                        continue;
+                    }
+
+                    if (neighbour == finish) {
+                        result += routes;
+                    }
+
+                    Bucket neighbourBucket = buckets.get(neighbourDistance);
+                    if (neighbourBucket == null) {
+                        neighbourBucket = new Bucket();
+                        buckets.put(neighbourDistance, neighbourBucket);
+                    }
+
+                    neighbourBucket.add(neighbour, routes);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return  true if no route to FINISH vertex through the vertex reached at the distance is shorter than the bound
+     */
+    private static boolean isBeyondBound(final long distanceToFinish, final long distance,
+            final long maxDistanceExclusive) {
+        return distanceToFinish >= maxDistanceExclusive - distance;
+    }
+
+    /**
+     * @return  true if there is a route from START vertex to FINISH vertex with the distance less than MAX_DISTANCE, it
+     *          tells no routes apart from a number of routes which is a multiple of 2^64
+     */
+    public boolean hasRoutes(final int start, final int finish, final long maxDistanceExclusive) {
+        final CountTable table = cache.getIfPresent(finish);
+        final long[] distancesToFinish = table != null ? table.distancesToFinish
+                                                       : DijkstraUtils.shortestDistances(fromEdges, finish, false);
+
+        for (int i = toEdges.begin(start); i < toEdges.end(start); i++) {
+            if (!isBeyondBound(distancesToFinish[toEdges.target(i)], toEdges.weight(i), maxDistanceExclusive)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return  true if the routes to FINISH vertex with the distance less than MAX_DISTANCE can be counted without any
+     *          traversal
+     */
+    public boolean isCached(final int finish, final int maxDistanceExclusive) {
+        if (maxDistanceExclusive <= 1) {
+            return true;
+        }
+
+        final CountTable table = cache.getIfPresent(finish);
+        return table != null && table.bound >= maxDistanceExclusive;
+    }
+
+    private CountTable extend(final int finish, final int bound) {
+        final Lock lock = locks.get(finish);
+        lock.lock();
+        try {
+            final CountTable cached = cache.getIfPresent(finish);
+            if (cached != null && cached.bound >= bound) {
+                return cached;
+            }
+
+            final CountTable table = CountTable.extend(toEdges, fromEdges, finish, cached, bound);
+            cache.put(finish, table);
+            return table;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Immutable table of cumulative route counts, row d holds the counts for the distances up to d for all the
+     * vertexes. A vertex gets no routes at the distances below its shortest distance to FINISH vertex, so its edges are
+     * not visited for those rows at all.
+     */
+    private static class CountTable {
+        private final int numberOfVertexes;
+        private final int bound;
+        private final long[] cumulative;
+        private final long[] distancesToFinish;
+
+        CountTable(final int numberOfVertexes, final int bound, final long[] cumulative,
+                final long[] distancesToFinish) {
+            this.numberOfVertexes = numberOfVertexes;
+            this.bound = bound;
+            this.cumulative = cumulative;
+            this.distancesToFinish = distancesToFinish;
+        }
+
+        static CountTable extend(final CompressedEdgeIndex toEdges, final CompressedEdgeIndex fromEdges,
+                final int finish, final CountTable table, final int bound) {
+            final int numberOfVertexes = toEdges.numberOfVertexes();
+            Preconditions.checkArgument((long) numberOfVertexes * bound <= Integer.MAX_VALUE,
+                "Too many vertexes for route counting table [%s]", numberOfVertexes);
+
+            final long[] cumulative = table == null ? new long[numberOfVertexes * bound]
+                                                    : Arrays.copyOf(table.cumulative, numberOfVertexes * bound);
+            final long[] distancesToFinish = table == null ? DijkstraUtils.shortestDistances(fromEdges, finish, false)
+                                                           : table.distancesToFinish;
+
+            // the row of distance 0 is all zeros, there are no routes without edges
+            for (int distance = table == null ? 1 : table.bound; distance < bound; distance++) {
+                final int row = distance * numberOfVertexes;
+                final int previousRow = row - numberOfVertexes;
+
+                for (int vertex = 0; vertex < numberOfVertexes; vertex++) {
+                    if (distancesToFinish[vertex] > distance) {
+                        continue;
+                    }
+
+                    long routes = 0;
+                    for (int i = toEdges.begin(vertex); i < toEdges.end(vertex); i++) {
+                        final int neighbour = toEdges.target(i);
+                        final int weight = toEdges.weight(i);
+                        if (weight < distance) {
+                            routes += exact(cumulative, numberOfVertexes, neighbour, distance - weight);
+                        } else if (weight == distance && neighbour == finish) {
+                            routes++;
+                        }
+                    }
+
+                    cumulative[row + vertex] = cumulative[previousRow + vertex] + routes;
+                }
+            }
+
+            return new CountTable(numberOfVertexes, bound, cumulative, distancesToFinish);
+        }
+
+        private static long exact(final long[] cumulative, final int numberOfVertexes, final int vertex,
+                final int distance) {
+            return cumulative[distance * numberOfVertexes + vertex]
+                    - cumulative[(distance - 1) * numberOfVertexes + vertex];
+        }
+
+        long cumulative(final int vertex, final int distance) {
+            return cumulative[distance * numberOfVertexes + vertex];
+        }
+    }
+
+    /**
+     * Route counts by vertex reached at the same distance, an open addressing map with linear probing.
+     */
+    private static class Bucket {
+        static final int EMPTY = -1;
+
+        private int[] vertexes = newVertexes(4);
+        private long[] routes = new long[4];
+        private int size;
+
+        int capacity() {
+            return vertexes.length;
+        }
+
+        int vertex(final int slot) {
+            return vertexes[slot];
+        }
+
+        long routes(final int slot) {
+            return routes[slot];
+        }
+
+        void add(final int vertex, final long numberOfRoutes) {
+            if (2 * (size + 1) > vertexes.length) {
+                rehash(vertexes.length * 2);
+            }
+
+            final int slot = slot(vertexes, vertex);
+            if (vertexes[slot] == EMPTY) {
+                vertexes[slot] = vertex;
+                size++;
+            }
+
+            routes[slot] += numberOfRoutes;
+        }
+
+        private void rehash(final int capacity) {
+            final int[] oldVertexes = vertexes;
+            final long[] oldRoutes = routes;
+            vertexes = newVertexes(capacity);
+            routes = new long[capacity];
+
+            for (int i = 0; i < oldVertexes.length; i++) {
+                if (oldVertexes[i] != EMPTY) {
+                    final int slot = slot(vertexes, oldVertexes[i]);
+                    vertexes[slot] = oldVertexes[i];
+                    routes[slot] = oldRoutes[i];
+                }
+            }
+        }
+
+        private static int slot(final int[] vertexes, final int vertex) {
+            final int mask = vertexes.length - 1;
+            final int hash = vertex * 0x9E3779B9;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (vertexes[slot] != EMPTY && vertexes[slot] != vertex) {
+                slot = (slot + 1) & mask;
+            }
+
+            return slot;
+        }
+
+        private static int[] newVertexes(final int capacity) {
+            final int[] vertexes = new int[capacity];
+            Arrays.fill(vertexes, EMPTY);
+            return vertexes;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package test.logic.utils;
+
+import java.util.concurrent.RecursiveAction;
+
+import com.google.common.base.Preconditions;
+
+import test.domain.EdgeWeightIndex;
+
+/**
+ * <p>Distances along routes given as primitive vertex arrays, looked up in {@link EdgeWeightIndex} without boxing. The
+ * distances are summed up in longs, so routes of millions of hops do not overflow.
+ *
+ * <p>A batch of routes is evaluated either sequentially or in parallel with fork/join, where the batch is split by the
+ * total number of hops rather than by the number of routes, so a few long routes are spread as evenly as many short
+ * ones. A route which is too long to hold in memory can be streamed vertex by vertex into an {@link Accumulator}.
+ *
+ * <p>The time complexity is O(K), where K - total number of vertexes in the routes. The space complexity is O(N),
+ * where N - number of routes.
+ */
+public class RouteDistances {
+
+    /**
+     * Distance of a route which does not exist: it has less than two vertexes or misses an edge.
+     */
+    public static final long NO_ROUTE = -1;
+
+    /**
+     * Number of hops a fork/join task evaluates without splitting.
+     */
+    private static final long HOPS_PER_TASK = 1 << 16;
+
+    /**
+     * @return  distance along the route or {@link #NO_ROUTE}
+     */
+    public static long distance(final EdgeWeightIndex edgeWeightIndex, final int[] route) {
+        Preconditions.checkArgument(route != null, "Route is missing");
+
+        if (route.length < 2) {
+            return NO_ROUTE;
+        }
+
+        long distance = 0;
+        for (int i = 1; i < route.length; i++) {
+            final int edgeDistance = edgeWeightIndex.weight(route[i - 1], route[i]);
+            if (edgeDistance == EdgeWeightIndex.NO_EDGE) {
+                return NO_ROUTE;
+            }
+
+            distance += edgeDistance;
+        }
+
+        return distance;
+    }
+
+    /**
+     * @return  distances along the routes in the same order, {@link #NO_ROUTE} for the routes which do not exist
+     */
+    public static long[] distances(final EdgeWeightIndex edgeWeightIndex, final int[][] routes,
+            final boolean parallel) {
+        Preconditions.checkArgument(routes != null, "Routes are missing");
+
+        final long[] distances = new long[routes.length];
+        if (!parallel) {
+            for (int i = 0; i < routes.length; i++) {
+                distances[i] = distance(edgeWeightIndex, routes[i]);
+            }
+
+            return distances;
+        }
+
+        // hops[i] - number of vertexes in the routes before i-th route
+        final long[] hops = new long[routes.length + 1];
+        for (int i = 0; i < routes.length; i++) {
+            Preconditions.checkArgument(routes[i] != null, "Route is missing");
+            hops[i + 1] = hops[i] + routes[i].length;
+        }
+
+        ParallelUtils.pool().invoke(new RoutesTask(edgeWeightIndex, routes, hops, distances, 0, routes.length));
+
+        return distances;
+    }
+
+    /**
+     * Evaluates a route streamed vertex by vertex, in O(1) memory.
+     */
+    public static class Accumulator {
+        private final EdgeWeightIndex edgeWeightIndex;
+        private int previousVertex;
+        private long numberOfVertexes;
+        private long distance;
+
+        public Accumulator(final EdgeWeightIndex edgeWeightIndex) {
+            this.edgeWeightIndex = Preconditions.checkNotNull(edgeWeightIndex, "Edge index is missing");
+        }
+
+        /**
+         * Appends the next vertex of the route.
+         */
+        public Accumulator add(final int vertex) {
+            if (numberOfVertexes > 0 && distance != NO_ROUTE) {
+                final int edgeDistance = edgeWeightIndex.weight(previousVertex, vertex);
+                distance = edgeDistance == EdgeWeightIndex.NO_EDGE ? NO_ROUTE : distance + edgeDistance;
+            }
+
+            previousVertex = vertex;
+            numberOfVertexes++;
+            return this;
+        }
+
+        /**
+         * @return  distance along the vertexes added so far or {@link #NO_ROUTE}
+         */
+        public long distance() {
+            return numberOfVertexes < 2 ? NO_ROUTE : distance;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static class RoutesTask extends RecursiveAction {
+        private final EdgeWeightIndex edgeWeightIndex;
+        private final int[][] routes;
+        private final long[] hops;
+        private final long[] distances;
+        private final int fromRoute;
+        private final int toRoute;
+
+        RoutesTask(final EdgeWeightIndex edgeWeightIndex, final int[][] routes, final long[] hops,
+                final long[] distances, final int fromRoute, final int toRoute) {
+            this.edgeWeightIndex = edgeWeightIndex;
+            this.routes = routes;
+            this.hops = hops;
+            this.distances = distances;
+            this.fromRoute = fromRoute;
+            this.toRoute = toRoute;
+        }
+
+        @Override
+        protected void compute() {
+            if (toRoute - fromRoute > 1 && hops[toRoute] - hops[fromRoute] > HOPS_PER_TASK) {
+                final int middleRoute = middleByHops();
+                invokeAll(new RoutesTask(edgeWeightIndex, routes, hops, distances, fromRoute, middleRoute),
+                    new RoutesTask(edgeWeightIndex, routes, hops, distances, middleRoute, toRoute));
+                return;
+            }
+
+            for (int i = fromRoute; i < toRoute; i++) {
+                distances[i] = distance(edgeWeightIndex, routes[i]);
+            }
+        }
+
+        /**
+         * @return  the route splitting the hops of the task in halves, strictly between the first and the last route
+         */
+        private int middleByHops() {
+            final long middleHops = (hops[fromRoute] + hops[toRoute]) >>> 1;
+
+            int low = fromRoute + 1;
+            int high = toRoute - 1;
+            while (low < high) {
+                final int middle = (low + high) >>> 1;
+                if (hops[middle] < middleHops) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+
+            return low;
+        }
+    }
+}
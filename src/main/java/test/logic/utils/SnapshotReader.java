@@ -0,0 +1,129 @@
+package test.logic.utils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * <p>Reads the primitive values written by {@link SnapshotWriter} from a file channel through a direct buffer. The
+ * length of an array is checked against the rest of the file before the array is allocated, so a damaged snapshot fails
+ * with {@link IllegalArgumentException} rather than with an attempt to allocate gigabytes.
+ */
+public class SnapshotReader {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    public SnapshotReader(final FileChannel channel) {
+        this.channel = Preconditions.checkNotNull(channel, "Channel is missing");
+        buffer.limit(0);
+    }
+
+    public int readInt() throws IOException {
+        ensureAvailable(4);
+        return buffer.getInt();
+    }
+
+    public long readLong() throws IOException {
+        ensureAvailable(8);
+        return buffer.getLong();
+    }
+
+    public int[] readInts() throws IOException {
+        final int[] values = new int[readLength(4)];
+
+        int read = 0;
+        while (read < values.length) {
+            ensureAvailable(4);
+
+            final int count = Math.min(values.length - read, buffer.remaining() / 4);
+            buffer.asIntBuffer().get(values, read, count);
+            buffer.position(buffer.position() + count * 4);
+            read += count;
+        }
+
+        return values;
+    }
+
+    public byte[] readBytes() throws IOException {
+        final byte[] values = new byte[readLength(1)];
+
+        int read = 0;
+        while (read < values.length) {
+            ensureAvailable(1);
+
+            final int count = Math.min(values.length - read, buffer.remaining());
+            buffer.get(values, read, count);
+            read += count;
+        }
+
+        return values;
+    }
+
+    public long[] readLongs() throws IOException {
+        final long[] values = new long[readLength(8)];
+
+        int read = 0;
+        while (read < values.length) {
+            ensureAvailable(8);
+
+            final int count = Math.min(values.length - read, buffer.remaining() / 8);
+            buffer.asLongBuffer().get(values, read, count);
+            buffer.position(buffer.position() + count * 8);
+            read += count;
+        }
+
+        return values;
+    }
+
+    /**
+     * Skips the given number of bytes, e.g. a section of an unknown type.
+     */
+    public void skip(final long bytes) throws IOException {
+        Preconditions.checkArgument(bytes >= 0 && bytes <= remaining(), "Can't skip [%s] bytes", bytes);
+
+        if (bytes <= buffer.remaining()) {
+            buffer.position(buffer.position() + (int) bytes);
+            return;
+        }
+
+        channel.position(channel.position() + bytes - buffer.remaining());
+        buffer.limit(0);
+    }
+
+    /**
+     * @return  number of bytes left in the file
+     */
+    public long remaining() throws IOException {
+        return channel.size() - channel.position() + buffer.remaining();
+    }
+
+    private int readLength(final int elementSize) throws IOException {
+        final int length = readInt();
+        Preconditions.checkArgument(length >= 0 && (long) length * elementSize <= remaining(),
+            "Wrong array length [%s]", length);
+
+        return length;
+    }
+
+    private void ensureAvailable(final int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Unexpected end of snapshot");
+            }
+        }
+
+        buffer.flip();
+    }
+}
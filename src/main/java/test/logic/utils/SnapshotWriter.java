@@ -0,0 +1,126 @@
+package test.logic.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * <p>Writes the primitive values of a snapshot to a file channel through a direct buffer, the arrays are copied in bulk
+ * through the buffer views. All the values are little endian, every array is preceded by its length.
+ *
+ * @see  SnapshotReader
+ */
+public class SnapshotWriter {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    public SnapshotWriter(final FileChannel channel) {
+        this.channel = Preconditions.checkNotNull(channel, "Channel is missing");
+    }
+
+    public void writeInt(final int value) throws IOException {
+        ensureRemaining(4);
+        buffer.putInt(value);
+    }
+
+    public void writeLong(final long value) throws IOException {
+        ensureRemaining(8);
+        buffer.putLong(value);
+    }
+
+    public void writeInts(final int[] values) throws IOException {
+        writeInts(values, values.length);
+    }
+
+    /**
+     * Writes the first {@code length} values of the array, e.g. of an array with spare capacity.
+     */
+    public void writeInts(final int[] values, final int length) throws IOException {
+        Preconditions.checkArgument(length >= 0 && length <= values.length, "Wrong array length [%s]", length);
+        writeInt(length);
+
+        int written = 0;
+        while (written < length) {
+            ensureRemaining(4);
+
+            final int count = Math.min(length - written, buffer.remaining() / 4);
+            buffer.asIntBuffer().put(values, written, count);
+            buffer.position(buffer.position() + count * 4);
+            written += count;
+        }
+    }
+
+    /**
+     * Writes the first {@code length} values of the array, e.g. of an array with spare capacity.
+     */
+    public void writeBytes(final byte[] values, final int length) throws IOException {
+        Preconditions.checkArgument(length >= 0 && length <= values.length, "Wrong array length [%s]", length);
+        writeInt(length);
+
+        int written = 0;
+        while (written < length) {
+            ensureRemaining(1);
+
+            final int count = Math.min(length - written, buffer.remaining());
+            buffer.put(values, written, count);
+            written += count;
+        }
+    }
+
+    public void writeLongs(final long[] values) throws IOException {
+        writeInt(values.length);
+
+        int written = 0;
+        while (written < values.length) {
+            ensureRemaining(8);
+
+            final int count = Math.min(values.length - written, buffer.remaining() / 8);
+            buffer.asLongBuffer().put(values, written, count);
+            buffer.position(buffer.position() + count * 8);
+            written += count;
+        }
+    }
+
+    /**
+     * @return  position in the file the next value is written at
+     */
+    public long position() throws IOException {
+        return channel.position() + buffer.position();
+    }
+
+    /**
+     * Overwrites a long written before at the given position, e.g. the length of a section known after it is written.
+     */
+    public void writeLongAt(final long position, final long value) throws IOException {
+        flush();
+
+        final ByteBuffer bytes = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(0, value);
+        while (bytes.hasRemaining()) {
+            channel.write(bytes, position + bytes.position());
+        }
+    }
+
+    /**
+     * Writes the buffered values to the channel.
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+
+        buffer.clear();
+    }
+
+    private void ensureRemaining(final int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+}
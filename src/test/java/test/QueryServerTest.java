@@ -0,0 +1,207 @@
+package test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import test.domain.TownGraph;
+
+import test.logic.InputParser;
+import test.logic.VertexMapper;
+
+public class QueryServerTest {
+
+    private static final String EDGES = "AB5 BC4 CD8 DC8 DE6 AD5 CE2 EB3 AE7";
+
+    //J-
+    private static final String[] QUERIES = {
+        "P1 A B C", "P1 A D", "P1 A D C", "P1 A E B C D", "P1 A E D",
+        "P2 C C 3", "P3 A C 4", "P4 A C", "P4 B B", "P5 C C 30"
+    };
+
+    private static final String[] ANSWERS = {
+        "9", "5", "13", "22", "NO SUCH ROUTE", "2", "3", "9", "9", "7"
+    };
+    //J+
+
+    private static final int NUMBER_OF_CLIENTS = 8;
+
+    private QueryServer server;
+    private Thread serverThread;
+
+    private TownGraph townGraph;
+    private final VertexMapper mapper = new VertexMapper();
+
+    @Before
+    public void setUp() throws IOException {
+        final InputParser.Edges edges = new InputParser(Channels.newChannel(new ByteArrayInputStream(
+                        EDGES.getBytes(StandardCharsets.UTF_8)))).parseEdges(mapper);
+
+        townGraph = new TownGraph(edges.getFrom(), edges.getTo(), edges.getDistances(), mapper.numberOfVertexes());
+        start(new QueryServer(townGraph, mapper, 0, 4));
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        stop();
+    }
+
+    @Test(timeout = 10000)
+    public void testConcurrentClients() throws Exception {
+        final ExecutorService clients = Executors.newFixedThreadPool(NUMBER_OF_CLIENTS);
+        try {
+            final List<Future<List<String>>> futures = Lists.newArrayList();
+            for (int c = 0; c < NUMBER_OF_CLIENTS; c++) {
+                futures.add(clients.submit(new Callable<List<String>>() {
+                            @Override
+                            public List<String> call() throws IOException {
+                                return query(QUERIES);
+                            }
+                        }));
+            }
+
+            final List<String> expected = Lists.newArrayList();
+            for (int i = 0; i < ANSWERS.length; i++) {
+                expected.add(String.format("OUTPUT #%s: %s", i + 1, ANSWERS[i]));
+            }
+
+            for (Future<List<String>> future : futures) {
+                MatcherAssert.assertThat("answers in the order of the queries", future.get(), Matchers.is(expected));
+            }
+        } finally {
+            clients.shutdown();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testInvalidQuery() throws IOException {
+        final List<String> answers = query(new String[] {"P7 A B", "P4 A C"});
+
+        MatcherAssert.assertThat("number of answers", answers.size(), Matchers.is(2));
+        MatcherAssert.assertThat("error answer", answers.get(0), Matchers.startsWith("OUTPUT #1: ERROR: "));
+        MatcherAssert.assertThat("next answer", answers.get(1), Matchers.is("OUTPUT #2: 9"));
+    }
+
+    @Test(timeout = 10000)
+    public void testMoreQueriesThanOutstandingAnswers() throws IOException {
+        // short queries, so that a single read of the server takes more of them than may be outstanding
+        final String[] queries = new String[3 * QueryServer.MAX_OUTSTANDING_ANSWERS];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = i % 2 == 0 ? "P4 A C" : "P3 A C 4";
+        }
+
+        final List<String> answers = query(queries);
+
+        MatcherAssert.assertThat("number of answers", answers.size(), Matchers.is(queries.length));
+        for (int i = 0; i < queries.length; i++) {
+            MatcherAssert.assertThat("answer", answers.get(i),
+                Matchers.is(String.format("OUTPUT #%s: %s", i + 1, i % 2 == 0 ? "9" : "3")));
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testTooLongLineClosesConnection() throws IOException {
+        final char[] line = new char[QueryServer.MAX_LINE_LENGTH + 1];
+        Arrays.fill(line, 'A');
+
+        try {
+            MatcherAssert.assertThat("answers", query(new String[] {new String(line), "P4 A C"}),
+                Matchers.<String>empty());
+        } catch (SocketException e) {
+            // the connection is reset, the rest of the input is not read
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testFailedQueryIsAnswered() throws Exception {
+        stop();
+
+        //J-
+        start(new QueryServer(townGraph, mapper, 0, 4) {
+                @Override
+                String answer(final byte[] query) {
+                    if (new String(query, StandardCharsets.UTF_8).startsWith("P1")) {
+                        throw new AssertionError("Failed query");
+                    }
+
+                    return super.answer(query);
+                }
+            });
+        //J+
+
+        final List<String> answers = query(new String[] {"P1 A B", "P4 A C"});
+
+        MatcherAssert.assertThat("number of answers", answers.size(), Matchers.is(2));
+        MatcherAssert.assertThat("error answer", answers.get(0), Matchers.startsWith("OUTPUT #1: ERROR: "));
+        MatcherAssert.assertThat("next answer", answers.get(1), Matchers.is("OUTPUT #2: 9"));
+    }
+
+    private void start(final QueryServer queryServer) {
+        server = queryServer;
+        serverThread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            server.serve();
+                        } catch (IOException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                });
+        serverThread.start();
+    }
+
+    private void stop() throws InterruptedException {
+        server.close();
+        serverThread.join();
+    }
+
+    /**
+     * Sends the queries, closes the output and reads the answers until the server closes the connection.
+     */
+    private List<String> query(final String[] queries) throws IOException {
+        try(Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            final StringBuilder request = new StringBuilder();
+            for (String query : queries) {
+                request.append(query).append('\n');
+            }
+
+            final OutputStream out = socket.getOutputStream();
+            out.write(request.toString().getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            socket.shutdownOutput();
+
+            final BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                        StandardCharsets.UTF_8));
+            final List<String> answers = Lists.newArrayList();
+            String line;
+            while ((line = in.readLine()) != null) {
+                answers.add(line);
+            }
+
+            return answers;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package test.domain;
 
 import java.util.List;
+import java.util.Random;
 
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.Matchers;
@@ -104,6 +105,38 @@ public class TownGraphTest {
             Matchers.containsInAnyOrder(new TownGraphEdgeBuilder().from(0).to(1).distance(1).build()));
     }
 
+    @Test
+    public void testCompressedEdgesIndexes() {
+        TownGraph townGraph = new TownGraph(new int[] {0, 1, 1}, new int[] {2, 0, 2}, new int[] {1, 2, 3}, 3);
+
+        CompressedEdgeIndex toEdges = townGraph.getToEdgesIndex();
+        MatcherAssert.assertThat("Forward vertexes", toEdges.numberOfVertexes(), Matchers.is(3));
+        MatcherAssert.assertThat("Forward edges", toEdges.numberOfEdges(), Matchers.is(3));
+        MatcherAssert.assertThat("Out degree of 0 vertex", toEdges.degree(0), Matchers.is(1));
+        MatcherAssert.assertThat("Out degree of 1 vertex", toEdges.degree(1), Matchers.is(2));
+        MatcherAssert.assertThat("Out degree of 2 vertex", toEdges.degree(2), Matchers.is(0));
+        MatcherAssert.assertThat("First edge from 1 vertex target", toEdges.target(toEdges.begin(1)), Matchers.is(0));
+        MatcherAssert.assertThat("First edge from 1 vertex weight", toEdges.weight(toEdges.begin(1)), Matchers.is(2));
+
+        CompressedEdgeIndex fromEdges = townGraph.getFromEdgesIndex();
+        MatcherAssert.assertThat("In degree of 0 vertex", fromEdges.degree(0), Matchers.is(1));
+        MatcherAssert.assertThat("In degree of 2 vertex", fromEdges.degree(2), Matchers.is(2));
+        MatcherAssert.assertThat("Edge into 0 vertex source", fromEdges.target(fromEdges.begin(0)), Matchers.is(1));
+
+        //J-
+        MatcherAssert.assertThat("From edges to 2 vertex", townGraph.getFromEdges(2),
+                Matchers.contains(
+                        new TownGraphEdgeBuilder().from(0).to(2).distance(1).build(),
+                        new TownGraphEdgeBuilder().from(1).to(2).distance(3).build()
+                ));
+        //J+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonPositiveDistanceIsRejected() {
+        new TownGraph(new int[] {0}, new int[] {1}, new int[] {0}, 2);
+    }
+
     @Test
     public void testGetAdjacencyMatrix() {
         //J-
@@ -135,6 +168,56 @@ public class TownGraphTest {
 
     }
 
+    @Test
+    public void testDerivedViewsAreComputedOnce() {
+        TownGraph townGraph = new TownGraph(new int[] {0, 1}, new int[] {1, 0}, new int[] {1, 2}, 2);
+
+        MatcherAssert.assertThat("Same vertexes", townGraph.getVertexes(),
+            Matchers.sameInstance(townGraph.getVertexes()));
+        MatcherAssert.assertThat("Same connectivity matrix", townGraph.getConnectivityMatrix(),
+            Matchers.sameInstance(townGraph.getConnectivityMatrix()));
+        MatcherAssert.assertThat("Same adjacency matrix", townGraph.getAdjacencyMatrix(),
+            Matchers.sameInstance(townGraph.getAdjacencyMatrix()));
+        MatcherAssert.assertThat("Same edge distance index", townGraph.getEdgeWeightIndex(),
+            Matchers.sameInstance(townGraph.getEdgeWeightIndex()));
+    }
+
+    @Test
+    public void testEdgeWeightIndexMatchesAdjacencyMatrix() {
+        final int numOfVertexes = 40;
+        final int numOfEdges = 300;
+        final Random random = new Random(3);
+        final int[] from = new int[numOfEdges];
+        final int[] to = new int[numOfEdges];
+        final int[] distances = new int[numOfEdges];
+        for (int i = 0; i < numOfEdges; i++) {
+            from[i] = random.nextInt(numOfVertexes);
+            to[i] = random.nextInt(numOfVertexes);
+            distances[i] = 1 + random.nextInt(100);
+        }
+
+        TownGraph townGraph = new TownGraph(from, to, distances, numOfVertexes);
+        int[][] adjacencyMatrix = townGraph.getAdjacencyMatrix();
+        EdgeWeightIndex edgeWeightIndex = townGraph.getEdgeWeightIndex();
+
+        for (int i = 0; i < adjacencyMatrix.length; i++) {
+            for (int j = 0; j < adjacencyMatrix.length; j++) {
+                MatcherAssert.assertThat("Edge " + i + " -> " + j, edgeWeightIndex.weight(i, j),
+                    Matchers.is(adjacencyMatrix[i][j]));
+            }
+        }
+
+        MatcherAssert.assertThat("Missing vertex", edgeWeightIndex.weight(numOfVertexes, 0),
+            Matchers.is(EdgeWeightIndex.NO_EDGE));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testVertexesAreReadOnly() {
+        TownGraph townGraph = new TownGraph(new int[] {0}, new int[] {1}, new int[] {1}, 2);
+
+        townGraph.getVertexes().add(2);
+    }
+
     private List<Pair> getCells(final long[][] matrix, final int value) {
         final List<Pair> result = Lists.newArrayList();
         for (int i = 0; i < matrix.length; i++) {
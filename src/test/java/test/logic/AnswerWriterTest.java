@@ -0,0 +1,56 @@
+package test.logic;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+
+import org.junit.Test;
+
+import test.logic.algorithms.AlgorithmExecutor;
+
+public class AnswerWriterTest {
+
+    //J-
+    private static final String[] ANSWERS = {
+        "9", AlgorithmExecutor.NO_ROUTE_FOUND, "145282683", "", "distance \u00e9", "500000000000"
+    };
+    //J+
+
+    @Test
+    public void testSameBytesAsPrintln() throws IOException {
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        final PrintStream printStream = new PrintStream(expected);
+
+        final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+
+        // tiny buffer, so the lines cross the buffer boundaries
+        final AnswerWriter writer = new AnswerWriter(Channels.newChannel(actual), 32);
+        for (int i = 0; i < 1200; i++) {
+            final String answer = ANSWERS[i % ANSWERS.length];
+            printStream.println(String.format("OUTPUT #%s: %s", i + 1, answer));
+            writer.accept(i, answer);
+        }
+
+        writer.flush();
+        printStream.flush();
+
+        MatcherAssert.assertThat("output", actual.toByteArray(), Matchers.is(expected.toByteArray()));
+    }
+
+    @Test
+    public void testNothingWrittenBeforeFlush() throws IOException {
+        final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        final AnswerWriter writer = new AnswerWriter(Channels.newChannel(actual));
+        writer.accept(0, "9");
+
+        MatcherAssert.assertThat("buffered output", actual.size(), Matchers.is(0));
+
+        writer.flush();
+        MatcherAssert.assertThat("flushed output", actual.toString(),
+            Matchers.is("OUTPUT #1: 9" + System.lineSeparator()));
+    }
+}
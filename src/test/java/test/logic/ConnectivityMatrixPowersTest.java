@@ -0,0 +1,87 @@
+package test.logic;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+
+import org.junit.Test;
+
+import test.domain.TownGraph;
+
+import test.logic.utils.ConnectivityMatrixPowers;
+import test.logic.utils.MatrixUtils;
+
+public class ConnectivityMatrixPowersTest {
+
+    private static final int MAX_POWER = 13;
+
+    //J-
+    private final TownGraph townGraph = new TownGraph(
+            new int[] {0, 1, 1, 2, 2, 3},
+            new int[] {1, 2, 3, 0, 3, 0},
+            new int[] {1, 1, 1, 1, 1, 1},
+            4);
+    //J+
+
+    @Test
+    public void testPowersAndSums() {
+        final ConnectivityMatrixPowers powers = ConnectivityMatrixPowers.of(townGraph);
+
+        long[][] expectedPower = MatrixUtils.identityMatrix(4, 4);
+        long[][] expectedSum = new long[4][4];
+        for (int n = 1; n <= MAX_POWER; n++) {
+            expectedPower = MatrixUtils.multiplyMatrices(expectedPower, townGraph.getConnectivityMatrix());
+            for (int i = 0; i < 4; i++) {
+                for (int j = 0; j < 4; j++) {
+                    expectedSum[i][j] += expectedPower[i][j];
+                }
+            }
+
+            MatcherAssert.assertThat("power " + n, powers.power(n), Matchers.is(expectedPower));
+            MatcherAssert.assertThat("sum " + n, powers.sumOfPowers(n), Matchers.is(expectedSum));
+        }
+    }
+
+    @Test
+    public void testCacheIsSharedPerGraph() {
+        final ConnectivityMatrixPowers powers = ConnectivityMatrixPowers.of(townGraph);
+
+        MatcherAssert.assertThat("power is not cached", powers.isPowerCached(11), Matchers.is(false));
+        powers.power(11);
+
+        MatcherAssert.assertThat("same cache", ConnectivityMatrixPowers.of(townGraph), Matchers.sameInstance(powers));
+        MatcherAssert.assertThat("power is cached", powers.isPowerCached(11), Matchers.is(true));
+        MatcherAssert.assertThat("binary power is cached", powers.isPowerCached(8), Matchers.is(true));
+        MatcherAssert.assertThat("same power", powers.power(11), Matchers.sameInstance(powers.power(11)));
+    }
+
+    @Test
+    public void testMatrixAboveSegmentShareIsCached() {
+        final int numberOfVertexes = 2100;
+        final int[] from = new int[numberOfVertexes];
+        final int[] to = new int[numberOfVertexes];
+        final int[] distances = new int[numberOfVertexes];
+        for (int vertex = 0; vertex < numberOfVertexes; vertex++) {
+            from[vertex] = vertex;
+            to[vertex] = (vertex + 1) % numberOfVertexes;
+            distances[vertex] = 1;
+        }
+
+        final ConnectivityMatrixPowers powers = ConnectivityMatrixPowers.of(new TownGraph(from, to, distances,
+                    numberOfVertexes));
+        powers.power(1);
+        powers.sumOfPowers(1);
+
+        MatcherAssert.assertThat("power is cached", powers.isPowerCached(1), Matchers.is(true));
+        MatcherAssert.assertThat("sum is cached", powers.isSumOfPowersCached(1), Matchers.is(true));
+    }
+
+    @Test
+    public void testCostOfHugeGraphs() {
+        MatcherAssert.assertThat("cost", ConnectivityMatrixPowers.multiplicationsCost(1000, 2),
+            Matchers.is(2000000000L));
+        MatcherAssert.assertThat("saturated cost", ConnectivityMatrixPowers.multiplicationsCost(1 << 21, 6),
+            Matchers.is(Long.MAX_VALUE));
+        MatcherAssert.assertThat("small matrices", ConnectivityMatrixPowers.fitsInMemory(4), Matchers.is(true));
+        MatcherAssert.assertThat("huge matrices", ConnectivityMatrixPowers.fitsInMemory(1 << 21), Matchers.is(false));
+    }
+}
@@ -0,0 +1,168 @@
+package test.logic;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import org.junit.rules.TemporaryFolder;
+
+public class EdgeFileLoaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testChunksGiveSameEdgesAsSequentialParser() throws IOException {
+        final Random random = new Random(5);
+        final StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            content.append((char) ('A' + random.nextInt(26))).append((char) ('A' + random.nextInt(26)))
+                   .append(random.nextInt(100000));
+            content.append(random.nextInt(10) == 0 ? "\r\n" : random.nextBoolean() ? " " : "\n  ");
+        }
+
+        final VertexMapper expectedMapper = new VertexMapper();
+        final InputParser.Edges expected = new InputParser(Channels.newChannel(
+                    new ByteArrayInputStream(content.toString().replaceAll("\\s+", " ").trim().getBytes(
+                            StandardCharsets.US_ASCII)))).parseEdges(expectedMapper);
+
+        final Path path = write(content.toString());
+        for (int chunkSize = 1; chunkSize <= 9; chunkSize++) {
+            final VertexMapper mapper = new VertexMapper();
+            final InputParser.Edges edges = EdgeFileLoader.load(path, mapper, chunkSize);
+
+            MatcherAssert.assertThat("from " + chunkSize, edges.getFrom(), Matchers.is(expected.getFrom()));
+            MatcherAssert.assertThat("to " + chunkSize, edges.getTo(), Matchers.is(expected.getTo()));
+            MatcherAssert.assertThat("distances " + chunkSize, edges.getDistances(),
+                Matchers.is(expected.getDistances()));
+            MatcherAssert.assertThat("vertexes " + chunkSize, mapper.numberOfVertexes(),
+                Matchers.is(expectedMapper.numberOfVertexes()));
+            for (int id = 0; id < mapper.numberOfVertexes(); id++) {
+                MatcherAssert.assertThat("vertex " + id, mapper.character(id),
+                    Matchers.is(expectedMapper.character(id)));
+            }
+        }
+
+        final InputParser.Edges edges = EdgeFileLoader.load(path, new VertexMapper());
+        MatcherAssert.assertThat("default chunk", edges.getDistances(), Matchers.is(expected.getDistances()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongDistance() throws IOException {
+        EdgeFileLoader.load(write("AB5 BC4x CD8\n"), new VertexMapper(), 4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingDistance() throws IOException {
+        EdgeFileLoader.load(write("AB5\nBC\n"), new VertexMapper(), 3);
+    }
+
+    @Test
+    public void testNonAsciiVertexesAsInSequentialParser() throws IOException {
+
+        // more distinct vertexes than byte values, encoded by one to three bytes
+        final Random random = new Random(9);
+        final char[] alphabet = new char[600];
+        for (int i = 0; i < alphabet.length; i++) {
+            alphabet[i] = (char) (i < 26 ? 'A' + i : i < 90 ? '\u00c0' + i : '\u4e00' + i);
+        }
+
+        final StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            content.append(alphabet[random.nextInt(alphabet.length)]).append(alphabet[random.nextInt(alphabet.length)])
+                   .append(1 + random.nextInt(1000)).append(random.nextBoolean() ? " " : "\n");
+        }
+
+        final VertexMapper expectedMapper = new VertexMapper();
+        final InputParser.Edges expected = new InputParser(Channels.newChannel(
+                    new ByteArrayInputStream(content.toString().replace('\n', ' ').getBytes(StandardCharsets.UTF_8))))
+            .parseEdges(expectedMapper);
+
+        final Path path = folder.newFile().toPath();
+        Files.write(path, content.toString().getBytes(StandardCharsets.UTF_8));
+        for (int chunkSize : new int[] {1, 2, 5, 64, 4096}) {
+            final VertexMapper mapper = new VertexMapper();
+            final InputParser.Edges edges = EdgeFileLoader.load(path, mapper, chunkSize);
+
+            MatcherAssert.assertThat("from " + chunkSize, edges.getFrom(), Matchers.is(expected.getFrom()));
+            MatcherAssert.assertThat("to " + chunkSize, edges.getTo(), Matchers.is(expected.getTo()));
+            MatcherAssert.assertThat("vertexes " + chunkSize, mapper.numberOfVertexes(),
+                Matchers.is(expectedMapper.numberOfVertexes()));
+            for (int id = 0; id < mapper.numberOfVertexes(); id++) {
+                MatcherAssert.assertThat("vertex " + id, mapper.character(id),
+                    Matchers.is(expectedMapper.character(id)));
+            }
+        }
+    }
+
+    @Test
+    public void testNamedEdgesAsInSequentialParser() throws IOException {
+
+        // the names of one to three bytes per character, a numeric one included
+        final String[] names = {"Paris", "Lyon", "N\u00eemes", "\u6771\u4eac", "13", "A", "Saint-\u00c9tienne"};
+        final Random random = new Random(11);
+        final StringBuilder content = new StringBuilder("Paris Lyon 465\n");
+        for (int i = 0; i < 500; i++) {
+            content.append(names[random.nextInt(names.length)]).append(random.nextBoolean() ? " " : "\n")
+                   .append(names[random.nextInt(names.length)]).append(random.nextBoolean() ? "\t" : " \r\n ")
+                   .append(1 + random.nextInt(1000)).append(random.nextBoolean() ? " " : "\n");
+        }
+
+        final VertexMapper expectedMapper = new VertexMapper();
+        final InputParser.Edges expected = new InputParser(Channels.newChannel(
+                    new ByteArrayInputStream(content.toString().replaceAll("\\s+", " ").getBytes(
+                            StandardCharsets.UTF_8)))).parseEdges(expectedMapper);
+
+        final Path path = folder.newFile().toPath();
+        Files.write(path, content.toString().getBytes(StandardCharsets.UTF_8));
+        for (int chunkSize : new int[] {1, 2, 3, 5, 7, 64, 4096}) {
+            final VertexMapper mapper = new VertexMapper();
+            final InputParser.Edges edges = EdgeFileLoader.load(path, mapper, chunkSize);
+
+            MatcherAssert.assertThat("from " + chunkSize, edges.getFrom(), Matchers.is(expected.getFrom()));
+            MatcherAssert.assertThat("to " + chunkSize, edges.getTo(), Matchers.is(expected.getTo()));
+            MatcherAssert.assertThat("distances " + chunkSize, edges.getDistances(),
+                Matchers.is(expected.getDistances()));
+            MatcherAssert.assertThat("vertexes " + chunkSize, mapper.numberOfVertexes(),
+                Matchers.is(expectedMapper.numberOfVertexes()));
+            for (int id = 0; id < mapper.numberOfVertexes(); id++) {
+                MatcherAssert.assertThat("vertex " + id, mapper.name(id), Matchers.is(expectedMapper.name(id)));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIncompleteNamedEdge() throws IOException {
+        EdgeFileLoader.load(write("Paris Lyon 465\nLyon Nice\n"), new VertexMapper(), 4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformedVertex() throws IOException {
+        final Path path = folder.newFile().toPath();
+        Files.write(path, new byte[] {'A', 'B', '5', ' ', 'A', (byte) 0xC3, '5', '\n'});
+
+        EdgeFileLoader.load(path, new VertexMapper(), 4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingEdges() throws IOException {
+        EdgeFileLoader.load(write(" \n"), new VertexMapper());
+    }
+
+    private Path write(final String content) throws IOException {
+        final Path path = folder.newFile().toPath();
+        Files.write(path, content.getBytes(StandardCharsets.US_ASCII));
+
+        return path;
+    }
+}
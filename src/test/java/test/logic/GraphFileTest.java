@@ -0,0 +1,150 @@
+package test.logic;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import org.junit.rules.TemporaryFolder;
+
+import test.domain.CompressedEdgeIndex;
+import test.domain.TownGraph;
+
+import test.logic.algorithms.P4FindShortestDistanceAlgorithm;
+import test.logic.algorithms.P5FindNumberOfRoutesWithDistanceAlgorithm;
+
+public class GraphFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testMappedGraphEqualsWrittenGraph() throws IOException {
+        final Random random = new Random(7);
+        final StringBuilder edges = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            edges.append((char) ('A' + random.nextInt(26))).append((char) ('a' + random.nextInt(25)))
+                 .append(1 + random.nextInt(1000)).append(' ');
+        }
+
+        final VertexMapper mapper = new VertexMapper();
+        final InputParser.Edges parsed = new InputParser(Channels.newChannel(new ByteArrayInputStream(
+                        edges.toString().getBytes(StandardCharsets.US_ASCII)))).parseEdges(mapper);
+        final TownGraph townGraph = new TownGraph(parsed.getFrom(), parsed.getTo(), parsed.getDistances(),
+                mapper.numberOfVertexes());
+
+        final Path path = folder.newFile("graph.bin").toPath();
+        GraphFile.write(path, townGraph, mapper);
+
+        MatcherAssert.assertThat("graph file", GraphFile.isGraphFile(path), Matchers.is(true));
+
+        final VertexMapper mappedMapper = new VertexMapper();
+        final TownGraph mappedGraph = GraphFile.map(path, mappedMapper);
+
+        MatcherAssert.assertThat("number of vertexes", mappedMapper.numberOfVertexes(),
+            Matchers.is(mapper.numberOfVertexes()));
+        for (int vertex = 0; vertex < mapper.numberOfVertexes(); vertex++) {
+            MatcherAssert.assertThat("character of " + vertex, mappedMapper.character(vertex),
+                Matchers.is(mapper.character(vertex)));
+        }
+
+        assertSameIndex("forward", mappedGraph.getToEdgesIndex(), townGraph.getToEdgesIndex());
+        assertSameIndex("reverse", mappedGraph.getFromEdgesIndex(), townGraph.getFromEdgesIndex());
+
+        final P4FindShortestDistanceAlgorithm p4 = new P4FindShortestDistanceAlgorithm();
+        final P5FindNumberOfRoutesWithDistanceAlgorithm p5 = new P5FindNumberOfRoutesWithDistanceAlgorithm();
+        for (int i = 0; i < 50; i++) {
+            final int from = random.nextInt(mapper.numberOfVertexes());
+            final int to = random.nextInt(mapper.numberOfVertexes());
+
+            MatcherAssert.assertThat("shortest distance", p4.algorithm(mappedGraph, from, to),
+                Matchers.is(p4.algorithm(townGraph, from, to)));
+            MatcherAssert.assertThat("routes with distance", p5.algorithm(mappedGraph, from, to, 2000),
+                Matchers.is(p5.algorithm(townGraph, from, to, 2000)));
+        }
+    }
+
+    @Test
+    public void testNamedVertexesBeyondCharacterRange() throws IOException {
+
+        // more vertexes than chars, named by strings of different lengths
+        final int numberOfVertexes = 70000;
+        final VertexMapper mapper = new VertexMapper();
+        final int[] from = new int[numberOfVertexes];
+        final int[] to = new int[numberOfVertexes];
+        final int[] distances = new int[numberOfVertexes];
+        for (int i = 0; i < numberOfVertexes; i++) {
+            from[i] = mapper.mapNameToId("town\u00e9" + i);
+            to[i] = (i + 1) % numberOfVertexes;
+            distances[i] = 1 + i % 7;
+        }
+
+        final TownGraph townGraph = new TownGraph(from, to, distances, numberOfVertexes);
+
+        final Path path = folder.newFile("graph.bin").toPath();
+        GraphFile.write(path, townGraph, mapper);
+
+        final VertexMapper mappedMapper = new VertexMapper();
+        final TownGraph mappedGraph = GraphFile.map(path, mappedMapper);
+
+        MatcherAssert.assertThat("number of vertexes", mappedMapper.numberOfVertexes(), Matchers.is(numberOfVertexes));
+        for (int vertex = 0; vertex < numberOfVertexes; vertex += 997) {
+            MatcherAssert.assertThat("name of " + vertex, mappedMapper.name(vertex), Matchers.is(mapper.name(vertex)));
+            MatcherAssert.assertThat("id of " + vertex, mappedMapper.id("town\u00e9" + vertex), Matchers.is(vertex));
+        }
+
+        MatcherAssert.assertThat("new vertex", mappedMapper.mapNameToId("X"), Matchers.is(numberOfVertexes));
+        assertSameIndex("forward", mappedGraph.getToEdgesIndex(), townGraph.getToEdgesIndex());
+    }
+
+    @Test
+    public void testTextFileIsNotGraphFile() throws IOException {
+        final Path path = folder.newFile("graph.txt").toPath();
+        Files.write(path, "AB5 BC4 CD8 DC8 DE6 AD5 CE2 EB3 AE7\n".getBytes(StandardCharsets.US_ASCII));
+
+        MatcherAssert.assertThat("graph file", GraphFile.isGraphFile(path), Matchers.is(false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTruncatedFile() throws IOException {
+        final VertexMapper mapper = new VertexMapper();
+        final InputParser.Edges parsed = new InputParser(Channels.newChannel(new ByteArrayInputStream(
+                        "AB5 BC4 CD8".getBytes(StandardCharsets.US_ASCII)))).parseEdges(mapper);
+
+        final Path path = folder.newFile("graph.bin").toPath();
+        GraphFile.write(path,
+            new TownGraph(parsed.getFrom(), parsed.getTo(), parsed.getDistances(), mapper.numberOfVertexes()), mapper);
+
+        final byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 4));
+
+        GraphFile.map(path, new VertexMapper());
+    }
+
+    private static void assertSameIndex(final String label, final CompressedEdgeIndex actual,
+            final CompressedEdgeIndex expected) {
+        MatcherAssert.assertThat(label + " vertexes", actual.numberOfVertexes(),
+            Matchers.is(expected.numberOfVertexes()));
+        MatcherAssert.assertThat(label + " edges", actual.numberOfEdges(), Matchers.is(expected.numberOfEdges()));
+
+        for (int vertex = 0; vertex < expected.numberOfVertexes(); vertex++) {
+            MatcherAssert.assertThat(label + " begin", actual.begin(vertex), Matchers.is(expected.begin(vertex)));
+            MatcherAssert.assertThat(label + " end", actual.end(vertex), Matchers.is(expected.end(vertex)));
+        }
+
+        for (int i = 0; i < expected.numberOfEdges(); i++) {
+            MatcherAssert.assertThat(label + " target", actual.target(i), Matchers.is(expected.target(i)));
+            MatcherAssert.assertThat(label + " weight", actual.weight(i), Matchers.is(expected.weight(i)));
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package test.logic;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import org.junit.rules.TemporaryFolder;
+
+import test.domain.TownGraph;
+
+import test.logic.utils.AllPairsShortestDistances;
+import test.logic.utils.ConnectivityMatrixPowers;
+import test.logic.utils.ContractionHierarchy;
+import test.logic.utils.LandmarkDistances;
+import test.logic.utils.SnapshotReader;
+import test.logic.utils.SnapshotWriter;
+
+public class GraphSnapshotTest {
+
+    private static final int NUMBER_OF_VERTEXES = 20;
+    private static final int NUMBER_OF_EDGES = 60;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Random random = new Random(11);
+    private final VertexMapper mapper = new VertexMapper();
+    private final int[] from = new int[NUMBER_OF_EDGES];
+    private final int[] to = new int[NUMBER_OF_EDGES];
+    private final int[] distances = new int[NUMBER_OF_EDGES];
+
+    {
+        for (int vertex = 0; vertex < NUMBER_OF_VERTEXES; vertex++) {
+            mapper.mapCharacterToId((char) ('A' + vertex));
+        }
+
+        for (int i = 0; i < NUMBER_OF_EDGES; i++) {
+            from[i] = random.nextInt(NUMBER_OF_VERTEXES);
+            to[i] = random.nextInt(NUMBER_OF_VERTEXES);
+            distances[i] = 1 + random.nextInt(20);
+        }
+    }
+
+    @Test
+    public void testRestoreIndexesOfSameGraph() throws IOException {
+        final Path directory = folder.getRoot().toPath();
+
+        final TownGraph townGraph = graph(distances);
+        final AllPairsShortestDistances allPairs = AllPairsShortestDistances.of(townGraph);
+        final LandmarkDistances landmarks = LandmarkDistances.of(townGraph);
+        final ContractionHierarchy hierarchy = ContractionHierarchy.of(townGraph);
+        final long[][] power = ConnectivityMatrixPowers.of(townGraph).power(5);
+        final long[][] sum = ConnectivityMatrixPowers.of(townGraph).sumOfPowers(3);
+
+        MatcherAssert.assertThat("saved", GraphSnapshot.save(directory, townGraph, mapper), Matchers.is(true));
+        MatcherAssert.assertThat("saved again", GraphSnapshot.save(directory, townGraph, mapper), Matchers.is(false));
+
+        final TownGraph restartedGraph = graph(distances);
+        MatcherAssert.assertThat("restored indexes", GraphSnapshot.restore(directory, restartedGraph, mapper),
+            Matchers.is(4));
+
+        final ConnectivityMatrixPowers powers = ConnectivityMatrixPowers.of(restartedGraph);
+        MatcherAssert.assertThat("power cached", powers.isPowerCached(5), Matchers.is(true));
+        MatcherAssert.assertThat("sum cached", powers.isSumOfPowersCached(3), Matchers.is(true));
+        MatcherAssert.assertThat("power", powers.power(5), Matchers.is(power));
+        MatcherAssert.assertThat("sum", powers.sumOfPowers(3), Matchers.is(sum));
+
+        for (int f = 0; f < NUMBER_OF_VERTEXES; f++) {
+            for (int t = 0; t < NUMBER_OF_VERTEXES; t++) {
+                MatcherAssert.assertThat("all pairs", AllPairsShortestDistances.of(restartedGraph).distance(f, t),
+                    Matchers.is(allPairs.distance(f, t)));
+                MatcherAssert.assertThat("landmarks", LandmarkDistances.of(restartedGraph).shortestDistance(f, t),
+                    Matchers.is(landmarks.shortestDistance(f, t)));
+                MatcherAssert.assertThat("hierarchy", ContractionHierarchy.of(restartedGraph).shortestDistance(f, t),
+                    Matchers.is(hierarchy.shortestDistance(f, t)));
+            }
+        }
+    }
+
+    @Test
+    public void testChangedGraphStartsFromScratch() throws IOException {
+        final Path directory = folder.getRoot().toPath();
+
+        final TownGraph townGraph = graph(distances);
+        AllPairsShortestDistances.of(townGraph);
+        GraphSnapshot.save(directory, townGraph, mapper);
+
+        final int[] changedDistances = Arrays.copyOf(distances, distances.length);
+        changedDistances[0]++;
+
+        final TownGraph changedGraph = graph(changedDistances);
+        MatcherAssert.assertThat("content hash", GraphSnapshot.contentHash(changedGraph, mapper),
+            Matchers.not(GraphSnapshot.contentHash(townGraph, mapper)));
+        MatcherAssert.assertThat("restored indexes", GraphSnapshot.restore(directory, changedGraph, mapper),
+            Matchers.is(0));
+    }
+
+    @Test
+    public void testDamagedSnapshotIsIgnored() throws IOException {
+        final Path directory = folder.getRoot().toPath();
+
+        final TownGraph townGraph = graph(distances);
+        AllPairsShortestDistances.of(townGraph);
+        GraphSnapshot.save(directory, townGraph, mapper);
+
+        final Path path = GraphSnapshot.path(directory, GraphSnapshot.contentHash(townGraph, mapper));
+        final byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 16));
+
+        final TownGraph restartedGraph = graph(distances);
+        MatcherAssert.assertThat("restored indexes", GraphSnapshot.restore(directory, restartedGraph, mapper),
+            Matchers.is(0));
+        MatcherAssert.assertThat("rewritten", GraphSnapshot.save(directory, townGraph, mapper), Matchers.is(true));
+    }
+
+    @Test
+    public void testVertexNamesAreCompared() throws IOException {
+        final Path directory = folder.getRoot().toPath();
+
+        final VertexMapper namedMapper = new VertexMapper();
+        final VertexMapper renamedMapper = new VertexMapper();
+        for (int vertex = 0; vertex < NUMBER_OF_VERTEXES; vertex++) {
+            namedMapper.mapNameToId("town-" + vertex);
+            renamedMapper.mapNameToId(vertex == 0 ? "town-0x" : "town-" + vertex);
+        }
+
+        final TownGraph townGraph = graph(distances);
+        AllPairsShortestDistances.of(townGraph);
+        MatcherAssert.assertThat("saved", GraphSnapshot.save(directory, townGraph, namedMapper), Matchers.is(true));
+
+        MatcherAssert.assertThat("same names", GraphSnapshot.restore(directory, graph(distances), namedMapper),
+            Matchers.is(1));
+        MatcherAssert.assertThat("other names", GraphSnapshot.restore(directory, graph(distances), renamedMapper),
+            Matchers.is(0));
+    }
+
+    @Test
+    public void testMatrixAboveSegmentShareIsRestored() throws IOException {
+        final Path directory = folder.getRoot().toPath();
+
+        // a ring, so that a single matrix is above the share of a cache segment
+        final int numberOfVertexes = 2100;
+        final VertexMapper ringMapper = new VertexMapper();
+        final int[] ringFrom = new int[numberOfVertexes];
+        final int[] ringTo = new int[numberOfVertexes];
+        final int[] ringDistances = new int[numberOfVertexes];
+        for (int vertex = 0; vertex < numberOfVertexes; vertex++) {
+            ringMapper.mapNameToId("town-" + vertex);
+            ringFrom[vertex] = vertex;
+            ringTo[vertex] = (vertex + 1) % numberOfVertexes;
+            ringDistances[vertex] = 1;
+        }
+
+        final TownGraph townGraph = new TownGraph(ringFrom, ringTo, ringDistances, numberOfVertexes);
+        ConnectivityMatrixPowers.of(townGraph).power(1);
+        MatcherAssert.assertThat("saved", GraphSnapshot.save(directory, townGraph, ringMapper), Matchers.is(true));
+
+        final TownGraph restartedGraph = new TownGraph(ringFrom, ringTo, ringDistances, numberOfVertexes);
+        MatcherAssert.assertThat("restored indexes", GraphSnapshot.restore(directory, restartedGraph, ringMapper),
+            Matchers.is(1));
+        MatcherAssert.assertThat("power cached", ConnectivityMatrixPowers.of(restartedGraph).isPowerCached(1),
+            Matchers.is(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testHierarchyWithDecreasingOffsetsIsRejected() throws IOException {
+        final int[] offsets = new int[NUMBER_OF_VERTEXES + 1];
+        offsets[1] = 2;
+        offsets[NUMBER_OF_VERTEXES] = 1;
+
+        readHierarchy(offsets, new int[] {1});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testHierarchyWithWrongTargetIsRejected() throws IOException {
+        final int[] offsets = new int[NUMBER_OF_VERTEXES + 1];
+        offsets[NUMBER_OF_VERTEXES] = 1;
+
+        readHierarchy(offsets, new int[] {NUMBER_OF_VERTEXES});
+    }
+
+    /**
+     * Reads the hierarchy of the given upward edges and no downward edges.
+     */
+    private void readHierarchy(final int[] offsets, final int[] targets) throws IOException {
+        final Path path = folder.newFile().toPath();
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            final SnapshotWriter out = new SnapshotWriter(channel);
+            out.writeInts(offsets);
+            out.writeInts(targets);
+            out.writeLongs(new long[targets.length]);
+            out.writeInts(new int[NUMBER_OF_VERTEXES + 1]);
+            out.writeInts(new int[0]);
+            out.writeLongs(new long[0]);
+            out.flush();
+        }
+
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ContractionHierarchy.readFrom(new SnapshotReader(channel), graph(distances));
+        }
+    }
+
+    private TownGraph graph(final int[] edgeDistances) {
+        return new TownGraph(from, to, edgeDistances, NUMBER_OF_VERTEXES);
+    }
+}
@@ -0,0 +1,66 @@
+package test.logic;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+
+import org.junit.Test;
+
+import test.logic.utils.IndexedDaryHeap;
+
+public class IndexedDaryHeapTest {
+
+    private static final int CAPACITY = 500;
+
+    @Test
+    public void testPollsInKeyOrderAfterDecreases() {
+        final Random random = new Random(3);
+        final IndexedDaryHeap heap = new IndexedDaryHeap(CAPACITY, 3);
+        final long[] keys = new long[CAPACITY];
+
+        for (int vertex = 0; vertex < CAPACITY; vertex++) {
+            keys[vertex] = 1000 + random.nextInt(100000);
+            heap.insertOrDecrease(vertex, keys[vertex]);
+        }
+
+        for (int i = 0; i < CAPACITY; i++) {
+            final int vertex = random.nextInt(CAPACITY);
+            final long key = random.nextInt(100000);
+            final boolean decreased = heap.insertOrDecrease(vertex, key);
+
+            MatcherAssert.assertThat("decreased", decreased, Matchers.is(key < keys[vertex]));
+            keys[vertex] = Math.min(keys[vertex], key);
+        }
+
+        final long[] polled = new long[CAPACITY];
+        for (int i = 0; i < CAPACITY; i++) {
+            final long key = heap.peekKey();
+            final int vertex = heap.poll();
+
+            MatcherAssert.assertThat("key of polled vertex", keys[vertex], Matchers.is(key));
+            MatcherAssert.assertThat("polled vertex is removed", heap.contains(vertex), Matchers.is(false));
+            polled[i] = key;
+        }
+
+        Arrays.sort(keys);
+        MatcherAssert.assertThat("keys in ascending order", polled, Matchers.is(keys));
+        MatcherAssert.assertThat("heap is empty", heap.isEmpty(), Matchers.is(true));
+    }
+
+    @Test
+    public void testClear() {
+        final IndexedDaryHeap heap = new IndexedDaryHeap(3);
+        heap.insertOrDecrease(0, 5);
+        heap.insertOrDecrease(2, 1);
+
+        heap.clear();
+
+        MatcherAssert.assertThat("heap is empty", heap.isEmpty(), Matchers.is(true));
+        MatcherAssert.assertThat("vertex is removed", heap.contains(2), Matchers.is(false));
+
+        heap.insertOrDecrease(2, 7);
+        MatcherAssert.assertThat("vertex is inserted again", heap.poll(), Matchers.is(2));
+    }
+}
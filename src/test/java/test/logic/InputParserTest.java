@@ -0,0 +1,154 @@
+package test.logic;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+
+import org.junit.Test;
+
+import test.domain.INPUT_PROBLEM;
+
+import test.logic.algorithms.ParsedQuery;
+
+public class InputParserTest {
+
+    private static final String INPUT = "AB5 BC4  CD8\tDC8 DE6 AD5 CE2 EB3 AE7123\r\n" //
+            + "4\n" //
+            + "P1 A E B C D\n" //
+            + "\n" //
+            + "P3 A C 4\r\n" //
+            + "P4 A C\n" //
+            + "P5 C C 3000000000";
+
+    @Test
+    public void testParseInput() throws IOException {
+
+        // tiny buffer, so the tokens cross the buffer boundaries
+        final InputParser parser = new InputParser(Channels.newChannel(new ByteArrayInputStream(
+                        INPUT.getBytes(StandardCharsets.US_ASCII))), 3);
+        final VertexMapper mapper = new VertexMapper();
+
+        final InputParser.Edges edges = parser.parseEdges(mapper);
+        MatcherAssert.assertThat("number of edges", edges.numberOfEdges(), Matchers.is(9));
+        MatcherAssert.assertThat("from", edges.getFrom(), Matchers.is(new int[] {0, 1, 2, 3, 3, 0, 2, 4, 0}));
+        MatcherAssert.assertThat("to", edges.getTo(), Matchers.is(new int[] {1, 2, 3, 2, 4, 3, 4, 1, 4}));
+        MatcherAssert.assertThat("distances", edges.getDistances(),
+            Matchers.is(new int[] {5, 4, 8, 8, 6, 5, 2, 3, 7123}));
+        MatcherAssert.assertThat("number of vertexes", mapper.numberOfVertexes(), Matchers.is(5));
+
+        MatcherAssert.assertThat("number of queries", parser.parseNumberLine(), Matchers.is(4L));
+
+        final InputParser.Query query = new InputParser.Query();
+        MatcherAssert.assertThat("P1 parsed", parser.parseQuery(query), Matchers.is(true));
+        MatcherAssert.assertThat("P1 problem", query.getProblem(), Matchers.is(INPUT_PROBLEM.P1));
+        MatcherAssert.assertThat("P1 vertexes", query.numberOfVertexes(), Matchers.is(5));
+        MatcherAssert.assertThat("P1 last vertex", query.vertex(4).toString(), Matchers.is("D"));
+        MatcherAssert.assertThat("P1 number", query.hasNumber(), Matchers.is(false));
+        MatcherAssert.assertThat("P1 first vertex", query.vertex(0).toString(), Matchers.is("A"));
+        MatcherAssert.assertThat("P1 second vertex", query.vertex(1).toString(), Matchers.is("E"));
+
+        MatcherAssert.assertThat("P3 parsed", parser.parseQuery(query), Matchers.is(true));
+        MatcherAssert.assertThat("P3 number", query.getNumber(), Matchers.is(4L));
+        MatcherAssert.assertThat("P3 problem", query.getProblem(), Matchers.is(INPUT_PROBLEM.P3));
+        MatcherAssert.assertThat("P3 vertexes", query.numberOfVertexes(), Matchers.is(2));
+        MatcherAssert.assertThat("P3 start", query.vertex(0).toString(), Matchers.is("A"));
+        MatcherAssert.assertThat("P3 finish", query.vertex(1).toString(), Matchers.is("C"));
+
+        MatcherAssert.assertThat("P4 parsed", parser.parseQuery(query), Matchers.is(true));
+        MatcherAssert.assertThat("P4 problem", query.getProblem(), Matchers.is(INPUT_PROBLEM.P4));
+        MatcherAssert.assertThat("P4 vertexes", query.numberOfVertexes(), Matchers.is(2));
+        MatcherAssert.assertThat("P4 start", query.vertex(0).toString(), Matchers.is("A"));
+        MatcherAssert.assertThat("P4 finish", query.vertex(1).toString(), Matchers.is("C"));
+        MatcherAssert.assertThat("P4 number", query.hasNumber(), Matchers.is(false));
+
+        MatcherAssert.assertThat("P5 parsed", parser.parseQuery(query), Matchers.is(true));
+        MatcherAssert.assertThat("P5 number", query.getNumber(), Matchers.is(3000000000L));
+
+        MatcherAssert.assertThat("end of input", parser.parseQuery(query), Matchers.is(false));
+    }
+
+    @Test
+    public void testNonAsciiVertexes() throws IOException {
+        final InputParser parser = new InputParser(Channels.newChannel(new ByteArrayInputStream(
+                        "A\u00e95 \u00e9\u20ac4\n1\nP4 \u20ac A\n".getBytes(StandardCharsets.UTF_8))), 3);
+        final VertexMapper mapper = new VertexMapper();
+
+        final InputParser.Edges edges = parser.parseEdges(mapper);
+        MatcherAssert.assertThat("from", edges.getFrom(), Matchers.is(new int[] {0, 1}));
+        MatcherAssert.assertThat("to", edges.getTo(), Matchers.is(new int[] {1, 2}));
+        MatcherAssert.assertThat("vertex", mapper.character(2), Matchers.is('\u20ac'));
+
+        MatcherAssert.assertThat("number of queries", parser.parseNumberLine(), Matchers.is(1L));
+
+        final InputParser.Query query = new InputParser.Query();
+        MatcherAssert.assertThat("P4 parsed", parser.parseQuery(query), Matchers.is(true));
+        MatcherAssert.assertThat("P4 vertexes", query.numberOfVertexes(), Matchers.is(2));
+        MatcherAssert.assertThat("P4 start", query.vertex(0).toString(), Matchers.is("\u20ac"));
+        MatcherAssert.assertThat("P4 finish", query.vertex(1).toString(), Matchers.is("A"));
+
+        final ParsedQuery parsedQuery = ParsedQuery.of(query, mapper);
+        MatcherAssert.assertThat("P4 problem", parsedQuery.getProblem(), Matchers.is(INPUT_PROBLEM.P4));
+        MatcherAssert.assertThat("P4 vertex ids", parsedQuery.getVertexes(), Matchers.is(new int[] {2, 0}));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformedVertex() throws IOException {
+        new InputParser(Channels.newChannel(new ByteArrayInputStream(new byte[] {'A', (byte) 0xC3, '5', '\n'})))
+            .parseEdges(new VertexMapper());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testShortEdge() throws IOException {
+        parser("AB5 C7\n").parseEdges(new VertexMapper());
+    }
+
+    @Test
+    public void testNamedVertexes() throws IOException {
+        final String input = "Paris Lyon 465\tLyon N\u00eemes  250 N\u00eemes Paris 712 Lyon 13 6\n1\nP3 Paris 13 2\n";
+        final InputParser parser = new InputParser(Channels.newChannel(new ByteArrayInputStream(
+                        input.getBytes(StandardCharsets.UTF_8))), 3);
+        final VertexMapper mapper = new VertexMapper();
+
+        final InputParser.Edges edges = parser.parseEdges(mapper);
+        MatcherAssert.assertThat("from", edges.getFrom(), Matchers.is(new int[] {0, 1, 2, 1}));
+        MatcherAssert.assertThat("to", edges.getTo(), Matchers.is(new int[] {1, 2, 0, 3}));
+        MatcherAssert.assertThat("distances", edges.getDistances(), Matchers.is(new int[] {465, 250, 712, 6}));
+        MatcherAssert.assertThat("vertex", mapper.name(2), Matchers.is("N\u00eemes"));
+        MatcherAssert.assertThat("numeric vertex", mapper.name(3), Matchers.is("13"));
+
+        MatcherAssert.assertThat("number of queries", parser.parseNumberLine(), Matchers.is(1L));
+
+        final InputParser.Query query = new InputParser.Query();
+        MatcherAssert.assertThat("P3 parsed", parser.parseQuery(query), Matchers.is(true));
+        MatcherAssert.assertThat("P3 start", query.vertex(0).toString(), Matchers.is("Paris"));
+        MatcherAssert.assertThat("P3 finish", query.vertex(1).toString(), Matchers.is("13"));
+        MatcherAssert.assertThat("P3 number", query.getNumber(), Matchers.is(2L));
+
+        MatcherAssert.assertThat("P3 vertex ids", ParsedQuery.of(query, mapper).getVertexes(),
+            Matchers.is(new int[] {0, 3}));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIncompleteNamedEdge() throws IOException {
+        parser("Paris Lyon 465 Lyon Nice\n").parseEdges(new VertexMapper());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNamedEdgeAfterCompactOne() throws IOException {
+        parser("AB5 Paris Lyon 465\n").parseEdges(new VertexMapper());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownProblem() throws IOException {
+        parser("P9 A C\n").parseQuery(new InputParser.Query());
+    }
+
+    private static InputParser parser(final String input) {
+        return new InputParser(Channels.newChannel(new ByteArrayInputStream(input.getBytes(
+                            StandardCharsets.US_ASCII))));
+    }
+}
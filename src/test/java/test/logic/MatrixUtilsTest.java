@@ -0,0 +1,95 @@
+package test.logic;
+
+import java.util.Random;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+
+import org.junit.Test;
+
+import test.logic.utils.MatrixUtils;
+
+public class MatrixUtilsTest {
+
+    @Test
+    public void testSmallMatrices() {
+        //J-
+        long[][] matrixOne = new long[][] {
+                {1, 2},
+                {3, 4}
+        };
+        long[][] matrixTwo = new long[][] {
+                {5, 6, 7},
+                {8, 9, 10}
+        };
+        //J+
+
+        long[][] result = MatrixUtils.multiplyMatrices(matrixOne, matrixTwo);
+
+        MatcherAssert.assertThat("first row", result[0], Matchers.is(new long[] {21, 24, 27}));
+        MatcherAssert.assertThat("second row", result[1], Matchers.is(new long[] {47, 54, 61}));
+    }
+
+    @Test
+    public void testTiledMatricesAreEqualToNaiveProduct() {
+        final Random random = new Random(42);
+        final long[][] matrixOne = randomMatrix(random, 150, 130);
+        final long[][] matrixTwo = randomMatrix(random, 130, 170);
+
+        long[][] result = MatrixUtils.multiplyMatrices(matrixOne, matrixTwo);
+
+        MatcherAssert.assertThat("rows", result.length, Matchers.is(150));
+        MatcherAssert.assertThat("cols", result[0].length, Matchers.is(170));
+        for (int i = 0; i < matrixOne.length; i++) {
+            for (int j = 0; j < matrixTwo[0].length; j++) {
+                long expected = 0;
+                for (int k = 0; k < matrixTwo.length; k++) {
+                    expected += matrixOne[i][k] * matrixTwo[k][j];
+                }
+
+                MatcherAssert.assertThat("cell", result[i][j], Matchers.is(expected));
+            }
+        }
+    }
+
+    @Test
+    public void testPrependBinaryBlock() {
+        final Random random = new Random(13);
+        final long[][] matrix = randomMatrix(random, 5, 5);
+
+        final long[][][] sums = new long[8][][];
+        long[][] power = MatrixUtils.identityMatrix(5, 5);
+        sums[0] = new long[5][5];
+        for (int n = 1; n < sums.length; n++) {
+            power = MatrixUtils.multiplyMatrices(power, matrix);
+            sums[n] = MatrixUtils.addMatrices(sums[n - 1], power);
+        }
+
+        final long[][] binaryPower = MatrixUtils.multiplyMatrices(matrix, matrix);
+        for (int m = 0; m + 2 < sums.length; m++) {
+            MatcherAssert.assertThat("sum of powers " + (m + 2),
+                MatrixUtils.prependBinaryBlock(binaryPower, sums[2], sums[m]), Matchers.is(sums[m + 2]));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongDimensions() {
+        MatrixUtils.multiplyMatrices(new long[2][3], new long[2][3]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooBigProduct() {
+        MatrixUtils.multiplyMatrices(new long[50000][1], new long[1][50000]);
+    }
+
+    private static long[][] randomMatrix(final Random random, final int rows, final int cols) {
+        final long[][] result = new long[rows][cols];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                result[i][j] = random.nextInt(1000) - 500;
+            }
+        }
+
+        return result;
+    }
+}
@@ -22,6 +22,8 @@ import test.domain.TownGraphEdgeBuilder;
 
 import test.logic.algorithms.P1CalculateDistanceForRouteAlgorithm;
 
+import test.logic.utils.RouteDistances;
+
 @RunWith(Parameterized.class)
 public class P1CalculateDistanceForRouteAlgorithmTest {
 
@@ -72,4 +74,20 @@ public class P1CalculateDistanceForRouteAlgorithmTest {
         Optional<Integer> distance = new P1CalculateDistanceForRouteAlgorithm().algorithm(townGraph, route);
         MatcherAssert.assertThat("distance", distance, Matchers.is(expectedDistance));
     }
+
+    @Test
+    public void testPrimitiveRoute() {
+        final int[] primitiveRoute = new int[route.size()];
+        final RouteDistances.Accumulator accumulator = new RouteDistances.Accumulator(townGraph.getEdgeWeightIndex());
+        for (int i = 0; i < primitiveRoute.length; i++) {
+            primitiveRoute[i] = route.get(i);
+            accumulator.add(route.get(i));
+        }
+
+        final long expected = expectedDistance.isPresent() ? expectedDistance.get() : RouteDistances.NO_ROUTE;
+
+        MatcherAssert.assertThat("distance", new P1CalculateDistanceForRouteAlgorithm().algorithm(townGraph,
+                primitiveRoute), Matchers.is(expected));
+        MatcherAssert.assertThat("streamed distance", accumulator.distance(), Matchers.is(expected));
+    }
 }
@@ -1,5 +1,6 @@
 package test.logic;
 
+import java.math.BigInteger;
 import java.util.Arrays;
 import java.util.Collection;
 
@@ -13,6 +14,7 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 
 import com.google.common.collect.Lists;
+import com.google.common.primitives.UnsignedLongs;
 
 import test.domain.TownGraph;
 import test.domain.TownGraphEdgeBuilder;
@@ -75,6 +77,13 @@ public class P2FindNumberOfRoutesWithLessThanAndExactlyStopsAlgorithmTest {
                             .to(0)
                             .maxStops(4)
                             .expectedNumberOfRoutes(10)
+                },{
+                    new Parameters()
+                            .townGraph(threeVertexCompleteGraph)
+                            .from(0)
+                            .to(0)
+                            .maxStops(1000000)
+                            .expectedNumberOfRoutes(closedRoutesOfTriangle(1000000))
                 }
         };
         //J+
@@ -91,7 +100,7 @@ public class P2FindNumberOfRoutesWithLessThanAndExactlyStopsAlgorithmTest {
         int from;
         int to;
         int maxStops;
-        long expectedNumberOfRoutes;
+        BigInteger expectedNumberOfRoutes;
 
         public Parameters townGraph(final TownGraph townGraph) {
             this.townGraph = townGraph;
@@ -114,6 +123,10 @@ public class P2FindNumberOfRoutesWithLessThanAndExactlyStopsAlgorithmTest {
         }
 
         public Parameters expectedNumberOfRoutes(final long expectedNumberOfRoutes) {
+            return expectedNumberOfRoutes(BigInteger.valueOf(expectedNumberOfRoutes));
+        }
+
+        public Parameters expectedNumberOfRoutes(final BigInteger expectedNumberOfRoutes) {
             this.expectedNumberOfRoutes = expectedNumberOfRoutes;
             return this;
         }
@@ -126,6 +139,18 @@ public class P2FindNumberOfRoutesWithLessThanAndExactlyStopsAlgorithmTest {
                 .findNumberOfRoutesWithLessThanAndExactlyStops(parameters.townGraph, parameters.from, parameters.to,
                     parameters.maxStops);
 
-        MatcherAssert.assertThat("Number of routes", numberOfRoutes, Matchers.is(parameters.expectedNumberOfRoutes));
+        MatcherAssert.assertThat("Number of routes modulo 2^64", UnsignedLongs.toString(numberOfRoutes),
+            Matchers.is(parameters.expectedNumberOfRoutes.mod(BigInteger.ONE.shiftLeft(Long.SIZE)).toString()));
+    }
+
+    /**
+     * @return  exact number of routes from a vertex of the complete graph of 3 vertexes back to it with at most
+     *          {@code maxStops} stops: the sum of (2^K + 2*(-1)^K)/3 for K = 1..STOPS
+     */
+    private static BigInteger closedRoutesOfTriangle(final int maxStops) {
+        final BigInteger tripled = BigInteger.ONE.shiftLeft(maxStops + 1).subtract(BigInteger.valueOf(2))
+                                               .subtract(BigInteger.valueOf(maxStops % 2 == 1 ? 2 : 0));
+
+        return tripled.divide(BigInteger.valueOf(3));
     }
 }
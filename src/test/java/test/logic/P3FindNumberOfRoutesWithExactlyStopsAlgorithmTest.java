@@ -95,6 +95,20 @@ public class P3FindNumberOfRoutesWithExactlyStopsAlgorithmTest {
                         .to(0)
                         .stops(4)
                         .expectedNumberOfRoutes(6)
+                },{
+                    new Parameters()
+                        .townGraph(threeVertexCompleteGraph)
+                        .from(0)
+                        .to(0)
+                        .stops(40)
+                        .expectedNumberOfRoutes(366503875926L)
+                },{
+                    new Parameters()
+                        .townGraph(threeVertexCompleteGraph)
+                        .from(0)
+                        .to(0)
+                        .stops(62)
+                        .expectedNumberOfRoutes(1537228672809129302L)
                 }
         };
         //J+
@@ -125,9 +125,11 @@ public class P4FindShortestDistanceAlgorithmTest {
 
     @Test
     public void test() {
-        //J-
-        Optional<Long> shortestDistance = new P4FindShortestDistanceAlgorithm().algorithm(parameters.townGraph, parameters.from, parameters.to);
-        MatcherAssert.assertThat("shortest distance", shortestDistance, Matchers.is(parameters.expectedShortestDistance));
-        //J+
+        for (P4FindShortestDistanceAlgorithm.Strategy strategy : P4FindShortestDistanceAlgorithm.Strategy.values()) {
+            //J-
+            Optional<Long> shortestDistance = new P4FindShortestDistanceAlgorithm(strategy).algorithm(parameters.townGraph, parameters.from, parameters.to);
+            MatcherAssert.assertThat("shortest distance, " + strategy, shortestDistance, Matchers.is(parameters.expectedShortestDistance));
+            //J+
+        }
     }
 }
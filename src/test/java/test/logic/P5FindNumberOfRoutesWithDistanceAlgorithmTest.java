@@ -10,6 +10,7 @@ import org.junit.Test;
 import com.google.common.base.Optional;
 import com.google.common.collect.Lists;
 
+import test.domain.INPUT_PROBLEM;
 import test.domain.TownGraph;
 import test.domain.TownGraphEdge;
 import test.domain.TownGraphEdgeBuilder;
@@ -37,10 +38,10 @@ public class P5FindNumberOfRoutesWithDistanceAlgorithmTest {
 
         TownGraph townGraph = new TownGraph(edges, 5);
 
-        Optional<Integer> numOfRoutes = new P5FindNumberOfRoutesWithDistanceAlgorithm().algorithm(townGraph, 2, 2, 30);
+        Optional<Long> numOfRoutes = new P5FindNumberOfRoutesWithDistanceAlgorithm().algorithm(townGraph, 2, 2, 30);
 
         MatcherAssert.assertThat("result is present", numOfRoutes.isPresent(), Matchers.is(true));
-        MatcherAssert.assertThat("number of routes", numOfRoutes.get(), Matchers.is(7));
+        MatcherAssert.assertThat("number of routes", numOfRoutes.get(), Matchers.is(7L));
 
     }
 
@@ -56,10 +57,10 @@ public class P5FindNumberOfRoutesWithDistanceAlgorithmTest {
 
         TownGraph townGraph = new TownGraph(edges, 3);
 
-        Optional<Integer> numOfRoutes = new P5FindNumberOfRoutesWithDistanceAlgorithm().algorithm(townGraph, 1, 2, 4);
+        Optional<Long> numOfRoutes = new P5FindNumberOfRoutesWithDistanceAlgorithm().algorithm(townGraph, 1, 2, 4);
 
         MatcherAssert.assertThat("result is present", numOfRoutes.isPresent(), Matchers.is(true));
-        MatcherAssert.assertThat("number of routes", numOfRoutes.get(), Matchers.is(2));
+        MatcherAssert.assertThat("number of routes", numOfRoutes.get(), Matchers.is(2L));
 
     }
 
@@ -74,10 +75,10 @@ public class P5FindNumberOfRoutesWithDistanceAlgorithmTest {
 
         TownGraph townGraph = new TownGraph(edges, 2);
 
-        Optional<Integer> numOfRoutes = new P5FindNumberOfRoutesWithDistanceAlgorithm().algorithm(townGraph, 0, 1, 4);
+        Optional<Long> numOfRoutes = new P5FindNumberOfRoutesWithDistanceAlgorithm().algorithm(townGraph, 0, 1, 4);
 
         MatcherAssert.assertThat("result is present", numOfRoutes.isPresent(), Matchers.is(true));
-        MatcherAssert.assertThat("number of routes", numOfRoutes.get(), Matchers.is(2));
+        MatcherAssert.assertThat("number of routes", numOfRoutes.get(), Matchers.is(2L));
     }
 
     @Test
@@ -90,8 +91,72 @@ public class P5FindNumberOfRoutesWithDistanceAlgorithmTest {
 
         TownGraph townGraph = new TownGraph(edges, 2);
 
-        Optional<Integer> numOfRoutes = new P5FindNumberOfRoutesWithDistanceAlgorithm().algorithm(townGraph, 1, 0, 2);
+        Optional<Long> numOfRoutes = new P5FindNumberOfRoutesWithDistanceAlgorithm().algorithm(townGraph, 1, 0, 2);
 
         MatcherAssert.assertThat("result is absent", numOfRoutes.isPresent(), Matchers.is(false));
     }
+
+    @Test
+    public void testCompleteGraphWithManyRoutes() {
+        final int numberOfVertexes = 4;
+        final List<TownGraphEdge> edges = Lists.newArrayList();
+        for (int from = 0; from < numberOfVertexes; from++) {
+            for (int to = 0; to < numberOfVertexes; to++) {
+                if (from != to) {
+                    edges.add(new TownGraphEdgeBuilder().from(from).to(to).distance(1).build());
+                }
+            }
+        }
+
+        TownGraph townGraph = new TownGraph(edges, numberOfVertexes);
+
+        // (3^L - (-1)^L) / 4 routes of L stops, summed up for L < 19
+        Optional<Long> numOfRoutes = new P5FindNumberOfRoutesWithDistanceAlgorithm().algorithm(townGraph, 0, 1, 19);
+
+        MatcherAssert.assertThat("result is present", numOfRoutes.isPresent(), Matchers.is(true));
+        MatcherAssert.assertThat("number of routes", numOfRoutes.get(), Matchers.is(145282683L));
+    }
+
+    @Test
+    public void testLargeMaxDistance() {
+        //J-
+        List<TownGraphEdge> edges = Lists.newArrayList(
+                new TownGraphEdgeBuilder().from(0).to(1).distance(1000000).build(),
+                new TownGraphEdgeBuilder().from(1).to(0).distance(1000000).build()
+        );
+        //J+
+
+        TownGraph townGraph = new TownGraph(edges, 2);
+
+        Optional<Long> numOfRoutes = new P5FindNumberOfRoutesWithDistanceAlgorithm().algorithm(townGraph, 0, 1,
+                1000000000000L);
+
+        MatcherAssert.assertThat("result is present", numOfRoutes.isPresent(), Matchers.is(true));
+        MatcherAssert.assertThat("number of routes", numOfRoutes.get(), Matchers.is(500000L));
+    }
+
+    @Test
+    public void testNumberOfRoutesAboveIntRange() {
+        //J-
+        List<TownGraphEdge> edges = Lists.newArrayList(
+                new TownGraphEdgeBuilder().from(0).to(1).distance(1).build(),
+                new TownGraphEdgeBuilder().from(1).to(0).distance(1).build(),
+                new TownGraphEdgeBuilder().from(0).to(2).distance(1).build(),
+                new TownGraphEdgeBuilder().from(2).to(0).distance(1).build(),
+                new TownGraphEdgeBuilder().from(1).to(2).distance(1).build(),
+                new TownGraphEdgeBuilder().from(2).to(1).distance(1).build()
+        );
+        //J+
+
+        TownGraph townGraph = new TownGraph(edges, 3);
+
+        // SUM over k = 1..40 of (2^k - (-1)^k) / 3 routes, above 2^32
+        Optional<Long> numOfRoutes = new P5FindNumberOfRoutesWithDistanceAlgorithm().algorithm(townGraph, 0, 1, 41);
+
+        MatcherAssert.assertThat("result is present", numOfRoutes.isPresent(), Matchers.is(true));
+        MatcherAssert.assertThat("number of routes", numOfRoutes.get(), Matchers.is(733007751850L));
+        MatcherAssert.assertThat("answer",
+            new P5FindNumberOfRoutesWithDistanceAlgorithm().validateParametersAndExecute(townGraph, INPUT_PROBLEM.P5,
+                new int[] {0, 1}, 41), Matchers.is("733007751850"));
+    }
 }
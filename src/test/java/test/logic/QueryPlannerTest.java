@@ -0,0 +1,234 @@
+package test.logic;
+
+import java.util.List;
+import java.util.Random;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import test.domain.INPUT_PROBLEM;
+import test.domain.TownGraph;
+
+import test.logic.algorithms.AlgorithmExecutor;
+import test.logic.algorithms.AlgorithmExecutorFactory;
+import test.logic.algorithms.AnswerConsumer;
+import test.logic.algorithms.P3FindNumberOfRoutesWithExactlyStopsAlgorithm;
+import test.logic.algorithms.ParsedQuery;
+import test.logic.algorithms.QueryPlanner;
+import test.logic.algorithms.ReorderBuffer;
+
+public class QueryPlannerTest {
+
+    private static final int NUMBER_OF_VERTEXES = 8;
+    private static final int NUMBER_OF_EDGES = 24;
+    private static final int NUMBER_OF_QUERIES = 400;
+
+    private final Random random = new Random(23);
+    private final VertexMapper mapper = new VertexMapper();
+    private final int[] from = new int[NUMBER_OF_EDGES];
+    private final int[] to = new int[NUMBER_OF_EDGES];
+    private final int[] distances = new int[NUMBER_OF_EDGES];
+    private final List<String[]> queries = Lists.newArrayList();
+
+    {
+        for (int vertex = 0; vertex < NUMBER_OF_VERTEXES; vertex++) {
+            mapper.mapCharacterToId(town(vertex));
+        }
+
+        for (int i = 0; i < NUMBER_OF_EDGES; i++) {
+            from[i] = random.nextInt(NUMBER_OF_VERTEXES);
+            to[i] = random.nextInt(NUMBER_OF_VERTEXES);
+            distances[i] = 1 + random.nextInt(9);
+        }
+
+        // few distinct parameters, so that many queries share them
+        for (int q = 0; q < NUMBER_OF_QUERIES; q++) {
+            final String start = String.valueOf(town(random.nextInt(3)));
+            final String finish = String.valueOf(town(random.nextInt(NUMBER_OF_VERTEXES)));
+            final String number = String.valueOf(1 + random.nextInt(3) * 7);
+
+            switch (random.nextInt(5)) {
+
+                case 0 :
+                    queries.add(new String[] {"P1", start, finish, String.valueOf(town(random.nextInt(3)))});
+                    break;
+
+                case 1 :
+                    queries.add(new String[] {"P2", start, finish, number});
+                    break;
+
+                case 2 :
+                    queries.add(new String[] {"P3", start, finish, number});
+                    break;
+
+                case 3 :
+                    queries.add(new String[] {"P4", start, finish});
+                    break;
+
+                default :
+                    queries.add(new String[] {"P5", start, finish, number});
+            }
+        }
+    }
+
+    @Test
+    public void testBatchAnswersAreEqualToSingleAnswers() {
+        final TownGraph townGraph = new TownGraph(from, to, distances, NUMBER_OF_VERTEXES);
+
+        final AlgorithmExecutorFactory factory = new AlgorithmExecutorFactory();
+        final List<String> answers = new QueryPlanner(factory).execute(townGraph, mapper, queries);
+
+        // a fresh graph, so that nothing is shared with the batch through the per graph caches
+        final TownGraph freshTownGraph = new TownGraph(from, to, distances, NUMBER_OF_VERTEXES);
+        for (int q = 0; q < NUMBER_OF_QUERIES; q++) {
+            final String[] query = queries.get(q);
+            final String expected = factory.getAlgorithmExecutor(INPUT_PROBLEM.valueOf(query[0]))
+                                           .validateParametersAndExecute(freshTownGraph, mapper, query);
+
+            MatcherAssert.assertThat("query " + q, answers.get(q), Matchers.is(expected));
+        }
+    }
+
+    @Test
+    public void testParallelAnswersAreEqualToSequentialAndOrdered() {
+        final AlgorithmExecutorFactory factory = new AlgorithmExecutorFactory();
+        final List<String> expected = new QueryPlanner(factory).execute(
+                new TownGraph(from, to, distances, NUMBER_OF_VERTEXES), mapper, queries);
+
+        final QueryPlanner planner = new QueryPlanner(factory, 4);
+        final List<Integer> order = Lists.newArrayList();
+        final List<String> answers = Lists.newArrayList();
+
+        //J-
+        planner.execute(new TownGraph(from, to, distances, NUMBER_OF_VERTEXES), mapper, queries,
+            new AnswerConsumer() {
+                @Override
+                public void accept(final int queryIndex, final String answer) {
+                    order.add(queryIndex);
+                    answers.add(answer);
+                }
+            });
+        //J+
+        planner.shutdown();
+
+        for (int q = 0; q < NUMBER_OF_QUERIES; q++) {
+            MatcherAssert.assertThat("order", order.get(q), Matchers.is(q));
+        }
+
+        MatcherAssert.assertThat("answers", answers, Matchers.is(expected));
+    }
+
+    @Test
+    public void testEqualNumbersSpelledDifferentlyShareBatch() {
+        final List<Integer> batchSizes = Lists.newArrayList();
+
+        //J-
+        final AlgorithmExecutorFactory factory = new AlgorithmExecutorFactory() {
+                @Override
+                public AlgorithmExecutor getAlgorithmExecutor(final INPUT_PROBLEM inputProblem) {
+                    return new P3FindNumberOfRoutesWithExactlyStopsAlgorithm() {
+                            @Override
+                            public List<String> validateParametersAndExecuteAll(final TownGraph townGraph,
+                                    final List<ParsedQuery> queries) {
+                                batchSizes.add(queries.size());
+                                return super.validateParametersAndExecuteAll(townGraph, queries);
+                            }
+                        };
+                }
+            };
+        //J+
+
+        final List<String[]> spelledQueries = Lists.newArrayList();
+        spelledQueries.add(new String[] {"P3", "A", "C", "3"});
+        spelledQueries.add(new String[] {"P3", "A", "C", "03"});
+        spelledQueries.add(new String[] {"P3", "B", "C", "+3"});
+
+        final List<String> answers = new QueryPlanner(factory).execute(
+                new TownGraph(from, to, distances, NUMBER_OF_VERTEXES), mapper, spelledQueries);
+
+        MatcherAssert.assertThat("batches", batchSizes, Matchers.contains(3));
+        MatcherAssert.assertThat("same answer", answers.get(1), Matchers.is(answers.get(0)));
+    }
+
+    @Test
+    public void testAnswersBeforeInvalidProblemArePassed() {
+        final List<String[]> invalidQueries = Lists.newArrayList(queries.subList(0, 50));
+        invalidQueries.add(new String[] {"P7", "A", "B"});
+        invalidQueries.addAll(queries.subList(50, 100));
+
+        assertAnswersBeforeInvalidQuery(invalidQueries, 50, 1);
+        assertAnswersBeforeInvalidQuery(invalidQueries, 50, 4);
+    }
+
+    @Test
+    public void testAnswersBeforeInvalidQueryOfBatchArePassed() {
+        final List<String[]> invalidQueries = Lists.newArrayList();
+        invalidQueries.add(new String[] {"P4", "A", "C"});
+        invalidQueries.add(new String[] {"P3", "A", "C", "3"});
+        invalidQueries.add(new String[] {"P4", "A", "Z"});
+        invalidQueries.add(new String[] {"P4", "B", "B"});
+        invalidQueries.add(new String[] {"P3", "B", "C", "3"});
+
+        assertAnswersBeforeInvalidQuery(invalidQueries, 2, 1);
+        assertAnswersBeforeInvalidQuery(invalidQueries, 2, 4);
+    }
+
+    @Test
+    public void testReorderBufferPassesAnswersInOrder() {
+        final List<String> passed = Lists.newArrayList();
+
+        //J-
+        final ReorderBuffer buffer = new ReorderBuffer(new AnswerConsumer() {
+                @Override
+                public void accept(final int queryIndex, final String answer) {
+                    passed.add(queryIndex + ":" + answer);
+                }
+            });
+        //J+
+
+        buffer.accept(2, "c");
+        buffer.accept(1, "b");
+        MatcherAssert.assertThat("held", passed, Matchers.<String>empty());
+
+        buffer.accept(0, "a");
+        MatcherAssert.assertThat("passed", passed, Matchers.contains("0:a", "1:b", "2:c"));
+
+        buffer.accept(4, "e");
+        MatcherAssert.assertThat("next query", buffer.nextQueryIndex(), Matchers.is(3));
+    }
+
+    private void assertAnswersBeforeInvalidQuery(final List<String[]> invalidQueries, final int invalidIndex,
+            final int threads) {
+        final QueryPlanner planner = new QueryPlanner(new AlgorithmExecutorFactory(), threads);
+        final List<Integer> order = Lists.newArrayList();
+
+        try {
+            //J-
+            planner.execute(new TownGraph(from, to, distances, NUMBER_OF_VERTEXES), mapper, invalidQueries,
+                new AnswerConsumer() {
+                    @Override
+                    public void accept(final int queryIndex, final String answer) {
+                        order.add(queryIndex);
+                    }
+                });
+            //J+
+            Assert.fail("Invalid query is executed");
+        } catch (IllegalArgumentException e) {
+            MatcherAssert.assertThat("answers", order.size(), Matchers.is(invalidIndex));
+            for (int q = 0; q < invalidIndex; q++) {
+                MatcherAssert.assertThat("order", order.get(q), Matchers.is(q));
+            }
+        } finally {
+            planner.shutdown();
+        }
+    }
+
+    private static char town(final int vertex) {
+        return (char) ('A' + vertex);
+    }
+}
@@ -0,0 +1,79 @@
+package test.logic;
+
+import java.util.Random;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+
+import org.junit.Test;
+
+import test.domain.TownGraph;
+
+import test.logic.utils.MatrixUtils;
+import test.logic.utils.RouteCountingUtils;
+
+public class RouteCountingUtilsTest {
+
+    private static final int NUMBER_OF_VERTEXES = 12;
+    private static final int NUMBER_OF_EDGES = 30;
+    private static final int STOPS = 9;
+
+    @Test
+    public void testPropagationIsEqualToMatrixPowers() {
+        final Random random = new Random(7);
+        final int[] from = new int[NUMBER_OF_EDGES];
+        final int[] to = new int[NUMBER_OF_EDGES];
+        final int[] distances = new int[NUMBER_OF_EDGES];
+        for (int i = 0; i < NUMBER_OF_EDGES; i++) {
+            from[i] = i < NUMBER_OF_VERTEXES ? i : random.nextInt(NUMBER_OF_VERTEXES);
+            to[i] = random.nextInt(NUMBER_OF_VERTEXES);
+            distances[i] = 1;
+        }
+
+        final TownGraph townGraph = new TownGraph(from, to, distances, NUMBER_OF_VERTEXES);
+
+        long[][] power = MatrixUtils.identityMatrix(NUMBER_OF_VERTEXES, NUMBER_OF_VERTEXES);
+        final long[][] sum = new long[NUMBER_OF_VERTEXES][NUMBER_OF_VERTEXES];
+        for (int stops = 1; stops <= STOPS; stops++) {
+            power = MatrixUtils.multiplyMatrices(power, townGraph.getConnectivityMatrix());
+            for (int i = 0; i < NUMBER_OF_VERTEXES; i++) {
+                for (int j = 0; j < NUMBER_OF_VERTEXES; j++) {
+                    sum[i][j] += power[i][j];
+                }
+            }
+        }
+
+        for (int i = 0; i < NUMBER_OF_VERTEXES; i++) {
+            for (int j = 0; j < NUMBER_OF_VERTEXES; j++) {
+                MatcherAssert.assertThat("exactly stops",
+                    RouteCountingUtils.countRoutesWithExactlyStops(townGraph.getToEdgesIndex(), i, j, STOPS),
+                    Matchers.is(power[i][j]));
+                MatcherAssert.assertThat("at most stops",
+                    RouteCountingUtils.countRoutesWithAtMostStops(townGraph.getToEdgesIndex(), i, j, STOPS),
+                    Matchers.is(sum[i][j]));
+            }
+        }
+    }
+
+    @Test
+    public void testZeroStops() {
+        final TownGraph townGraph = new TownGraph(new int[] {0}, new int[] {1}, new int[] {1}, 2);
+
+        MatcherAssert.assertThat("route to itself",
+            RouteCountingUtils.countRoutesWithExactlyStops(townGraph.getToEdgesIndex(), 0, 0, 0), Matchers.is(1L));
+        MatcherAssert.assertThat("no routes with at least one stop",
+            RouteCountingUtils.countRoutesWithAtMostStops(townGraph.getToEdgesIndex(), 0, 1, 0), Matchers.is(0L));
+    }
+
+    @Test
+    public void testPropagationCostSaturates() {
+        final TownGraph townGraph = new TownGraph(new int[] {0, 1, 2, 3}, new int[] {1, 2, 3, 0},
+                new int[] {1, 1, 1, 1}, 4);
+
+        MatcherAssert.assertThat("cost", RouteCountingUtils.propagationCost(townGraph.getToEdgesIndex(), 5, 3),
+            Matchers.is(60L));
+        MatcherAssert.assertThat("saturated cost",
+            RouteCountingUtils.propagationCost(townGraph.getToEdgesIndex(), Integer.MAX_VALUE, Integer.MAX_VALUE),
+            Matchers.is(Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,106 @@
+package test.logic;
+
+import java.util.Random;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+
+import org.junit.Test;
+
+import test.domain.TownGraph;
+
+import test.logic.utils.RouteCountsByDistance;
+
+public class RouteCountsByDistanceTest {
+
+    private static final int NUMBER_OF_VERTEXES = 12;
+    private static final int NUMBER_OF_EDGES = 30;
+
+    private final int[] from = new int[NUMBER_OF_EDGES];
+    private final int[] to = new int[NUMBER_OF_EDGES];
+    private final int[] distances = new int[NUMBER_OF_EDGES];
+
+    {
+        final Random random = new Random(5);
+        for (int i = 0; i < NUMBER_OF_EDGES; i++) {
+            from[i] = random.nextInt(NUMBER_OF_VERTEXES);
+            to[i] = random.nextInt(NUMBER_OF_VERTEXES);
+            distances[i] = 1 + random.nextInt(9);
+        }
+    }
+
+    @Test
+    public void testExtendedTablesMatchFreshTables() {
+        final RouteCountsByDistance counts = RouteCountsByDistance.of(newTownGraph());
+
+        for (int maxDistance : new int[] {7, 3, 25, 12, 60, 60}) {
+            for (int finish = 0; finish < NUMBER_OF_VERTEXES; finish++) {
+                final RouteCountsByDistance freshCounts = RouteCountsByDistance.of(newTownGraph());
+                for (int start = 0; start < NUMBER_OF_VERTEXES; start++) {
+                    MatcherAssert.assertThat("from " + start + " to " + finish + " below " + maxDistance,
+                        counts.countRoutes(start, finish, maxDistance),
+                        Matchers.is(freshCounts.countRoutes(start, finish, maxDistance)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBucketsMatchTables() {
+        final TownGraph townGraph = newTownGraph();
+        final RouteCountsByDistance counts = RouteCountsByDistance.of(townGraph);
+
+        for (int maxDistance : new int[] {0, 1, 2, 9, 33}) {
+            for (int start = 0; start < NUMBER_OF_VERTEXES; start++) {
+                for (int finish = 0; finish < NUMBER_OF_VERTEXES; finish++) {
+                    MatcherAssert.assertThat("from " + start + " to " + finish + " below " + maxDistance,
+                        RouteCountsByDistance.countRoutesInBuckets(townGraph.getToEdgesIndex(),
+                            townGraph.getFromEdgesIndex(), start, finish,
+                            maxDistance), Matchers.is(counts.countRoutes(start, finish, maxDistance)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCountsAboveIntRange() {
+        final TownGraph townGraph = new TownGraph(new int[] {0, 1, 0, 2, 1, 2}, new int[] {1, 0, 2, 0, 2, 1},
+                new int[] {1, 1, 1, 1, 1, 1}, 3);
+
+        // SUM over k = 1..40 of (2^k - (-1)^k) / 3 routes, above 2^32
+        MatcherAssert.assertThat("table", RouteCountsByDistance.of(townGraph).countRoutes(0, 1, 41),
+            Matchers.is(733007751850L));
+        MatcherAssert.assertThat("buckets",
+            RouteCountsByDistance.countRoutesInBuckets(townGraph.getToEdgesIndex(), townGraph.getFromEdgesIndex(), 0,
+                1, 41), Matchers.is(733007751850L));
+    }
+
+    @Test
+    public void testSmallerBoundsAreServedFromCache() {
+        final TownGraph townGraph = newTownGraph();
+        final RouteCountsByDistance counts = RouteCountsByDistance.of(townGraph);
+
+        MatcherAssert.assertThat("table is not cached", counts.isCached(3, 40), Matchers.is(false));
+        counts.countRoutes(0, 3, 40);
+
+        MatcherAssert.assertThat("same cache", RouteCountsByDistance.of(townGraph), Matchers.sameInstance(counts));
+        MatcherAssert.assertThat("table is cached", counts.isCached(3, 40), Matchers.is(true));
+        MatcherAssert.assertThat("smaller bound is cached", counts.isCached(3, 17), Matchers.is(true));
+        MatcherAssert.assertThat("larger bound is not cached", counts.isCached(3, 41), Matchers.is(false));
+        MatcherAssert.assertThat("other finish is not cached", counts.isCached(4, 17), Matchers.is(false));
+    }
+
+    @Test
+    public void testTableAboveSegmentShareIsCached() {
+        final RouteCountsByDistance counts = RouteCountsByDistance.of(newTownGraph());
+
+        // 12 vertexes x 400000 distances is above a quarter of the default bound of the cached cells
+        counts.countRoutes(0, 3, 400000);
+
+        MatcherAssert.assertThat("table is cached", counts.isCached(3, 400000), Matchers.is(true));
+    }
+
+    private TownGraph newTownGraph() {
+        return new TownGraph(from, to, distances, NUMBER_OF_VERTEXES);
+    }
+}
@@ -0,0 +1,63 @@
+package test.logic;
+
+import java.util.Random;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+
+import org.junit.Test;
+
+import test.domain.TownGraph;
+
+import test.logic.algorithms.P1CalculateDistanceForRouteAlgorithm;
+
+import test.logic.utils.RouteDistances;
+
+public class RouteDistancesTest {
+
+    private static final int NUMBER_OF_VERTEXES = 50;
+    private static final int NUMBER_OF_ROUTES = 300;
+
+    @Test
+    public void testParallelBatchIsEqualToSequential() {
+        final Random random = new Random(17);
+
+        // a cycle through all the vertexes plus the random chords
+        final int[] from = new int[NUMBER_OF_VERTEXES * 2];
+        final int[] to = new int[NUMBER_OF_VERTEXES * 2];
+        final int[] distances = new int[NUMBER_OF_VERTEXES * 2];
+        for (int i = 0; i < from.length; i++) {
+            from[i] = i < NUMBER_OF_VERTEXES ? i : random.nextInt(NUMBER_OF_VERTEXES);
+            to[i] = i < NUMBER_OF_VERTEXES ? (i + 1) % NUMBER_OF_VERTEXES : random.nextInt(NUMBER_OF_VERTEXES);
+            distances[i] = 1 + random.nextInt(1000);
+        }
+
+        final TownGraph townGraph = new TownGraph(from, to, distances, NUMBER_OF_VERTEXES);
+
+        final int[][] routes = new int[NUMBER_OF_ROUTES][];
+        for (int r = 0; r < NUMBER_OF_ROUTES; r++) {
+            // a few long routes along the cycle, split into several fork/join tasks, and many short random ones
+            final boolean alongCycle = r % 50 == 0;
+            routes[r] = new int[alongCycle ? 100000 + random.nextInt(100000) : random.nextInt(5)];
+
+            int vertex = random.nextInt(NUMBER_OF_VERTEXES);
+            for (int i = 0; i < routes[r].length; i++) {
+                routes[r][i] = vertex;
+                vertex = alongCycle ? (vertex + 1) % NUMBER_OF_VERTEXES : random.nextInt(NUMBER_OF_VERTEXES);
+            }
+        }
+
+        final P1CalculateDistanceForRouteAlgorithm algorithm = new P1CalculateDistanceForRouteAlgorithm();
+        final long[] sequential = algorithm.algorithm(townGraph, routes, false);
+        final long[] parallel = algorithm.algorithm(townGraph, routes, true);
+
+        MatcherAssert.assertThat("same distances", parallel, Matchers.is(sequential));
+        for (int r = 0; r < NUMBER_OF_ROUTES; r++) {
+            MatcherAssert.assertThat("route " + r, sequential[r],
+                Matchers.is(algorithm.algorithm(townGraph, routes[r])));
+            if (r % 50 == 0) {
+                MatcherAssert.assertThat("route along cycle " + r, sequential[r] > 0, Matchers.is(true));
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package test.logic;
+
+import java.util.Random;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+
+import org.junit.Test;
+
+import com.google.common.base.Optional;
+
+import test.domain.TownGraph;
+
+import test.logic.algorithms.P4FindShortestDistanceAlgorithm;
+
+import test.logic.utils.AllPairsShortestDistances;
+
+public class ShortestDistanceStrategiesTest {
+
+    private static final int NUMBER_OF_VERTEXES = 60;
+    private static final int NUMBER_OF_EDGES = 180;
+
+    @Test
+    public void testAllStrategiesAgreeWithDijkstra() {
+        final Random random = new Random(11);
+        final int[] from = new int[NUMBER_OF_EDGES];
+        final int[] to = new int[NUMBER_OF_EDGES];
+        final int[] distances = new int[NUMBER_OF_EDGES];
+        for (int i = 0; i < NUMBER_OF_EDGES; i++) {
+            from[i] = random.nextInt(NUMBER_OF_VERTEXES);
+            to[i] = random.nextInt(NUMBER_OF_VERTEXES);
+            distances[i] = 1 + random.nextInt(20);
+        }
+
+        final TownGraph townGraph = new TownGraph(from, to, distances, NUMBER_OF_VERTEXES);
+        final P4FindShortestDistanceAlgorithm dijkstra = new P4FindShortestDistanceAlgorithm(
+                P4FindShortestDistanceAlgorithm.Strategy.DIJKSTRA);
+
+        for (P4FindShortestDistanceAlgorithm.Strategy strategy : P4FindShortestDistanceAlgorithm.Strategy.values()) {
+            final P4FindShortestDistanceAlgorithm algorithm = new P4FindShortestDistanceAlgorithm(strategy);
+            for (int start = 0; start < NUMBER_OF_VERTEXES; start++) {
+                for (int finish = 0; finish < NUMBER_OF_VERTEXES; finish++) {
+                    final Optional<Long> expected = dijkstra.algorithm(townGraph, start, finish);
+
+                    MatcherAssert.assertThat(strategy + " from " + start + " to " + finish,
+                        algorithm.algorithm(townGraph, start, finish), Matchers.is(expected));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testAllPairsTableIsBuiltBeforeFirstQuery() {
+        final TownGraph townGraph = new TownGraph(new int[] {0, 1}, new int[] {1, 0}, new int[] {3, 4}, 2);
+
+        new P4FindShortestDistanceAlgorithm(P4FindShortestDistanceAlgorithm.Strategy.ALL_PAIRS).precompute(townGraph);
+
+        MatcherAssert.assertThat("table is built",
+            townGraph.getDerivedIndexIfPresent(AllPairsShortestDistances.class).isPresent(), Matchers.is(true));
+    }
+}
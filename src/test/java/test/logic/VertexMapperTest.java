@@ -0,0 +1,80 @@
+package test.logic;
+
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+
+import org.junit.Test;
+
+public class VertexMapperTest {
+
+    private static final int NUMBER_OF_NAMES = 200000;
+
+    @Test
+    public void testCharactersAndNamesShareIds() {
+        final VertexMapper mapper = new VertexMapper();
+
+        MatcherAssert.assertThat("A", mapper.mapCharacterToId('A'), Matchers.is(0));
+        MatcherAssert.assertThat("town", mapper.mapNameToId("town-1"), Matchers.is(1));
+        MatcherAssert.assertThat("B", mapper.mapNameToId("B"), Matchers.is(2));
+        MatcherAssert.assertThat("A again", mapper.mapNameToId("A"), Matchers.is(0));
+        MatcherAssert.assertThat("B again", mapper.mapCharacterToId('B'), Matchers.is(2));
+        MatcherAssert.assertThat("town again", mapper.mapNameToId(new StringBuilder("town-1")), Matchers.is(1));
+
+        MatcherAssert.assertThat("id of B", mapper.id('B'), Matchers.is(2));
+        MatcherAssert.assertThat("id of town", mapper.id("town-1"), Matchers.is(1));
+        MatcherAssert.assertThat("character", mapper.character(2), Matchers.is('B'));
+        MatcherAssert.assertThat("name", mapper.name(0), Matchers.is("A"));
+        MatcherAssert.assertThat("number of vertexes", mapper.numberOfVertexes(), Matchers.is(3));
+    }
+
+    @Test
+    public void testManyNames() {
+        final VertexMapper mapper = new VertexMapper();
+        for (int i = 0; i < NUMBER_OF_NAMES; i++) {
+            MatcherAssert.assertThat("new name", mapper.mapNameToId(name(i)), Matchers.is(i));
+        }
+
+        for (int i = 0; i < NUMBER_OF_NAMES; i++) {
+            MatcherAssert.assertThat("id", mapper.id(name(i)), Matchers.is(i));
+            MatcherAssert.assertThat("name", mapper.name(i), Matchers.is(name(i)));
+        }
+
+        MatcherAssert.assertThat("number of vertexes", mapper.numberOfVertexes(), Matchers.is(NUMBER_OF_NAMES));
+    }
+
+    @Test
+    public void testNonAsciiCharacters() {
+        final VertexMapper mapper = new VertexMapper();
+        final char[] characters = {'\u00e9', '\u0800', '\uffff', '\ud800', '\udc00', '\u0000'};
+        for (int i = 0; i < characters.length; i++) {
+            MatcherAssert.assertThat("new character", mapper.mapCharacterToId(characters[i]), Matchers.is(i));
+        }
+
+        for (int i = 0; i < characters.length; i++) {
+            MatcherAssert.assertThat("id", mapper.id(characters[i]), Matchers.is(i));
+            MatcherAssert.assertThat("character", mapper.character(i), Matchers.is(characters[i]));
+        }
+
+        final String name = "\u00e9t\u00e9-\ud83d\ude8c";
+        final int id = mapper.mapNameToId(name);
+        MatcherAssert.assertThat("name", mapper.name(id), Matchers.is(name));
+        MatcherAssert.assertThat("id of name", mapper.id(name), Matchers.is(id));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownName() {
+        final VertexMapper mapper = new VertexMapper();
+        mapper.mapNameToId("AB");
+        mapper.id("BA");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCharacterOfLongName() {
+        final VertexMapper mapper = new VertexMapper();
+        mapper.character(mapper.mapNameToId("AB"));
+    }
+
+    private static String name(final int i) {
+        return "town-" + Integer.toHexString(i * 31);
+    }
+}